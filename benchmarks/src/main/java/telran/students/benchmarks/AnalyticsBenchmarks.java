@@ -0,0 +1,116 @@
+package telran.students.benchmarks;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import telran.students.dto.*;
+import telran.students.repo.MarksBuckets;
+import telran.students.repo.StudentRepo;
+import telran.students.service.MarksAnalytics;
+
+//aggregate queries at DB server (aggregate*) against the in-memory columnar snapshot (snapshot*)
+//on the same data; the snapshot is loaded once and isn't updated, so only reads are measured
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmarks {
+	static final int AVG_SCORE_THRESHOLD = 80;
+	static final int N_STUDENTS = 10;
+	static final int DATES_DAYS = 30;
+
+	@State(Scope.Benchmark)
+	public static class AnalyticsState {
+		StudentRepo studentRepo;
+		MarksAnalytics analytics;
+
+		@Setup(Level.Trial)
+		public void setUp(ServiceState state) {
+			studentRepo = state.context.getBean(StudentRepo.class);
+			analytics = new MarksAnalytics(studentRepo,
+					Optional.ofNullable(state.context.getBeanProvider(MarksBuckets.class).getIfAvailable()));
+			analytics.reload();
+		}
+	}
+
+	@Benchmark
+	public List<NameAvgScore> aggregateStudentAvgScoreGreater(AnalyticsState analyticsState) {
+		return analyticsState.studentRepo.aggregateStudentAvgScoreGreater(AVG_SCORE_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<NameAvgScore> snapshotStudentAvgScoreGreater(AnalyticsState analyticsState) {
+		return analyticsState.analytics.getStudentAvgScoreGreater(AVG_SCORE_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<Student> aggregateBestStudents(AnalyticsState analyticsState) {
+		return analyticsState.studentRepo.aggregateBestStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<Student> snapshotBestStudents(AnalyticsState analyticsState) {
+		return analyticsState.analytics.getBestStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<String> aggregateWorstStudents(AnalyticsState analyticsState) {
+		return analyticsState.studentRepo.aggregateWorstStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<String> snapshotWorstStudents(AnalyticsState analyticsState) {
+		return analyticsState.analytics.getWorstStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<Mark> aggregateStudentMarksAtDates(ServiceState state, AnalyticsState analyticsState) {
+		LocalDate from = state.generator.date(ThreadLocalRandom.current());
+		return analyticsState.studentRepo.aggregateStudentMarksAtDates(state.randomId(), from, from.plusDays(DATES_DAYS));
+	}
+
+	@Benchmark
+	public List<Mark> snapshotStudentMarksAtDates(ServiceState state, AnalyticsState analyticsState) {
+		LocalDate from = state.generator.date(ThreadLocalRandom.current());
+		return analyticsState.analytics.getStudentMarksAtDates(state.randomId(), from, from.plusDays(DATES_DAYS));
+	}
+
+	@Benchmark
+	public List<Mark> aggregateStudentSubjectMarks(ServiceState state, AnalyticsState analyticsState) {
+		return analyticsState.studentRepo.aggregateStudentSubjectMarks(state.randomId(), randomSubject(state));
+	}
+
+	@Benchmark
+	public List<Mark> snapshotStudentSubjectMarks(ServiceState state, AnalyticsState analyticsState) {
+		return analyticsState.analytics.getStudentSubjectMarks(state.randomId(), randomSubject(state));
+	}
+
+	@Benchmark
+	public List<PeriodAvgScore> aggregateMonthAvgScore(ServiceState state, AnalyticsState analyticsState) {
+		LocalDate from = state.generator.getSpec().startDate();
+		return analyticsState.studentRepo.aggregateMonthAvgScore(from, from.plusMonths(3), randomSubject(state));
+	}
+
+	@Benchmark
+	public List<PeriodAvgScore> snapshotMonthAvgScore(ServiceState state, AnalyticsState analyticsState) {
+		LocalDate from = state.generator.getSpec().startDate();
+		return analyticsState.analytics.getAvgScoreByMonths(from, from.plusMonths(3), randomSubject(state));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void snapshotReload(AnalyticsState analyticsState) {
+		analyticsState.analytics.reload();
+	}
+
+	private static String randomSubject(ServiceState state) {
+		return state.generator.subject(ThreadLocalRandom.current());
+	}
+
+}
@@ -0,0 +1,65 @@
+package telran.students.benchmarks;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import telran.students.migration.StudentsBinaryFormat;
+import telran.students.model.StudentDoc;
+
+//encoding of the synthetic students to the binary export file and decoding them back, without DB;
+//the time is per whole file, so marks per second are nStudents * avgMarks / time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryFormatBenchmarks {
+	@Param("100000")
+	int nStudents;
+	@Param({"20", "200"})
+	int avgMarks;
+	List<StudentDoc> students;
+	Path file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		students = new DataGenerator(DataSpec.of(nStudents, avgMarks, 10, 1.0)).students().toList();
+		file = Files.createTempFile("students", ".bin");
+		write();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public long write() throws IOException {
+		try(StudentsBinaryFormat.Writer writer = new StudentsBinaryFormat.Writer(FileChannel.open(file,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+			for(StudentDoc studentDoc: students) {
+				writer.write(studentDoc);
+			}
+			return writer.getNMarks();
+		}
+	}
+
+	@Benchmark
+	public long read() throws IOException {
+		long res = 0;
+		try(StudentsBinaryFormat.Reader reader = new StudentsBinaryFormat.Reader(FileChannel.open(file))) {
+			StudentDoc studentDoc;
+			while((studentDoc = reader.read()) != null) {
+				res += studentDoc.getMarkCount();
+			}
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,122 @@
+package telran.students.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import telran.students.dto.Mark;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarkCodec;
+import telran.students.repo.MarkConverters;
+
+//client side costs without DB: mapping of the aggregation results to Mark, reading of StudentDoc
+//with embedded marks and filtering marks by subject as getStudentSubjectMarksOnClientFilter does;
+//decode* compare decoding of the raw aggregation output by Document and by MarkCodec,
+//allocation rates are reported with -prof gc (gc.alloc.rate.norm is bytes per operation)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientMappingBenchmarks {
+	@Param({"20", "200", "2000"})
+	int nMarks;
+	String subject;
+	List<Mark> marks;
+	List<Document> subjectDocuments;
+	List<Document> markDocuments;
+	Document studentDocument;
+	MappingMongoConverter converter;
+	List<byte[]> markBytes;
+	final DocumentCodec documentCodec = new DocumentCodec();
+	final MarkCodec markCodec = new MarkCodec();
+	final DecoderContext decoderContext = DecoderContext.builder().build();
+	
+	@Setup
+	public void setUp() {
+		DataGenerator generator = new DataGenerator(DataSpec.of(1, nMarks, 10, 1.0));
+		Random random = new Random(1);
+		marks = new ArrayList<>();
+		for(int i = 0; i < nMarks; i++) {
+			marks.add(generator.mark(random));
+		}
+		subject = generator.subject(0);
+		markDocuments = marks.stream().map(this::toDocument).toList();
+		subjectDocuments = marks.stream().filter(m -> m.subject().equals(subject))
+				.map(this::toDocument).peek(d -> d.remove("subject")).toList();
+		MongoCustomConversions conversions = MongoCustomConversions.create(adapter -> adapter
+				.useNativeDriverJavaTimeCodecs().registerConverters(MarkConverters.converters(ZoneOffset.UTC)));
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+		converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		StudentDoc studentDoc = new StudentDoc(1l, "name", "phone", marks);
+		studentDocument = new Document();
+		converter.write(studentDoc, studentDocument);
+		markBytes = markDocuments.stream().map(this::toBytes).toList();
+	}
+	
+	@Benchmark
+	public List<Mark> toSubjectMarks() {
+		return subjectDocuments.stream().map(d -> MarkConverters.toMark(d, subject, ZoneOffset.UTC)).toList();
+	}
+	
+	@Benchmark
+	public List<Mark> toMarks() {
+		return markDocuments.stream().map(d -> MarkConverters.toMark(d, d.getString("subject"), ZoneOffset.UTC)).toList();
+	}
+	
+	@Benchmark
+	public StudentDoc readStudentDoc() {
+		return converter.read(StudentDoc.class, studentDocument);
+	}
+	
+	@Benchmark
+	public List<Mark> clientFilterSubject() {
+		return converter.read(StudentDoc.class, studentDocument).getMarks().stream()
+				.filter(m -> m.subject().equals(subject)).toList();
+	}
+	
+	@Benchmark
+	public List<Mark> decodeDocumentToMarks() {
+		return markBytes.stream().map(b -> documentCodec.decode(reader(b), decoderContext))
+				.map(d -> MarkConverters.toMark(d, d.getString("subject"), ZoneOffset.UTC)).toList();
+	}
+	
+	@Benchmark
+	public List<Mark> decodeMarks() {
+		return markBytes.stream().map(b -> markCodec.decode(reader(b), decoderContext)).toList();
+	}
+	
+	private BsonBinaryReader reader(byte[] bytes) {
+		return new BsonBinaryReader(ByteBuffer.wrap(bytes));
+	}
+	
+	private byte[] toBytes(Document document) {
+		BasicOutputBuffer buffer = new BasicOutputBuffer();
+		documentCodec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+		return buffer.toByteArray();
+	}
+	
+	private Document toDocument(Mark mark) {
+		return MarkConverters.toDocument(mark);
+	}
+
+}
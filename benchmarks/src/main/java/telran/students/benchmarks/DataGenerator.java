@@ -0,0 +1,77 @@
+package telran.students.benchmarks;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import telran.students.dto.Mark;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+
+//reproducible generator of students and marks by DataSpec
+public class DataGenerator {
+	public static final long FIRST_ID = 1;
+	final DataSpec spec;
+	final double[] subjectsCumulativeProbabilities;
+
+	public DataGenerator(DataSpec spec) {
+		this.spec = spec;
+		subjectsCumulativeProbabilities = new double[spec.nSubjects()];
+		double sum = 0;
+		for(int i = 0; i < spec.nSubjects(); i++) {
+			sum += 1 / Math.pow(i + 1, spec.subjectSkew());
+			subjectsCumulativeProbabilities[i] = sum;
+		}
+		for(int i = 0; i < spec.nSubjects(); i++) {
+			subjectsCumulativeProbabilities[i] /= sum;
+		}
+	}
+	
+	public DataSpec getSpec() {
+		return spec;
+	}
+
+	//students with marks in chronological order, the same for the same spec
+	public Stream<StudentDoc> students() {
+		Random random = new Random(spec.seed());
+		return LongStream.range(FIRST_ID, FIRST_ID + spec.nStudents()).mapToObj(id -> {
+			StudentDoc studentDoc = StudentDoc.of(student(id));
+			int nMarks = random.nextInt(2 * spec.avgMarks() + 1);
+			Stream.generate(() -> mark(random)).limit(nMarks).sorted(Comparator.comparing(Mark::date))
+				.forEach(studentDoc::addMark);
+			return studentDoc;
+		});
+	}
+	
+	public Student student(long id) {
+		return new Student(id, "name" + id, phone(id));
+	}
+	
+	public String phone(long id) {
+		return String.format("05%d-%07d", id % 10, id);
+	}
+	
+	public String subject(int index) {
+		return "subject" + index;
+	}
+	
+	public Mark mark(Random random) {
+		int score = (int) Math.round(spec.avgScore() + random.nextGaussian() * spec.scoreDeviation());
+		return new Mark(subject(random), date(random), Math.max(0, Math.min(100, score)));
+	}
+	
+	public String subject(Random random) {
+		int index = Arrays.binarySearch(subjectsCumulativeProbabilities, random.nextDouble());
+		return subject(Math.min(index < 0 ? -index - 1 : index, spec.nSubjects() - 1));
+	}
+	
+	public LocalDate date(Random random) {
+		return spec.startDate().plusDays(random.nextInt(spec.periodDays()));
+	}
+	
+	public long studentId(Random random) {
+		return FIRST_ID + random.nextInt(spec.nStudents());
+	}
+
+}
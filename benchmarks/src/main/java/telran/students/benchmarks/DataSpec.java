@@ -0,0 +1,20 @@
+package telran.students.benchmarks;
+
+import java.time.LocalDate;
+
+//synthetic data set: nStudents students having from 0 to 2 * avgMarks marks each;
+//subject index is distributed by Zipf law with the given exponent (0 - uniform distribution),
+//dates are uniformly distributed over periodDays days from startDate, scores are normally distributed
+public record DataSpec(int nStudents, int avgMarks, int nSubjects, double subjectSkew,
+		LocalDate startDate, int periodDays, int avgScore, int scoreDeviation, long seed) {
+	public static final LocalDate START_DATE = LocalDate.parse("2023-09-01");
+	
+	public static DataSpec of(int nStudents, int avgMarks, int nSubjects, double subjectSkew) {
+		return of(nStudents, avgMarks, nSubjects, subjectSkew, 365);
+	}
+	
+	public static DataSpec of(int nStudents, int avgMarks, int nSubjects, double subjectSkew, int periodDays) {
+		return new DataSpec(nStudents, avgMarks, nSubjects, subjectSkew, START_DATE, periodDays, 75, 15, 1);
+	}
+
+}
@@ -0,0 +1,73 @@
+package telran.students.benchmarks;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.BooleanOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+
+import telran.students.dto.Mark;
+import telran.students.dto.ScoreStatistics;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentQueries;
+
+//marks of a random month of the student having years of marks: $filter by the epoch day (dayFilter)
+//against $filter by the date (dateFilter); and score statistics of a random month over all students
+//matched by the marks.day index; years of marks are given by e.g. -p periodDays=1825,3650
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateRangeBenchmarks {
+	static final int RANGE_DAYS = 30;
+
+	@State(Scope.Benchmark)
+	public static class MongoState {
+		MongoTemplate mongoTemplate;
+
+		@Setup(Level.Trial)
+		public void setUp(ServiceState state) {
+			mongoTemplate = state.context.getBean(MongoTemplate.class);
+		}
+	}
+
+	@Benchmark
+	public List<Mark> dayFilter(ServiceState state) {
+		LocalDate from = randomFrom(state);
+		return state.studentsService.getStudentMarksAtDates(state.randomId(), from, from.plusDays(RANGE_DAYS - 1));
+	}
+
+	@Benchmark
+	public Document dateFilter(ServiceState state, MongoState mongoState) {
+		LocalDate from = randomFrom(state);
+		Date fromDate = Date.from(from.atStartOfDay(ZoneOffset.UTC).toInstant());
+		Date toDate = Date.from(from.plusDays(RANGE_DAYS - 1).atStartOfDay(ZoneOffset.UTC).toInstant());
+		return mongoState.mongoTemplate.aggregate(StudentQueries.studentMarksFilterPipeline(state.randomId(),
+				BooleanOperators.And.and(
+						ComparisonOperators.Gte.valueOf("mark.date").greaterThanEqualToValue(fromDate),
+						ComparisonOperators.Lte.valueOf("mark.date").lessThanEqualToValue(toDate))),
+				StudentDoc.class, Document.class).getUniqueMappedResult();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ScoreStatistics monthScoreStatistics(ServiceState state) {
+		LocalDate from = randomFrom(state);
+		return state.studentsService.getScoreStatistics(null, null, from, from.plusDays(RANGE_DAYS - 1), 10);
+	}
+
+	private static LocalDate randomFrom(ServiceState state) {
+		DataSpec spec = state.generator.getSpec();
+		return spec.startDate().plusDays(ThreadLocalRandom.current().nextInt(Math.max(1,
+				spec.periodDays() - RANGE_DAYS)));
+	}
+
+}
@@ -0,0 +1,50 @@
+package telran.students.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import telran.students.dto.Student;
+import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsPhoneIndex;
+
+//autocomplete lookups of random phone prefixes (the prefix of a student's phone of 3 to 8 characters):
+//anchored regex query served by the phone index at DB server against the in-memory phone index
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhonePrefixBenchmarks {
+	static final int LIMIT = 10;
+
+	@State(Scope.Benchmark)
+	public static class PhoneIndexState {
+		StudentsPhoneIndex phoneIndex;
+
+		@Setup(Level.Trial)
+		public void setUp(ServiceState state) {
+			phoneIndex = new StudentsPhoneIndex(state.context.getBean(StudentRepo.class));
+			phoneIndex.reload();
+		}
+	}
+
+	@Benchmark
+	public List<Student> regexQuery(ServiceState state) {
+		return state.studentsService.getStudentsByPhonePrefix(randomPrefix(state), LIMIT);
+	}
+
+	@Benchmark
+	public List<Student> phoneIndex(ServiceState state, PhoneIndexState indexState) {
+		return indexState.phoneIndex.findByPhonePrefix(randomPrefix(state), LIMIT);
+	}
+
+	private static String randomPrefix(ServiceState state) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String phone = state.generator.phone(state.randomId());
+		return phone.substring(0, random.nextInt(3, 9));
+	}
+
+}
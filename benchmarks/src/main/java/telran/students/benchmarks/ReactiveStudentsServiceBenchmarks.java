@@ -0,0 +1,49 @@
+package telran.students.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import telran.students.dto.*;
+
+//reactive counterparts of the StudentsServiceBenchmarks read and write paths, to be compared with the blocking ones;
+//each call is awaited, so the numbers show the cost of one call, the concurrency gain is measured with -t
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReactiveStudentsServiceBenchmarks {
+	
+	@Benchmark
+	public List<Mark> addMark(ServiceState state) {
+		return state.reactiveStudentsService().addMark(state.randomId(),
+				state.generator.mark(ThreadLocalRandom.current())).collectList().block();
+	}
+	
+	@Benchmark
+	public List<Mark> getMarks(ServiceState state) {
+		return state.reactiveStudentsService().getMarks(state.randomId()).collectList().block();
+	}
+	
+	@Benchmark
+	public List<Mark> getStudentSubjectMarks(ServiceState state) {
+		return state.reactiveStudentsService().getStudentSubjectMarks(state.randomId(),
+				state.generator.subject(ThreadLocalRandom.current())).collectList().block();
+	}
+	
+	@Benchmark
+	public List<Student> getStudentsAllGoodMarks(ServiceState state) {
+		return state.reactiveStudentsService().getStudentsAllGoodMarks(StudentsServiceBenchmarks.GOOD_THRESHOLD)
+				.collectList().block();
+	}
+	
+	@Benchmark
+	public List<Student> getBestStudents(ServiceState state) {
+		return state.reactiveStudentsService().getBestStudents(StudentsServiceBenchmarks.N_STUDENTS)
+				.collectList().block();
+	}
+
+}
@@ -0,0 +1,48 @@
+package telran.students.benchmarks;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import telran.students.dto.ScoreStatistics;
+
+//scores distributions counted by scores at DB server; -p avgMarks=100 gives the collection of 1M marks,
+//where the statistics of all marks are expected within 1 s and the ones of a student within 5 ms
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreStatisticsBenchmarks {
+	static final int BIN_WIDTH = 10;
+	static final int DATES_DAYS = 30;
+
+	@Benchmark
+	public ScoreStatistics allMarks(ServiceState state) {
+		return state.studentsService.getScoreStatistics(null, null, null, null, BIN_WIDTH);
+	}
+
+	@Benchmark
+	public ScoreStatistics subjectMarks(ServiceState state) {
+		return state.studentsService.getScoreStatistics(null, randomSubject(state), null, null, BIN_WIDTH);
+	}
+
+	@Benchmark
+	public ScoreStatistics datesMarks(ServiceState state) {
+		LocalDate from = state.generator.date(ThreadLocalRandom.current());
+		return state.studentsService.getScoreStatistics(null, null, from, from.plusDays(DATES_DAYS), BIN_WIDTH);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public ScoreStatistics studentMarks(ServiceState state) {
+		return state.studentsService.getScoreStatistics(state.randomId(), null, null, null, BIN_WIDTH);
+	}
+
+	private static String randomSubject(ServiceState state) {
+		return state.generator.subject(ThreadLocalRandom.current());
+	}
+
+}
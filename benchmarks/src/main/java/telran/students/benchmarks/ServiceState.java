@@ -0,0 +1,94 @@
+package telran.students.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import telran.students.StudentsMarksApplication;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksBuckets;
+import telran.students.service.ReactiveStudentsService;
+import telran.students.service.StudentsChangeListener;
+import telran.students.service.StudentsService;
+
+//application context on embedded single node replica set filled with the synthetic data once per trial
+@State(Scope.Benchmark)
+public class ServiceState {
+	private static final int INSERT_CHUNK = 1000;
+	@Param("10000")
+	int nStudents;
+	@Param({"20", "200"})
+	int avgMarks;
+	@Param("10")
+	int nSubjects;
+	@Param("1.0")
+	double subjectSkew;
+	//days of the marks dates from DataSpec.START_DATE
+	@Param("365")
+	int periodDays;
+	//embedded or bucketed, reactive service benchmarks require embedded
+	@Param("embedded")
+	String storage;
+	@Param("false")
+	boolean timeSeries;
+	@Param("false")
+	boolean cache;
+	
+	ConfigurableApplicationContext context;
+	StudentsService studentsService;
+	DataGenerator generator;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new SpringApplicationBuilder(StudentsMarksApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("de.flapdoodle.mongodb.embedded.version=5.0.5",
+						"de.flapdoodle.mongodb.embedded.storage.repl-set-name=rs0",
+						"logging.level.root=warn",
+						"app.students.marks.storage=" + storage,
+						"app.students.marks.time-series.enabled=" + timeSeries,
+						"app.students.cache.enabled=" + cache)
+				.run();
+		studentsService = context.getBean(StudentsService.class);
+		generator = new DataGenerator(DataSpec.of(nStudents, avgMarks, nSubjects, subjectSkew, periodDays));
+		loadData();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	ReactiveStudentsService reactiveStudentsService() {
+		return context.getBean(ReactiveStudentsService.class);
+	}
+	
+	long randomId() {
+		return generator.studentId(ThreadLocalRandom.current());
+	}
+	
+	private void loadData() {
+		MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+		mongoTemplate.remove(new Query(), StudentDoc.class);
+		mongoTemplate.remove(new Query(), MarksBucketDoc.class);
+		List<StudentDoc> chunk = new ArrayList<>();
+		Iterator<StudentDoc> it = generator.students().iterator();
+		while(it.hasNext()) {
+			chunk.add(it.next());
+			if(chunk.size() == INSERT_CHUNK || !it.hasNext()) {
+				mongoTemplate.insert(chunk, StudentDoc.class);
+				chunk = new ArrayList<>();
+			}
+		}
+		context.getBeanProvider(MarksBuckets.class).ifAvailable(MarksBuckets::moveEmbeddedMarks);
+		context.getBeansOfType(StudentsChangeListener.class).values().forEach(StudentsChangeListener::reload);
+	}
+
+}
@@ -0,0 +1,70 @@
+package telran.students.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.repo.ShardedAggregations;
+import telran.students.repo.StudentRepo;
+
+//whole collection reports by the single query (single*) against the queries over the concurrent id ranges
+//(sharded*) for each parallelism; scaling is bounded by the cores of DB server, e.g. on large data
+//-p nStudents=1000000 -p parallelism=1,2,4,8,16
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardedAggregationsBenchmarks {
+	static final int AVG_SCORE_THRESHOLD = 80;
+	static final int N_STUDENTS = 10;
+
+	@State(Scope.Benchmark)
+	public static class ShardedState {
+		@Param({"2", "4", "8"})
+		int parallelism;
+		StudentRepo studentRepo;
+		ShardedAggregations shardedAggregations;
+
+		@Setup(Level.Trial)
+		public void setUp(ServiceState state) {
+			studentRepo = state.context.getBean(StudentRepo.class);
+			shardedAggregations = new ShardedAggregations(state.context.getBean(MongoTemplate.class), parallelism);
+		}
+	}
+
+	@Benchmark
+	public List<NameAvgScore> singleStudentAvgScoreGreater(ShardedState shardedState) {
+		return shardedState.studentRepo.aggregateStudentAvgScoreGreater(AVG_SCORE_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<NameAvgScore> shardedStudentAvgScoreGreater(ShardedState shardedState) {
+		return shardedState.shardedAggregations.findStudentAvgScoreGreater(AVG_SCORE_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<Student> singleBestStudents(ShardedState shardedState) {
+		return shardedState.studentRepo.aggregateBestStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<Student> shardedBestStudents(ShardedState shardedState) {
+		return shardedState.shardedAggregations.findBestStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<String> singleWorstStudents(ShardedState shardedState) {
+		return shardedState.studentRepo.aggregateWorstStudents(N_STUDENTS);
+	}
+
+	@Benchmark
+	public List<String> shardedWorstStudents(ShardedState shardedState) {
+		return shardedState.shardedAggregations.findWorstStudents(N_STUDENTS);
+	}
+
+}
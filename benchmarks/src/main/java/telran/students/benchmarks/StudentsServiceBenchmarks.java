@@ -0,0 +1,202 @@
+package telran.students.benchmarks;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import telran.students.dto.*;
+
+//latency of every StudentsService method on the synthetic data set;
+//write benchmarks grow the data during the trial, addMark shows the cost of growing marks array
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentsServiceBenchmarks {
+	static final int GOOD_THRESHOLD = 50;
+	static final int AVG_SCORE_THRESHOLD = 80;
+	static final int SUBJECT_THRESHOLD = 60;
+	static final int N_STUDENTS = 10;
+	static final int PAGE_SIZE = 100;
+	static final int DATES_DAYS = 30;
+	static final int BULK_MARKS = 1000;
+	static final AtomicLong newIds = new AtomicLong(-1);
+	
+	@Benchmark
+	public Student addRemoveStudent(ServiceState state) {
+		long id = newIds.getAndDecrement();
+		state.studentsService.addStudent(new Student(id, "name" + id, "phone" + id));
+		return state.studentsService.removeStudent(id);
+	}
+	
+	@Benchmark
+	public Student updatePhone(ServiceState state) {
+		long id = state.randomId();
+		return state.studentsService.updatePhone(id, "phone" + newIds.getAndDecrement());
+	}
+	
+	@Benchmark
+	public List<Mark> addMark(ServiceState state) {
+		return state.studentsService.addMark(state.randomId(), state.generator.mark(ThreadLocalRandom.current()));
+	}
+	
+	@Benchmark
+	public BulkMarksResult addMarks(ServiceState state) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return state.studentsService.addMarks(Stream.generate(() -> new IdMark(state.randomId(),
+				state.generator.mark(random))).limit(BULK_MARKS));
+	}
+	
+	@Benchmark
+	public List<Mark> getMarks(ServiceState state) {
+		return state.studentsService.getMarks(state.randomId());
+	}
+	
+	@Benchmark
+	public Student getStudentByPhone(ServiceState state) {
+		return state.studentsService.getStudentByPhone(state.generator.phone(state.randomId()));
+	}
+	
+	@Benchmark
+	public List<Student> getStudentsByPhonePrefix(ServiceState state) {
+		return state.studentsService.getStudentsByPhonePrefix(phonePrefix());
+	}
+	
+	@Benchmark
+	public List<Student> getStudentsAllGoodMarks(ServiceState state) {
+		return state.studentsService.getStudentsAllGoodMarks(GOOD_THRESHOLD);
+	}
+	
+	@Benchmark
+	public List<Student> getStudentsFewMarks(ServiceState state) {
+		return state.studentsService.getStudentsFewMarks(state.avgMarks / 2);
+	}
+	
+	@Benchmark
+	public List<Student> getStudentsAllGoodMarksSubject(ServiceState state) {
+		return state.studentsService.getStudentsAllGoodMarksSubject(randomSubject(state), SUBJECT_THRESHOLD);
+	}
+	
+	@Benchmark
+	public List<Student> getStudentsMarksAmountBetween(ServiceState state) {
+		return state.studentsService.getStudentsMarksAmountBetween(state.avgMarks / 2, state.avgMarks);
+	}
+	
+	@Benchmark
+	public List<Mark> getStudentSubjectMarksOnClientFilter(ServiceState state) {
+		return state.studentsService.getStudentSubjectMarksOnClientFilter(state.randomId(), randomSubject(state));
+	}
+	
+	@Benchmark
+	public List<Mark> getStudentSubjectMarks(ServiceState state) {
+		return state.studentsService.getStudentSubjectMarks(state.randomId(), randomSubject(state));
+	}
+	
+	@Benchmark
+	public List<NameAvgScore> getStudentAvgScoreGreater(ServiceState state) {
+		return state.studentsService.getStudentAvgScoreGreater(AVG_SCORE_THRESHOLD);
+	}
+	
+	@Benchmark
+	public List<Mark> getStudentMarksAtDates(ServiceState state) {
+		LocalDate from = state.generator.date(ThreadLocalRandom.current());
+		return state.studentsService.getStudentMarksAtDates(state.randomId(), from, from.plusDays(DATES_DAYS));
+	}
+	
+	@Benchmark
+	public List<Student> getBestStudents(ServiceState state) {
+		return state.studentsService.getBestStudents(N_STUDENTS);
+	}
+	
+	@Benchmark
+	public List<String> getWorstStudents(ServiceState state) {
+		return state.studentsService.getWorstStudents(N_STUDENTS);
+	}
+	
+	@Benchmark
+	public List<PeriodAvgScore> getAvgScoreByMonths(ServiceState state) {
+		LocalDate from = state.generator.getSpec().startDate();
+		return state.studentsService.getAvgScoreByMonths(from, from.plusMonths(3), randomSubject(state));
+	}
+	
+	@Benchmark
+	public void streamStudentsByPhonePrefix(ServiceState state, Blackhole blackhole) {
+		consume(state.studentsService.streamStudentsByPhonePrefix(phonePrefix()), blackhole);
+	}
+	
+	@Benchmark
+	public void streamStudentsAllGoodMarks(ServiceState state, Blackhole blackhole) {
+		consume(state.studentsService.streamStudentsAllGoodMarks(GOOD_THRESHOLD), blackhole);
+	}
+	
+	@Benchmark
+	public void streamStudentsFewMarks(ServiceState state, Blackhole blackhole) {
+		consume(state.studentsService.streamStudentsFewMarks(state.avgMarks / 2), blackhole);
+	}
+	
+	@Benchmark
+	public void streamStudentsAllGoodMarksSubject(ServiceState state, Blackhole blackhole) {
+		consume(state.studentsService.streamStudentsAllGoodMarksSubject(randomSubject(state), SUBJECT_THRESHOLD),
+				blackhole);
+	}
+	
+	@Benchmark
+	public void streamStudentsMarksAmountBetween(ServiceState state, Blackhole blackhole) {
+		consume(state.studentsService.streamStudentsMarksAmountBetween(state.avgMarks / 2, state.avgMarks),
+				blackhole);
+	}
+	
+	@Benchmark
+	public void streamStudentAvgScoreGreater(ServiceState state, Blackhole blackhole) {
+		consume(state.studentsService.streamStudentAvgScoreGreater(AVG_SCORE_THRESHOLD), blackhole);
+	}
+	
+	//keyset paging: the last page costs the same as the first one
+	@Benchmark
+	public void pageStudentsByPhonePrefix(ServiceState state, Blackhole blackhole) {
+		String phonePrefix = phonePrefix();
+		String pageToken = null;
+		do {
+			KeysetPage<Student> page = state.studentsService.getStudentsByPhonePrefix(phonePrefix, pageToken, PAGE_SIZE);
+			blackhole.consume(page.items());
+			pageToken = page.nextPageToken();
+		} while(pageToken != null);
+	}
+	
+	@Benchmark
+	public KeysetPage<Student> getBestStudentsPage(ServiceState state) {
+		return state.studentsService.getBestStudents(null, PAGE_SIZE);
+	}
+	
+	@Benchmark
+	public KeysetPage<String> getWorstStudentsPage(ServiceState state) {
+		return state.studentsService.getWorstStudents(null, PAGE_SIZE);
+	}
+	
+	@Benchmark
+	public KeysetPage<NameAvgScore> getStudentAvgScoreGreaterPage(ServiceState state) {
+		return state.studentsService.getStudentAvgScoreGreater(AVG_SCORE_THRESHOLD, null, PAGE_SIZE);
+	}
+	
+	private static String phonePrefix() {
+		return "05" + ThreadLocalRandom.current().nextInt(10);
+	}
+	
+	private static String randomSubject(ServiceState state) {
+		return state.generator.subject(ThreadLocalRandom.current());
+	}
+	
+	private static <T> void consume(Stream<T> stream, Blackhole blackhole) {
+		try(stream) {
+			stream.forEach(blackhole::consume);
+		}
+	}
+
+}
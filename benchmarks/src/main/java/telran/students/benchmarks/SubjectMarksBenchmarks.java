@@ -0,0 +1,78 @@
+package telran.students.benchmarks;
+
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import telran.students.dto.Mark;
+import telran.students.dto.MarksOnly;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarkConverters;
+import telran.students.repo.StudentQueries;
+import telran.students.repo.StudentRepo;
+
+//marks of one subject of a student: existence check with the whole marks array filtered at client,
+//existence check with the unwinding pipeline, and the single $filter projection query;
+//the difference grows with the marks arrays, e.g. -p avgMarks=2000
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubjectMarksBenchmarks {
+
+	@State(Scope.Benchmark)
+	public static class RepoState {
+		StudentRepo studentRepo;
+		MongoTemplate mongoTemplate;
+
+		@Setup(Level.Trial)
+		public void setUp(ServiceState state) {
+			studentRepo = state.context.getBean(StudentRepo.class);
+			mongoTemplate = state.context.getBean(MongoTemplate.class);
+		}
+	}
+
+	@Benchmark
+	public List<Mark> clientFilter(ServiceState state, RepoState repoState) {
+		long id = state.randomId();
+		String subject = randomSubject(state);
+		if(!repoState.studentRepo.existsById(id)) {
+			throw new IllegalStateException();
+		}
+		MarksOnly marksOnly = repoState.studentRepo.findByIdAndMarksSubject(id, subject);
+		return marksOnly == null ? List.of()
+				: marksOnly.getMarks().stream().filter(m -> m.subject().equals(subject)).toList();
+	}
+
+	@Benchmark
+	public List<Mark> unwindPipeline(ServiceState state, RepoState repoState) {
+		long id = state.randomId();
+		String subject = randomSubject(state);
+		if(!repoState.studentRepo.existsById(id)) {
+			throw new IllegalStateException();
+		}
+		return repoState.mongoTemplate.aggregate(StudentQueries.studentSubjectMarksPipeline(id, subject),
+				StudentDoc.class, Document.class).getMappedResults().stream()
+				.map(d -> MarkConverters.toMark(d, subject, ZoneOffset.UTC)).toList();
+	}
+
+	@Benchmark
+	public List<Mark> filterProjection(ServiceState state, RepoState repoState) {
+		List<Mark> res = repoState.studentRepo.findStudentSubjectMarks(state.randomId(), randomSubject(state));
+		if(res == null) {
+			throw new IllegalStateException();
+		}
+		return res;
+	}
+
+	private static String randomSubject(ServiceState state) {
+		return state.generator.subject(ThreadLocalRandom.current());
+	}
+
+}
@@ -2,12 +2,18 @@ package telran.students;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telran.students.migration.StudentsCommandMode;
 
 @SpringBootApplication
 public class StudentsMarksApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(StudentsMarksApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(StudentsMarksApplication.class, args);
+		if(StudentsCommandMode.isCommand(context.getEnvironment())) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
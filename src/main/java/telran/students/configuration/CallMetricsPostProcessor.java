@@ -0,0 +1,136 @@
+package telran.students.configuration;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.KeysetPage;
+import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsService;
+
+//times every call of StudentsService and StudentRepo (including the aggregate, update, stream and page fragments)
+//and records sizes of the collection results and numbers of Mongo commands (round trips) of the calls;
+//calls slower than the threshold are logged
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CallMetricsPostProcessor implements BeanPostProcessor {
+	static final String SERVICE_METRIC = "students.service";
+	static final String REPO_METRIC = "students.repo";
+	//post processor is created before the other beans, so the registry is resolved lazily
+	final ObjectProvider<MeterRegistry> registryProvider;
+	final Environment environment;
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		String metric = bean instanceof StudentsService ? SERVICE_METRIC
+				: bean instanceof StudentRepo ? REPO_METRIC : null;
+		if(metric == null) {
+			return bean;
+		}
+		Duration slowCallThreshold = environment.getProperty("app.students.metrics.slow-call-threshold",
+				Duration.class, Duration.ofMillis(200));
+		MethodInterceptor interceptor = new CallMetricsInterceptor(metric, slowCallThreshold.toNanos());
+		Object res = bean;
+		if(bean instanceof Advised advised && !advised.isFrozen()) {
+			//outermost advice, so the transaction is included into the call time
+			advised.addAdvice(0, interceptor);
+		} else {
+			ProxyFactory proxyFactory = new ProxyFactory(bean);
+			proxyFactory.addAdvice(interceptor);
+			res = proxyFactory.getProxy();
+		}
+		log.debug("bean {} is timed as {}", beanName, metric);
+		return res;
+	}
+
+	private record MethodMeters(Timer timer, DistributionSummary resultSize, DistributionSummary commands,
+			String method) {
+	}
+
+	@RequiredArgsConstructor
+	private class CallMetricsInterceptor implements MethodInterceptor {
+		final String metric;
+		final long slowCallThreshold;
+		final Map<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			Method method = invocation.getMethod();
+			if(method.getDeclaringClass() == Object.class) {
+				return invocation.proceed();
+			}
+			MeterRegistry registry = registryProvider.getObject();
+			MethodMeters methodMeters = meters.computeIfAbsent(method, m -> methodMeters(registry, m));
+			long startCommands = MongoCommandMetrics.threadCommands();
+			long start = System.nanoTime();
+			Object res = null;
+			try {
+				res = invocation.proceed();
+			} catch (Throwable e) {
+				long time = System.nanoTime() - start;
+				timer(registry, method, e.getClass().getSimpleName()).record(time, TimeUnit.NANOSECONDS);
+				methodMeters.commands().record(MongoCommandMetrics.threadCommands() - startCommands);
+				checkSlowCall(methodMeters, time, invocation);
+				throw e;
+			}
+			long time = System.nanoTime() - start;
+			methodMeters.timer().record(time, TimeUnit.NANOSECONDS);
+			//getMore commands of the returned streams are issued after the call and aren't included
+			methodMeters.commands().record(MongoCommandMetrics.threadCommands() - startCommands);
+			int size = resultSize(res);
+			if(size >= 0) {
+				methodMeters.resultSize().record(size);
+			}
+			checkSlowCall(methodMeters, time, invocation);
+			return res;
+		}
+
+		private MethodMeters methodMeters(MeterRegistry registry, Method method) {
+			DistributionSummary resultSize = DistributionSummary.builder(metric + ".result.size")
+					.tag("method", method.getName()).tag("arity", String.valueOf(method.getParameterCount()))
+					.publishPercentileHistogram().register(registry);
+			DistributionSummary commands = DistributionSummary.builder(metric + ".commands")
+					.tag("method", method.getName()).tag("arity", String.valueOf(method.getParameterCount()))
+					.register(registry);
+			return new MethodMeters(timer(registry, method, "none"), resultSize, commands,
+					method.getDeclaringClass().getSimpleName() + "." + method.getName());
+		}
+
+		private Timer timer(MeterRegistry registry, Method method, String exception) {
+			return Timer.builder(metric).tag("method", method.getName())
+					.tag("arity", String.valueOf(method.getParameterCount())).tag("exception", exception)
+					.publishPercentileHistogram().register(registry);
+		}
+
+		private void checkSlowCall(MethodMeters methodMeters, long time, MethodInvocation invocation) {
+			if(time > slowCallThreshold) {
+				log.warn("slow call {} took {} ms, arguments {}", methodMeters.method(),
+						TimeUnit.NANOSECONDS.toMillis(time), Arrays.toString(invocation.getArguments()));
+			}
+		}
+
+		//streams are consumed later than the call, so their sizes are unknown
+		private int resultSize(Object res) {
+			return res instanceof Collection<?> collection ? collection.size()
+					: res instanceof KeysetPage<?> page ? page.items().size() : -1;
+		}
+	}
+
+}
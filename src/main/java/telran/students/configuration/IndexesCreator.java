@@ -0,0 +1,51 @@
+package telran.students.configuration;
+
+import java.util.Optional;
+
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksBuckets;
+import telran.students.repo.MarksTimeSeries;
+import telran.students.repo.StudentsProjections;
+
+//creates indexes required by StudentRepo queries; creation of an existing index is no-op
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndexesCreator {
+	final MongoTemplate mongoTemplate;
+	final Optional<MarksBuckets> marksBuckets;
+	final Optional<MarksTimeSeries> marksTimeSeries;
+	final Optional<StudentsProjections> projections;
+	
+	@PostConstruct
+	void createIndexes() {
+		IndexOperations indexOperations = mongoTemplate.indexOps(StudentDoc.class);
+		Index[] indexes = {
+			new Index("phone", Direction.ASC).unique(),
+			new Index("marks.subject", Direction.ASC).on("marks.score", Direction.ASC),
+			new Index("marks.day", Direction.ASC),
+			new Index("markCount", Direction.ASC),
+			new Index("minScore", Direction.ASC),
+			new Index("maxScore", Direction.ASC),
+			new Index("goodMarkCount", Direction.DESC).on("_id", Direction.ASC),
+			new Index("scoreSum", Direction.ASC).on("_id", Direction.ASC)
+		};
+		for(Index index: indexes) {
+			String name = indexOperations.ensureIndex(index);
+			log.debug("index {} ensured", name);
+		}
+		marksBuckets.ifPresent(MarksBuckets::createIndexes);
+		marksTimeSeries.ifPresent(MarksTimeSeries::createIndexes);
+		projections.ifPresent(StudentsProjections::createIndexes);
+	}
+
+}
@@ -0,0 +1,122 @@
+package telran.students.configuration;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.mongodb.MongoException;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+//numbers of documents reported by the server in command replies, command errors by their labels
+//(transient transaction and retryable write errors precede the retries) and slow commands logging;
+//command latencies are recorded by Spring Boot as mongodb.driver.commands;
+//numbers of the started commands are counted per thread for the round trips of the calls
+@Configuration
+@Slf4j
+public class MongoCommandMetrics {
+	static final String DOCUMENTS_METRIC = "students.mongo.documents";
+	static final String ERRORS_METRIC = "students.mongo.command.errors";
+	static final String RETRYABLE_WRITE_ERROR_LABEL = "RetryableWriteError";
+	//the synchronous driver starts commands in the calling thread
+	private static final ThreadLocal<long[]> THREAD_COMMANDS = ThreadLocal.withInitial(() -> new long[1]);
+
+	//number of the commands started by the current thread
+	public static long threadCommands() {
+		return THREAD_COMMANDS.get()[0];
+	}
+
+	@Bean
+	MongoClientSettingsBuilderCustomizer mongoCommandMetricsCustomizer(ObjectProvider<MeterRegistry> registryProvider,
+			@Value("${app.students.metrics.slow-command-threshold:100ms}") Duration slowCommandThreshold) {
+		CommandListener listener = new DocumentsCommandListener(registryProvider, slowCommandThreshold.toNanos());
+		return builder -> builder.addCommandListener(listener);
+	}
+
+	private static class DocumentsCommandListener implements CommandListener {
+		final ObjectProvider<MeterRegistry> registryProvider;
+		final long slowCommandThreshold;
+		//collection names of the running commands for the slow commands log
+		final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+		DocumentsCommandListener(ObjectProvider<MeterRegistry> registryProvider, long slowCommandThreshold) {
+			this.registryProvider = registryProvider;
+			this.slowCommandThreshold = slowCommandThreshold;
+		}
+
+		@Override
+		public void commandStarted(CommandStartedEvent event) {
+			THREAD_COMMANDS.get()[0]++;
+			BsonValue collection = event.getCommand().get(event.getCommandName());
+			if(collection != null && collection.isString()) {
+				collections.put(event.getRequestId(), collection.asString().getValue());
+			}
+		}
+
+		@Override
+		public void commandSucceeded(CommandSucceededEvent event) {
+			String collection = collections.remove(event.getRequestId());
+			BsonDocument response = event.getResponse();
+			MeterRegistry registry = registryProvider.getIfAvailable();
+			if(registry != null) {
+				String command = event.getCommandName();
+				BsonDocument cursor = response.getDocument("cursor", null);
+				if(cursor != null) {
+					String batch = cursor.containsKey("firstBatch") ? "firstBatch" : "nextBatch";
+					count(registry, command, "returned", cursor.getArray(batch, new BsonArray()).size());
+				}
+				if(response.isNumber("n")) {
+					count(registry, command, "matched", response.getNumber("n").intValue());
+				}
+				if(response.isNumber("nModified")) {
+					count(registry, command, "modified", response.getNumber("nModified").intValue());
+				}
+			}
+			checkSlowCommand(event.getCommandName(), collection, event.getElapsedTime(TimeUnit.NANOSECONDS));
+		}
+
+		@Override
+		public void commandFailed(CommandFailedEvent event) {
+			String collection = collections.remove(event.getRequestId());
+			MeterRegistry registry = registryProvider.getIfAvailable();
+			if(registry != null) {
+				String label = "none";
+				if(event.getThrowable() instanceof MongoException e) {
+					label = e.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+							? MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL
+							: e.hasErrorLabel(RETRYABLE_WRITE_ERROR_LABEL)
+							? RETRYABLE_WRITE_ERROR_LABEL : "none";
+				}
+				registry.counter(ERRORS_METRIC, "command", event.getCommandName(), "label", label).increment();
+			}
+			checkSlowCommand(event.getCommandName(), collection, event.getElapsedTime(TimeUnit.NANOSECONDS));
+		}
+
+		private void count(MeterRegistry registry, String command, String type, int nDocuments) {
+			registry.counter(DOCUMENTS_METRIC, "command", command, "type", type).increment(nDocuments);
+		}
+
+		private void checkSlowCommand(String command, String collection, long time) {
+			if(time > slowCommandThreshold) {
+				log.warn("slow mongo command {} on {} took {} ms", command, collection,
+						TimeUnit.NANOSECONDS.toMillis(time));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package telran.students.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import telran.students.repo.MarkConverters;
+
+//java.time values are converted by the driver codecs in UTC, so stored dates don't depend on the server zone;
+//dates of the legacy marks are read in the legacy zone until they are migrated
+@Configuration
+public class MongoConversionsConfiguration {
+	@Bean
+	MongoCustomConversions mongoCustomConversions(
+			@Value("${app.students.migration.epoch-days.legacy-zone:}") String legacyZone) {
+		return MongoCustomConversions.create(adapter -> adapter.useNativeDriverJavaTimeCodecs()
+				.registerConverters(MarkConverters.converters(MarkConverters.legacyZone(legacyZone))));
+	}
+}
@@ -0,0 +1,28 @@
+package telran.students.controller;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import lombok.extern.slf4j.Slf4j;
+import telran.students.service.BufferFullException;
+
+//overload isn't an error of the client: 503 with the delay of the retry
+@RestControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class OverloadExceptionHandler {
+	static final String RETRY_AFTER_SECONDS = "1";
+
+	@ExceptionHandler(BufferFullException.class)
+	ResponseEntity<String> bufferFull(BufferFullException e) {
+		log.warn("overload: {}", e.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+				.body(e.getMessage());
+	}
+
+}
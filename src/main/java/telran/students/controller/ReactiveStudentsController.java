@@ -0,0 +1,102 @@
+package telran.students.controller;
+
+import java.time.LocalDate;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import telran.students.dto.*;
+import telran.students.service.ReactiveStudentsService;
+
+//Flux results are streamed as NDJSON, one element per line, without collecting them into a list
+@RestController
+@ConditionalOnExpression("'${app.students.marks.storage:embedded}' == 'embedded' and !${app.students.marks.time-series.enabled:false}"
+		+ " and !${app.students.write-behind.enabled:false}")
+@RequestMapping("reactive/students")
+@RequiredArgsConstructor
+public class ReactiveStudentsController {
+	static final String NDJSON = MediaType.APPLICATION_NDJSON_VALUE;
+	final ReactiveStudentsService studentsService;
+	
+	@PostMapping
+	Mono<Student> addStudent(@RequestBody Student student) {
+		return studentsService.addStudent(student);
+	}
+	
+	@PutMapping("{id}/phone")
+	Mono<Student> updatePhone(@PathVariable long id, @RequestParam String phone) {
+		return studentsService.updatePhone(id, phone);
+	}
+	
+	@PostMapping(value = "{id}/marks", produces = NDJSON)
+	Flux<Mark> addMark(@PathVariable long id, @RequestBody Mark mark) {
+		return studentsService.addMark(id, mark);
+	}
+	
+	@DeleteMapping("{id}")
+	Mono<Student> removeStudent(@PathVariable long id) {
+		return studentsService.removeStudent(id);
+	}
+	
+	@GetMapping(value = "{id}/marks", produces = NDJSON)
+	Flux<Mark> getMarks(@PathVariable long id, @RequestParam(required = false) String subject,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		Flux<Mark> res = null;
+		if(subject != null) {
+			res = studentsService.getStudentSubjectMarks(id, subject);
+		} else if(from != null && to != null) {
+			res = studentsService.getStudentMarksAtDates(id, from, to);
+		} else {
+			res = studentsService.getMarks(id);
+		}
+		return res;
+	}
+	
+	@GetMapping("phone/{phone}")
+	Mono<Student> getStudentByPhone(@PathVariable String phone) {
+		return studentsService.getStudentByPhone(phone);
+	}
+	
+	@GetMapping(value = "phone-prefix/{phonePrefix}", produces = NDJSON)
+	Flux<Student> getStudentsByPhonePrefix(@PathVariable String phonePrefix) {
+		return studentsService.getStudentsByPhonePrefix(phonePrefix);
+	}
+	
+	@GetMapping(value = "good", produces = NDJSON)
+	Flux<Student> getStudentsAllGoodMarks(@RequestParam int threshold, @RequestParam(required = false) String subject) {
+		return subject == null ? studentsService.getStudentsAllGoodMarks(threshold)
+				: studentsService.getStudentsAllGoodMarksSubject(subject, threshold);
+	}
+	
+	@GetMapping(value = "few-marks", produces = NDJSON)
+	Flux<Student> getStudentsFewMarks(@RequestParam int threshold) {
+		return studentsService.getStudentsFewMarks(threshold);
+	}
+	
+	@GetMapping(value = "marks-amount", produces = NDJSON)
+	Flux<Student> getStudentsMarksAmountBetween(@RequestParam int min, @RequestParam int max) {
+		return studentsService.getStudentsMarksAmountBetween(min, max);
+	}
+	
+	@GetMapping(value = "avg-score", produces = NDJSON)
+	Flux<NameAvgScore> getStudentAvgScoreGreater(@RequestParam int threshold) {
+		return studentsService.getStudentAvgScoreGreater(threshold);
+	}
+	
+	@GetMapping(value = "best", produces = NDJSON)
+	Flux<Student> getBestStudents(@RequestParam int n) {
+		return studentsService.getBestStudents(n);
+	}
+	
+	@GetMapping(value = "worst", produces = NDJSON)
+	Flux<String> getWorstStudents(@RequestParam int n) {
+		return studentsService.getWorstStudents(n);
+	}
+
+}
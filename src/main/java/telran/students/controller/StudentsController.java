@@ -0,0 +1,113 @@
+package telran.students.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.BulkMarksResult;
+import telran.students.dto.IdMark;
+import telran.students.dto.PeriodAvgScore;
+import telran.students.dto.ScoreStatistics;
+import telran.students.dto.Student;
+import telran.students.service.StudentsService;
+
+@RestController
+@RequestMapping("students")
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsController {
+	static final String NDJSON = "application/x-ndjson";
+	final StudentsService studentsService;
+	final ObjectMapper mapper;
+	
+	//request body is a stream of {"id":..., "mark":{...}} objects, one per line;
+	//the objects are parsed lazily while the service writes them chunk by chunk
+	@PostMapping(value = "marks", consumes = NDJSON)
+	BulkMarksResult addMarks(InputStream body) throws IOException {
+		try(MappingIterator<IdMark> it = mapper.readerFor(IdMark.class).readValues(body)) {
+			BulkMarksResult res = studentsService.addMarks(StreamSupport
+					.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false));
+			log.debug("bulk marks: added {}, failures {}", res.nMarksAdded(), res.failures().size());
+			return res;
+		}
+	}
+	
+	//the GET methods below write results as NDJSON straight from DB cursor, one object per line
+	@GetMapping(value = "phone-prefix/{phonePrefix}", produces = NDJSON)
+	StreamingResponseBody getStudentsByPhonePrefix(@PathVariable String phonePrefix) {
+		return ndjson(() -> studentsService.streamStudentsByPhonePrefix(phonePrefix));
+	}
+	
+	@GetMapping("phone-prefix/{phonePrefix}/autocomplete")
+	List<Student> getStudentsByPhonePrefix(@PathVariable String phonePrefix,
+			@RequestParam(defaultValue = "10") int limit) {
+		return studentsService.getStudentsByPhonePrefix(phonePrefix, limit);
+	}
+	
+	@GetMapping(value = "good", produces = NDJSON)
+	StreamingResponseBody getStudentsAllGoodMarks(@RequestParam int threshold,
+			@RequestParam(required = false) String subject) {
+		return ndjson(() -> subject == null ? studentsService.streamStudentsAllGoodMarks(threshold)
+				: studentsService.streamStudentsAllGoodMarksSubject(subject, threshold));
+	}
+	
+	@GetMapping(value = "few-marks", produces = NDJSON)
+	StreamingResponseBody getStudentsFewMarks(@RequestParam int threshold) {
+		return ndjson(() -> studentsService.streamStudentsFewMarks(threshold));
+	}
+	
+	@GetMapping(value = "marks-amount", produces = NDJSON)
+	StreamingResponseBody getStudentsMarksAmountBetween(@RequestParam int min, @RequestParam int max) {
+		return ndjson(() -> studentsService.streamStudentsMarksAmountBetween(min, max));
+	}
+	
+	@GetMapping(value = "avg-score", produces = NDJSON)
+	StreamingResponseBody getStudentAvgScoreGreater(@RequestParam int threshold) {
+		return ndjson(() -> studentsService.streamStudentAvgScoreGreater(threshold));
+	}
+	
+	@GetMapping("avg-score/months")
+	List<PeriodAvgScore> getAvgScoreByMonths(
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(required = false) String subject) {
+		return studentsService.getAvgScoreByMonths(from, to, subject);
+	}
+	
+	@GetMapping("score-statistics")
+	ScoreStatistics getScoreStatistics(@RequestParam(required = false) Long id,
+			@RequestParam(required = false) String subject,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(defaultValue = "10") int binWidth) {
+		return studentsService.getScoreStatistics(id, subject, from, to, binWidth);
+	}
+	
+	private <T> StreamingResponseBody ndjson(Supplier<Stream<T>> streamSupplier) {
+		return out -> {
+			try(Stream<T> stream = streamSupplier.get();
+					SequenceWriter writer = mapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+				for(T object: (Iterable<T>) stream::iterator) {
+					writer.write(object);
+				}
+			}
+		};
+	}
+
+}
@@ -0,0 +1,7 @@
+package telran.students.dto;
+
+import java.util.List;
+
+public record BulkMarksResult(int nMarksAdded, List<MarkFailure> failures) {
+
+}
@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record IdMark(long id, Mark mark) {
+
+}
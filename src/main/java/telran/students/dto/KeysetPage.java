@@ -0,0 +1,8 @@
+package telran.students.dto;
+
+import java.util.List;
+
+//nextPageToken is null for the last page
+public record KeysetPage<T>(List<T> items, String nextPageToken) {
+
+}
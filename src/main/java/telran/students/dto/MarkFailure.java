@@ -0,0 +1,15 @@
+package telran.students.dto;
+
+public record MarkFailure(long id, Mark mark, String reason) {
+	//reason of the marks of a missing student, the only failure that isn't retried
+	public static final String STUDENT_NOT_FOUND = "student %d not found";
+
+	public static MarkFailure studentNotFound(long id, Mark mark) {
+		return new MarkFailure(id, mark, String.format(STUDENT_NOT_FOUND, id));
+	}
+
+	public boolean isStudentNotFound() {
+		return String.format(STUDENT_NOT_FOUND, id).equals(reason);
+	}
+
+}
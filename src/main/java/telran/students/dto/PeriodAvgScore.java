@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record PeriodAvgScore(String period, int avgScore, int nMarks) {
+
+}
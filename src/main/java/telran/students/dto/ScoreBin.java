@@ -0,0 +1,6 @@
+package telran.students.dto;
+
+//number of marks having scores from inclusive to exclusive
+public record ScoreBin(int from, int to, int nMarks) {
+
+}
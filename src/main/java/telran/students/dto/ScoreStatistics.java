@@ -0,0 +1,9 @@
+package telran.students.dto;
+
+import java.util.List;
+
+//exact distribution of the marks scores; scores are zeros and histogram is empty if there are no marks
+public record ScoreStatistics(int nMarks, double avgScore, int minScore, int medianScore, int p90Score,
+		int maxScore, List<ScoreBin> histogram) {
+
+}
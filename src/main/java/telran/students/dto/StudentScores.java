@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record StudentScores(Student student, int goodMarkCount, int scoreSum) {
+
+}
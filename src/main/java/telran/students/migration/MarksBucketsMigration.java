@@ -0,0 +1,26 @@
+package telran.students.migration;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.repo.MarksBuckets;
+
+//moves embedded marks to the buckets on switching to the bucketed storage mode
+@Component
+@ConditionalOnProperty(name = "app.students.migration.bucket-marks", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class MarksBucketsMigration implements ApplicationRunner {
+	final MarksBuckets marksBuckets;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long nStudents = marksBuckets.moveEmbeddedMarks();
+		log.info("marks of {} students have been moved to buckets", nStudents);
+	}
+
+}
@@ -0,0 +1,174 @@
+package telran.students.migration;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.bulk.BulkWriteResult;
+
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarkConverters;
+import telran.students.service.StudentsChangeListener;
+
+//rewrites marks stored before MarkConverters: the date at start of the day in the legacy zone
+//(the zone of the server that has written it) is replaced by the date in UTC and its epoch day.
+//Marks having the day, null for the marks without date, are kept as is, so the repeated migration finds nothing;
+//buckets get minDay / maxDay instead of minDate / maxDate. A document is updated only if its marks are still
+//as they have been read, the documents changed meanwhile by another instance are read again.
+//It runs on start before any other write and before the views are seeded,
+//the views including the time series are reloaded if any marks have been migrated
+@Component
+@ConditionalOnProperty(name = "app.students.migration.epoch-days", havingValue = "true")
+@Slf4j
+public class MarksEpochDaysMigration implements SmartLifecycle {
+	private static final String LEGACY_DATE_INDEX = "marks.date_1";
+	final MongoTemplate mongoTemplate;
+	final List<StudentsChangeListener> listeners;
+	final int chunkSize;
+	final ZoneId legacyZone;
+	private volatile boolean running;
+
+	public MarksEpochDaysMigration(MongoTemplate mongoTemplate, List<StudentsChangeListener> listeners,
+			@Value("${app.students.bulk.chunk.size:1000}") int chunkSize,
+			@Value("${app.students.migration.epoch-days.legacy-zone:}") String legacyZone) {
+		this.mongoTemplate = mongoTemplate;
+		this.listeners = listeners;
+		this.chunkSize = chunkSize;
+		this.legacyZone = MarkConverters.legacyZone(legacyZone);
+	}
+
+	@Override
+	public void start() {
+		migrate();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	//before the write-behind journal recovery, the views seeding and the web server
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE - 8192;
+	}
+
+	//returns number of the migrated students and buckets
+	public long migrate() {
+		Criteria legacyMarks = Criteria.where("marks").elemMatch(Criteria.where("day").exists(false));
+		long nStudents = migrate(StudentDoc.class, legacyMarks, marks -> new Update().set("marks", marks));
+		long nBuckets = migrate(MarksBucketDoc.class,
+				new Criteria().orOperator(legacyMarks, Criteria.where("minDate").exists(true)), this::bucketUpdate);
+		IndexOperations indexOperations = mongoTemplate.indexOps(StudentDoc.class);
+		if(indexOperations.getIndexInfo().stream().anyMatch(i -> i.getName().equals(LEGACY_DATE_INDEX))) {
+			indexOperations.dropIndex(LEGACY_DATE_INDEX);
+		}
+		if(nStudents + nBuckets > 0) {
+			listeners.forEach(StudentsChangeListener::reload);
+			log.info("marks dates of {} students and {} buckets have been migrated from zone {} to epoch days",
+					nStudents, nBuckets, legacyZone);
+		}
+		return nStudents + nBuckets;
+	}
+
+	private long migrate(Class<?> entityClass, Criteria criteria, Function<List<Document>, Update> marksUpdate) {
+		String collection = mongoTemplate.getCollectionName(entityClass);
+		long res = 0;
+		Query query = new Query(criteria);
+		List<Object> retriedIds;
+		do {
+			retriedIds = new ArrayList<>();
+			res += migrate(query, collection, marksUpdate, retriedIds);
+			query = new Query(new Criteria().andOperator(Criteria.where("_id").in(retriedIds), criteria));
+		} while(!retriedIds.isEmpty());
+		log.debug("{} documents of {} migrated", res, collection);
+		return res;
+	}
+
+	//ids of a chunk having any update not matched are added to retriedIds
+	private long migrate(Query query, String collection, Function<List<Document>, Update> marksUpdate,
+			List<Object> retriedIds) {
+		query.fields().include("marks");
+		long res = 0;
+		try(Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+			List<Object> ids = new ArrayList<>();
+			BulkOperations bulkOperations = null;
+			for(Document document: (Iterable<Document>) documents::iterator) {
+				if(bulkOperations == null) {
+					bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, collection);
+				}
+				List<Document> legacyMarks = document.getList("marks", Document.class);
+				List<Document> marks = legacyMarks.stream().map(this::migrateMark).toList();
+				bulkOperations.updateOne(new Query(Criteria.where("_id").is(document.get("_id"))
+						.and("marks").is(legacyMarks)), marksUpdate.apply(marks));
+				ids.add(document.get("_id"));
+				if(ids.size() == chunkSize) {
+					res += execute(bulkOperations, ids, retriedIds);
+					bulkOperations = null;
+					ids = new ArrayList<>();
+				}
+			}
+			if(bulkOperations != null) {
+				res += execute(bulkOperations, ids, retriedIds);
+			}
+		}
+		return res;
+	}
+
+	private long execute(BulkOperations bulkOperations, List<Object> ids, List<Object> retriedIds) {
+		BulkWriteResult result = bulkOperations.execute();
+		if(result.getMatchedCount() < ids.size()) {
+			log.debug("{} of {} documents changed while migrated, to be read again",
+					ids.size() - result.getMatchedCount(), ids.size());
+			retriedIds.addAll(ids);
+		}
+		return result.getModifiedCount();
+	}
+
+	private Document migrateMark(Document mark) {
+		Document res = mark;
+		if(!mark.containsKey("day")) {
+			Date date = mark.getDate("date");
+			LocalDate localDate = date == null ? null : MarkConverters.legacyDate(date.getTime(), legacyZone);
+			Number score = (Number) mark.get("score");
+			res = MarkConverters.toDocument(new Mark(mark.getString("subject"), localDate,
+					score == null ? 0 : score.intValue()));
+		}
+		return res;
+	}
+
+	private Update bucketUpdate(List<Document> marks) {
+		Update res = new Update().set("marks", marks).unset("minDate").unset("maxDate");
+		IntSummaryStatistics days = marks.stream().map(m -> (Number) m.get("day")).filter(Objects::nonNull)
+				.mapToInt(Number::intValue).summaryStatistics();
+		if(days.getCount() > 0) {
+			res.set("minDay", days.getMin()).set("maxDay", days.getMax());
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,26 @@
+package telran.students.migration;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.repo.StudentRepo;
+
+//backfills marks statistics of the documents saved before the statistics have been introduced
+@Component
+@ConditionalOnProperty(name = "app.students.migration.rebuild-statistics", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class MarksStatisticsRebuilder implements ApplicationRunner {
+	final StudentRepo studentRepo;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long nStudents = studentRepo.rebuildMarksStatistics();
+		log.info("marks statistics have been rebuilt for {} students", nStudents);
+	}
+
+}
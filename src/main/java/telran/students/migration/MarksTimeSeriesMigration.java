@@ -0,0 +1,26 @@
+package telran.students.migration;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.repo.MarksTimeSeries;
+
+//fills the time series with the marks existing before it has been enabled
+@Component
+@ConditionalOnProperty(name = "app.students.migration.time-series-marks", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class MarksTimeSeriesMigration implements ApplicationRunner {
+	final MarksTimeSeries marksTimeSeries;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long nMarks = marksTimeSeries.rebuild();
+		log.info("{} marks have been copied to time series", nMarks);
+	}
+
+}
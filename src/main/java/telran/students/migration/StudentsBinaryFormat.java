@@ -0,0 +1,322 @@
+package telran.students.migration;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import telran.students.dto.Mark;
+import telran.students.model.StudentDoc;
+
+//compact binary format of the students with their marks:
+//header {magic, version}, then blocks {payload length, number of students, payload, CRC32 of payload},
+//the block of no students ends the file. A student is {id delta from the previous one as zigzag varint,
+//name, phone, number of marks + 1 or 0 for no marks array, marks}; a string is {length + 1 or 0 for null,
+//UTF-8 bytes}; a mark is {subject code, date, score}. Subjects are coded by the dictionary built
+//in order of the first appearance: 0 is null, the next code after the known ones introduces a new subject
+//followed by its name. Date is zigzag varint of epoch day delta from the previous date + 1 or 0 for null.
+//Score from 0 to 254 is one byte, other scores are 255 followed by zigzag varint.
+//Marks statistics aren't stored, they are computed on reading
+public class StudentsBinaryFormat {
+	static final int MAGIC = 0x53544D4B;
+	static final byte VERSION = 1;
+	static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	private static final int BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+	private static final int LARGE_SCORE = 255;
+
+	private StudentsBinaryFormat() {
+	}
+
+	public static class Writer implements Closeable {
+		final FileChannel channel;
+		final int blockSize;
+		private ByteBuffer block;
+		private final ByteBuffer header = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE);
+		private final ByteBuffer trailer = ByteBuffer.allocateDirect(Integer.BYTES);
+		private final Map<String, Integer> subjects = new HashMap<>();
+		private int nBlockStudents;
+		private long prevId;
+		private long prevEpochDay;
+		private long nStudents;
+		private long nMarks;
+
+		public Writer(FileChannel channel) throws IOException {
+			this(channel, DEFAULT_BLOCK_SIZE);
+		}
+
+		public Writer(FileChannel channel, int blockSize) throws IOException {
+			this.channel = channel;
+			this.blockSize = blockSize;
+			block = ByteBuffer.allocate(blockSize + blockSize / 2);
+			ByteBuffer fileHeader = ByteBuffer.allocate(Integer.BYTES + 1).putInt(MAGIC).put(VERSION).flip();
+			writeFully(fileHeader);
+		}
+
+		public void write(StudentDoc studentDoc) throws IOException {
+			long id = studentDoc.getId();
+			putVarLong(zigzag(id - prevId));
+			prevId = id;
+			putString(studentDoc.getName());
+			putString(studentDoc.getPhone());
+			List<Mark> marks = studentDoc.getMarks();
+			putVarLong(marks == null ? 0 : marks.size() + 1);
+			if(marks != null) {
+				for(Mark mark: marks) {
+					putMark(mark);
+				}
+				nMarks += marks.size();
+			}
+			nStudents++;
+			nBlockStudents++;
+			if(block.position() >= blockSize) {
+				writeBlock();
+			}
+		}
+
+		public long getNStudents() {
+			return nStudents;
+		}
+
+		public long getNMarks() {
+			return nMarks;
+		}
+
+		//writes the rest of the students and the end block, the channel is closed
+		@Override
+		public void close() throws IOException {
+			try(channel) {
+				if(nBlockStudents > 0) {
+					writeBlock();
+				}
+				writeBlock();
+			}
+		}
+
+		private void putMark(Mark mark) {
+			String subject = mark.subject();
+			if(subject == null) {
+				putVarLong(0);
+			} else {
+				Integer code = subjects.get(subject);
+				if(code == null) {
+					putVarLong(subjects.size() + 1);
+					putString(subject);
+					subjects.put(subject, subjects.size() + 1);
+				} else {
+					putVarLong(code);
+				}
+			}
+			LocalDate date = mark.date();
+			if(date == null) {
+				putVarLong(0);
+			} else {
+				long epochDay = date.toEpochDay();
+				putVarLong(zigzag(epochDay - prevEpochDay) + 1);
+				prevEpochDay = epochDay;
+			}
+			int score = mark.score();
+			if(score >= 0 && score < LARGE_SCORE) {
+				ensure(1).put((byte) score);
+			} else {
+				ensure(1).put((byte) LARGE_SCORE);
+				putVarLong(zigzag(score));
+			}
+		}
+
+		private void putString(String string) {
+			if(string == null) {
+				putVarLong(0);
+			} else {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				putVarLong(bytes.length + 1);
+				ensure(bytes.length).put(bytes);
+			}
+		}
+
+		private void putVarLong(long value) {
+			ByteBuffer buffer = ensure(10);
+			while((value & ~0x7FL) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		private ByteBuffer ensure(int nBytes) {
+			if(block.remaining() < nBytes) {
+				ByteBuffer newBlock = ByteBuffer.allocate(Math.max(2 * block.capacity(), block.position() + nBytes));
+				block = newBlock.put(block.flip());
+			}
+			return block;
+		}
+
+		private void writeBlock() throws IOException {
+			block.flip();
+			CRC32 crc = new CRC32();
+			crc.update(block.array(), 0, block.limit());
+			header.clear().putInt(block.limit()).putInt(nBlockStudents).flip();
+			trailer.clear().putInt((int) crc.getValue()).flip();
+			ByteBuffer[] buffers = {header, block, trailer};
+			long nBytes = header.remaining() + block.remaining() + trailer.remaining();
+			while(nBytes > 0) {
+				nBytes -= channel.write(buffers);
+			}
+			block.clear();
+			nBlockStudents = 0;
+		}
+
+		private void writeFully(ByteBuffer buffer) throws IOException {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	public static class Reader implements Closeable {
+		final FileChannel channel;
+		private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		private final ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+		private ByteBuffer block = ByteBuffer.allocate(0);
+		private final List<String> subjects = new ArrayList<>();
+		private int nBlockStudents;
+		private int nBlocks;
+		private boolean ended;
+		private long prevId;
+		private long prevEpochDay;
+
+		public Reader(FileChannel channel) throws IOException {
+			this.channel = channel;
+			ByteBuffer fileHeader = ByteBuffer.allocate(Integer.BYTES + 1);
+			readFully(fileHeader);
+			if(fileHeader.getInt() != MAGIC || fileHeader.get() != VERSION) {
+				throw new IOException("not a students binary file");
+			}
+		}
+
+		//next student or null after the last one
+		public StudentDoc read() throws IOException {
+			while(nBlockStudents == 0 && !ended) {
+				readBlock();
+			}
+			StudentDoc res = null;
+			if(!ended) {
+				nBlockStudents--;
+				res = readStudent();
+			}
+			return res;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		private void readBlock() throws IOException {
+			readFully(header.clear());
+			int length = header.getInt();
+			int nStudents = header.getInt();
+			if(length < 0 || nStudents < 0) {
+				throw new IOException(String.format("broken header of block %d", nBlocks));
+			}
+			if(block.capacity() < length) {
+				block = ByteBuffer.allocate(length);
+			}
+			readFully(block.clear().limit(length));
+			readFully(trailer.clear());
+			CRC32 crc = new CRC32();
+			crc.update(block.array(), 0, length);
+			if(trailer.getInt() != (int) crc.getValue()) {
+				throw new IOException(String.format("checksum mismatch in block %d", nBlocks));
+			}
+			nBlocks++;
+			nBlockStudents = nStudents;
+			ended = nStudents == 0;
+		}
+
+		private StudentDoc readStudent() throws IOException {
+			long id = prevId + unzigzag(getVarLong());
+			prevId = id;
+			String name = getString();
+			String phone = getString();
+			long marksSize = getVarLong();
+			StudentDoc res = new StudentDoc(id, name, phone, null);
+			if(marksSize > 0) {
+				res = StudentDoc.of(res.build());
+				for(long i = 1; i < marksSize; i++) {
+					res.addMark(getMark());
+				}
+			}
+			return res;
+		}
+
+		private Mark getMark() throws IOException {
+			int code = (int) getVarLong();
+			String subject = null;
+			if(code > subjects.size()) {
+				subject = getString();
+				subjects.add(subject);
+			} else if(code > 0) {
+				subject = subjects.get(code - 1);
+			}
+			long dateCode = getVarLong();
+			LocalDate date = null;
+			if(dateCode > 0) {
+				prevEpochDay += unzigzag(dateCode - 1);
+				date = LocalDate.ofEpochDay(prevEpochDay);
+			}
+			int score = block.get() & 0xFF;
+			if(score == LARGE_SCORE) {
+				score = (int) unzigzag(getVarLong());
+			}
+			return new Mark(subject, date, score);
+		}
+
+		private String getString() throws IOException {
+			long length = getVarLong() - 1;
+			String res = null;
+			if(length >= 0) {
+				if(length > block.remaining()) {
+					throw new IOException(String.format("broken string in block %d", nBlocks - 1));
+				}
+				res = new String(block.array(), block.position(), (int) length, StandardCharsets.UTF_8);
+				block.position(block.position() + (int) length);
+			}
+			return res;
+		}
+
+		private long getVarLong() {
+			long res = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = block.get();
+				res |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while((b & 0x80) != 0);
+			return res;
+		}
+
+		private void readFully(ByteBuffer buffer) throws IOException {
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer) < 0) {
+					throw new EOFException(String.format("students binary file is truncated after block %d", nBlocks));
+				}
+			}
+			buffer.flip();
+		}
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
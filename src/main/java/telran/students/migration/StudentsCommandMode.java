@@ -0,0 +1,39 @@
+package telran.students.migration;
+
+import java.util.Map;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+
+//export and import of the students run as commands: without the web server, and the application exits
+//after the runner is done (see StudentsMarksApplication.main); they can't be run together
+public class StudentsCommandMode implements EnvironmentPostProcessor {
+	static final String EXPORT_FILE = "app.students.export.file";
+	static final String IMPORT_FILE = "app.students.import.file";
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		boolean isExport = isSet(environment, EXPORT_FILE);
+		boolean isImport = isSet(environment, IMPORT_FILE);
+		if(isExport && isImport) {
+			throw new IllegalStateException(String.format("only one of %s and %s may be set", EXPORT_FILE, IMPORT_FILE));
+		}
+		if(isExport || isImport) {
+			environment.getPropertySources().addFirst(new MapPropertySource("studentsCommand",
+					Map.of("spring.main.web-application-type", "none")));
+		}
+	}
+
+	public static boolean isCommand(Environment environment) {
+		return isSet(environment, EXPORT_FILE) || isSet(environment, IMPORT_FILE);
+	}
+
+	//the same as @ConditionalOnProperty of the runners
+	private static boolean isSet(Environment environment, String name) {
+		return environment.containsProperty(name) && !"false".equalsIgnoreCase(environment.getProperty(name));
+	}
+
+}
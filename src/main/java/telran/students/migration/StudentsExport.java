@@ -0,0 +1,65 @@
+package telran.students.migration;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksBuckets;
+import telran.students.repo.StudentRepo;
+
+//writes all students with their marks to the file of StudentsBinaryFormat;
+//in the bucketed storage mode the marks are joined from the buckets stream sorted by the students ids as well;
+//runs as a command without the web server, see StudentsCommandMode
+@Component
+@ConditionalOnProperty(name = "app.students.export.file")
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsExport implements ApplicationRunner {
+	final StudentRepo studentRepo;
+	final Optional<MarksBuckets> marksBuckets;
+	@Value("${app.students.export.file}")
+	Path file;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long start = System.nanoTime();
+		StudentsBinaryFormat.Writer writer = new StudentsBinaryFormat.Writer(FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+		try(writer; Stream<StudentDoc> students = studentRepo.streamStudentDocs();
+				Stream<MarksBucketDoc> buckets = marksBuckets.map(MarksBuckets::streamBuckets).orElseGet(Stream::empty)) {
+			Iterator<MarksBucketDoc> bucketsIt = buckets.iterator();
+			MarksBucketDoc bucket = bucketsIt.hasNext() ? bucketsIt.next() : null;
+			for(StudentDoc studentDoc: (Iterable<StudentDoc>) students::iterator) {
+				if(marksBuckets.isPresent()) {
+					long id = studentDoc.getId();
+					List<Mark> marks = new ArrayList<>();
+					//buckets of the removed students are skipped
+					while(bucket != null && bucket.getStudentId() <= id) {
+						if(bucket.getStudentId() == id) {
+							marks.addAll(bucket.getMarks());
+						}
+						bucket = bucketsIt.hasNext() ? bucketsIt.next() : null;
+					}
+					studentDoc = new StudentDoc(id, studentDoc.getName(), studentDoc.getPhone(), marks);
+				}
+				writer.write(studentDoc);
+			}
+		}
+		log.info("{} students, {} marks exported to {} in {} ms", writer.getNStudents(), writer.getNMarks(), file,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+}
@@ -0,0 +1,71 @@
+package telran.students.migration;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksBuckets;
+import telran.students.service.StudentsChangeListener;
+
+//inserts the students of the file of StudentsBinaryFormat by insertMany of the bulk chunk size;
+//the students are expected to be new. In the bucketed storage mode the marks are moved to the buckets after the insert.
+//A broken file fails the import at the broken block, the students of the previous blocks remain inserted;
+//runs as a command without the web server, see StudentsCommandMode
+@Component
+@ConditionalOnProperty(name = "app.students.import.file")
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsImport implements ApplicationRunner {
+	final MongoTemplate mongoTemplate;
+	final Optional<MarksBuckets> marksBuckets;
+	final List<StudentsChangeListener> listeners;
+	@Value("${app.students.import.file}")
+	Path file;
+	@Value("${app.students.bulk.chunk.size:1000}")
+	int chunkSize;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long start = System.nanoTime();
+		long nStudents = 0;
+		long nMarks = 0;
+		try(StudentsBinaryFormat.Reader reader = new StudentsBinaryFormat.Reader(FileChannel.open(file,
+				StandardOpenOption.READ))) {
+			List<StudentDoc> chunk = new ArrayList<>(chunkSize);
+			StudentDoc studentDoc;
+			while((studentDoc = reader.read()) != null) {
+				chunk.add(studentDoc);
+				nMarks += studentDoc.getMarkCount();
+				if(chunk.size() == chunkSize) {
+					nStudents += insert(chunk);
+				}
+			}
+			nStudents += insert(chunk);
+		}
+		marksBuckets.ifPresent(MarksBuckets::moveEmbeddedMarks);
+		listeners.forEach(StudentsChangeListener::reload);
+		log.info("{} students, {} marks imported from {} in {} ms", nStudents, nMarks, file,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	private int insert(List<StudentDoc> chunk) {
+		int res = chunk.size();
+		if(res > 0) {
+			mongoTemplate.insert(chunk, StudentDoc.class);
+			chunk.clear();
+		}
+		return res;
+	}
+
+}
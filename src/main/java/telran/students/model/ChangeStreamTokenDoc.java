@@ -0,0 +1,18 @@
+package telran.students.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+
+//resume token of the last change stream event applied by the named subscriber
+@Document(collection="change_stream_tokens")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeStreamTokenDoc {
+	@Id
+	String subscriber;
+	org.bson.Document token;
+
+}
@@ -0,0 +1,39 @@
+package telran.students.model;
+
+import java.time.LocalDate;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import lombok.*;
+import telran.students.dto.Mark;
+
+//one mark in the time-series collection; marks of a student and a subject are stored together by Mongo
+@Document(collection="marks_ts")
+@TimeSeries(timeField = "date", metaField = "meta", granularity = Granularity.HOURS)
+@Getter
+@NoArgsConstructor
+public class MarkEventDoc {
+	public record Meta(long studentId, String subject) {
+	}
+	@Id
+	ObjectId id;
+	LocalDate date;
+	Meta meta;
+	int score;
+	
+	public static MarkEventDoc of(long studentId, Mark mark) {
+		MarkEventDoc res = new MarkEventDoc();
+		res.date = mark.date();
+		res.meta = new Meta(studentId, mark.subject());
+		res.score = mark.score();
+		return res;
+	}
+	public Mark build() {
+		return new Mark(meta.subject(), date, score);
+	}
+
+}
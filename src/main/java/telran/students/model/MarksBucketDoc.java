@@ -0,0 +1,30 @@
+package telran.students.model;
+
+import java.util.*;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+import telran.students.dto.Mark;
+
+//consecutive marks of a student in the bucketed storage mode;
+//bucket seq is the index of the bucket's first mark divided by the bucket size
+@Document(collection="marks_buckets")
+@Getter
+@NoArgsConstructor
+public class MarksBucketDoc {
+	@Id
+	ObjectId id;
+	long studentId;
+	int seq;
+	//summary of the bucket's marks, lets queries skip irrelevant buckets
+	int count;
+	//epoch days of the marks dates, as stored by MarkConverters
+	Integer minDay;
+	Integer maxDay;
+	Set<String> subjects;
+	List<Mark> marks;
+
+}
@@ -11,14 +11,29 @@ import telran.students.dto.*;
 @Document(collection="students")
 @Getter
 public class StudentDoc {
+	public static final int GOOD_SCORE_LEVEL = 80;
 	@Id
 	Long id;
 	String name;
 	@Setter
 	String phone;
 	List<Mark> marks;
+	//statistics derived from marks, maintained on each write of marks
+	int markCount;
+	int scoreSum;
+	int goodMarkCount;
+	Integer minScore;
+	Integer maxScore;
 	public void addMark(Mark mark) {
 		marks.add(mark);
+		int score = mark.score();
+		markCount++;
+		scoreSum += score;
+		if(score > GOOD_SCORE_LEVEL) {
+			goodMarkCount++;
+		}
+		minScore = minScore == null ? score : Math.min(minScore, score);
+		maxScore = maxScore == null ? score : Math.max(maxScore, score);
 	}
 	
 	public static StudentDoc of(Student student) {
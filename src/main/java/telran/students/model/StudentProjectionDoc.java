@@ -0,0 +1,54 @@
+package telran.students.model;
+
+import java.util.*;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+import telran.students.dto.Mark;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+
+//materialized view of one student kept by the change stream of the students collection;
+//it is a function of the current student document only, so it may be applied any number of times
+@Document(collection="students_projections")
+@Getter
+@NoArgsConstructor
+public class StudentProjectionDoc {
+	@Id
+	Long id;
+	String name;
+	String phone;
+	int markCount;
+	int scoreSum;
+	int goodMarkCount;
+	//null for student without marks
+	Double avgScore;
+	//numbers of the student's marks by subjects, known for the marks embedded into student document only
+	Map<String, Integer> subjectCounts;
+
+	public static StudentProjectionDoc of(StudentDoc studentDoc) {
+		StudentProjectionDoc res = new StudentProjectionDoc();
+		res.id = studentDoc.getId();
+		res.name = studentDoc.getName();
+		res.phone = studentDoc.getPhone();
+		res.markCount = studentDoc.getMarkCount();
+		res.scoreSum = studentDoc.getScoreSum();
+		res.goodMarkCount = studentDoc.getGoodMarkCount();
+		res.avgScore = res.markCount == 0 ? null : (double) res.scoreSum / res.markCount;
+		res.subjectCounts = new HashMap<>();
+		List<Mark> marks = studentDoc.getMarks();
+		if(marks != null) {
+			marks.forEach(m -> res.subjectCounts.merge(m.subject(), 1, Integer::sum));
+		}
+		return res;
+	}
+	public Student build() {
+		return new Student(id, name, phone);
+	}
+	public NameAvgScore buildNameAvgScore() {
+		return new NameAvgScore(name, avgScore.intValue());
+	}
+
+}
@@ -0,0 +1,18 @@
+package telran.students.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+
+//number of marks of a subject over all students, maintained with the students projections
+@Document(collection="subjects_marks_counts")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubjectMarksCountDoc {
+	@Id
+	String subject;
+	long count;
+
+}
@@ -0,0 +1,79 @@
+package telran.students.repo;
+
+import java.time.LocalDate;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+//reading and writing of the values by the codecs, null values are read as null / 0
+final class BsonValues {
+	private static final long MILLIS_PER_DAY = 86_400_000;
+	private BsonValues() {
+	}
+	
+	static String readString(BsonReader reader) {
+		String res = null;
+		if(reader.getCurrentBsonType() == BsonType.NULL) {
+			reader.readNull();
+		} else {
+			res = reader.readString();
+		}
+		return res;
+	}
+	
+	static Long readLong(BsonReader reader) {
+		return switch(reader.getCurrentBsonType()) {
+			case INT32 -> (long) reader.readInt32();
+			case INT64 -> reader.readInt64();
+			case NULL -> {
+				reader.readNull();
+				yield null;
+			}
+			default -> (long) reader.readDouble();
+		};
+	}
+	
+	static double readDouble(BsonReader reader) {
+		return switch(reader.getCurrentBsonType()) {
+			case INT32 -> reader.readInt32();
+			case INT64 -> reader.readInt64();
+			case NULL -> {
+				reader.readNull();
+				yield 0;
+			}
+			default -> reader.readDouble();
+		};
+	}
+	
+	static Long readDateTime(BsonReader reader) {
+		Long res = null;
+		if(reader.getCurrentBsonType() == BsonType.NULL) {
+			reader.readNull();
+		} else {
+			res = reader.readDateTime();
+		}
+		return res;
+	}
+	
+	static void writeLocalDate(BsonWriter writer, String name, LocalDate date) {
+		if(date == null) {
+			writer.writeNull(name);
+		} else {
+			writer.writeDateTime(name, toMillis(date));
+		}
+	}
+	
+	static long toMillis(LocalDate date) {
+		return date.toEpochDay() * MILLIS_PER_DAY;
+	}
+	
+	static void writeString(BsonWriter writer, String name, String value) {
+		if(value == null) {
+			writer.writeNull(name);
+		} else {
+			writer.writeString(name, value);
+		}
+	}
+
+}
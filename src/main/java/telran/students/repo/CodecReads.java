@@ -0,0 +1,75 @@
+package telran.students.repo;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+
+//reads query and aggregation results by the given codec straight from BSON, without intermediate Document
+//and entity conversion; queries and pipelines are mapped the same way as MongoTemplate does
+@Component
+public class CodecReads {
+	final MongoTemplate mongoTemplate;
+	final MongoConverter converter;
+	final QueryMapper queryMapper;
+
+	public CodecReads(MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+		converter = mongoTemplate.getConverter();
+		queryMapper = new QueryMapper(converter);
+	}
+
+	public <T> List<T> aggregate(Aggregation aggregation, Class<?> inputType, Codec<T> codec) {
+		List<Document> pipeline = pipeline(aggregation, inputType);
+		return mongoTemplate.execute(inputType, collection -> withCodec(collection, codec)
+				.aggregate(pipeline, codec.getEncoderClass()).into(new ArrayList<>()));
+	}
+
+	//stream holds the cursor and must be closed
+	public <T> Stream<T> aggregateStream(Aggregation aggregation, Class<?> inputType, Codec<T> codec,
+			int batchSize) {
+		List<Document> pipeline = pipeline(aggregation, inputType);
+		MongoCursor<T> cursor = mongoTemplate.execute(inputType, collection -> withCodec(collection, codec)
+				.aggregate(pipeline, codec.getEncoderClass()).batchSize(batchSize).cursor());
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+				.onClose(cursor::close);
+	}
+
+	public <T> List<T> find(Query query, Class<?> entityType, Codec<T> codec) {
+		MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(entityType);
+		Bson filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+		Bson projection = queryMapper.getMappedFields(query.getFieldsObject(), entity);
+		Bson sort = queryMapper.getMappedSort(query.getSortObject(), entity);
+		return mongoTemplate.execute(entityType, collection -> withCodec(collection, codec)
+				.find(filter, codec.getEncoderClass()).projection(projection).sort(sort)
+				.limit(query.getLimit()).into(new ArrayList<>()));
+	}
+
+	private List<Document> pipeline(Aggregation aggregation, Class<?> inputType) {
+		AggregationOperationContext context = new TypeBasedAggregationOperationContext(inputType,
+				converter.getMappingContext(), queryMapper).continueOnMissingFieldReference();
+		return aggregation.toPipeline(context);
+	}
+
+	private <T> MongoCollection<Document> withCodec(MongoCollection<Document> collection, Codec<T> codec) {
+		return collection.withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codec),
+				collection.getCodecRegistry()));
+	}
+
+}
@@ -0,0 +1,79 @@
+package telran.students.repo;
+
+import static telran.students.repo.BsonValues.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import telran.students.dto.Mark;
+
+//decodes Mark straight from {subject, date, day, score} BSON of the aggregation output, the same as MarkConverters;
+//the subject given to the constructor is used for the output without subject field;
+//the date of the legacy mark without day is read in the given legacy zone, UTC by default
+public class MarkCodec implements Codec<Mark> {
+	final String subject;
+	final ZoneId legacyZone;
+	
+	public MarkCodec() {
+		this(null);
+	}
+	
+	public MarkCodec(String subject) {
+		this(subject, ZoneOffset.UTC);
+	}
+	
+	public MarkCodec(String subject, ZoneId legacyZone) {
+		this.subject = subject;
+		this.legacyZone = legacyZone;
+	}
+
+	@Override
+	public Mark decode(BsonReader reader, DecoderContext decoderContext) {
+		String subject = this.subject;
+		Long dateMillis = null;
+		Long day = null;
+		int score = 0;
+		reader.readStartDocument();
+		while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			switch(reader.readName()) {
+				case "subject" -> subject = readString(reader);
+				case "date" -> dateMillis = readDateTime(reader);
+				case "day" -> day = readLong(reader);
+				case "score" -> score = (int) readDouble(reader);
+				default -> reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		LocalDate date = day != null ? LocalDate.ofEpochDay(day)
+				: dateMillis != null ? MarkConverters.legacyDate(dateMillis, legacyZone) : null;
+		return new Mark(subject, date, score);
+	}
+
+	@Override
+	public void encode(BsonWriter writer, Mark value, EncoderContext encoderContext) {
+		writer.writeStartDocument();
+		writeString(writer, "subject", value.subject());
+		writeLocalDate(writer, "date", value.date());
+		if(value.date() == null) {
+			writer.writeNull("day");
+		} else {
+			writer.writeInt32("day", (int) value.date().toEpochDay());
+		}
+		writer.writeInt32("score", value.score());
+		writer.writeEndDocument();
+	}
+
+	@Override
+	public Class<Mark> getEncoderClass() {
+		return Mark.class;
+	}
+
+}
@@ -0,0 +1,82 @@
+package telran.students.repo;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import telran.students.dto.Mark;
+
+//Mark is stored as {subject, date, day, score}: date at start of the day in UTC and day - its epoch day,
+//the compact integer field of the date range filters and indexes; marks stored without day are legacy ones
+//having the date at start of the day in the legacy zone (the zone of the server that has written them)
+public final class MarkConverters {
+	private MarkConverters() {
+	}
+	
+	public static List<Converter<?, ?>> converters(ZoneId legacyZone) {
+		return List.of(MarkWriter.INSTANCE, new MarkReader(legacyZone));
+	}
+	
+	//blank zone of the configuration means the system zone
+	public static ZoneId legacyZone(String zone) {
+		return zone == null || zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+	}
+	
+	public static LocalDate legacyDate(long millis, ZoneId legacyZone) {
+		return Instant.ofEpochMilli(millis).atZone(legacyZone).toLocalDate();
+	}
+	
+	public static Integer epochDay(LocalDate date) {
+		return date == null ? null : (int) date.toEpochDay();
+	}
+	
+	//null subject and date are omitted, the same as by the default mapping; null day is kept
+	//as by MarkCodec, so a mark without date isn't taken for the legacy one by the migration
+	public static Document toDocument(Mark mark) {
+		Document res = new Document();
+		if(mark.subject() != null) {
+			res.append("subject", mark.subject());
+		}
+		LocalDate date = mark.date();
+		if(date != null) {
+			res.append("date", new Date(BsonValues.toMillis(date)));
+		}
+		return res.append("day", epochDay(date)).append("score", mark.score());
+	}
+	
+	public static Mark toMark(Document document, String subject, ZoneId legacyZone) {
+		Number day = (Number) document.get("day");
+		Date date = document.getDate("date");
+		LocalDate localDate = day != null ? LocalDate.ofEpochDay(day.longValue())
+				: date != null ? legacyDate(date.getTime(), legacyZone) : null;
+		Number score = (Number) document.get("score");
+		return new Mark(subject, localDate, score == null ? 0 : score.intValue());
+	}
+	
+	@WritingConverter
+	enum MarkWriter implements Converter<Mark, Document> {
+		INSTANCE;
+
+		@Override
+		public Document convert(Mark source) {
+			return toDocument(source);
+		}
+	}
+	
+	@ReadingConverter
+	record MarkReader(ZoneId legacyZone) implements Converter<Document, Mark> {
+
+		@Override
+		public Mark convert(Document source) {
+			return toMark(source, source.getString("subject"), legacyZone);
+		}
+	}
+
+}
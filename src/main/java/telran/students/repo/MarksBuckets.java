@@ -0,0 +1,305 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.bulk.BulkWriteError;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.dto.Student;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+
+//bucketed storage mode: marks are kept in the side collection in buckets of a bounded size
+//instead of the unbounded array embedded into student document;
+//student document keeps marks statistics, so the statistics based queries are the same in both modes.
+//The statistics update goes first, as it gives the positions of the new marks in the buckets; the two writes
+//aren't atomic, so if the buckets write fails, the statistics of its students are set from their buckets again.
+//If that repair fails too, the error names the students and rebuildMarksStatistics
+//(app.students.migration.rebuild-statistics) repairs them
+@Component
+@ConditionalOnProperty(name = "app.students.marks.storage", havingValue = "bucketed")
+@RequiredArgsConstructor
+@Slf4j
+public class MarksBuckets {
+	final MongoTemplate mongoTemplate;
+	@Value("${app.students.marks.bucket.size:100}")
+	int bucketSize;
+
+	private record BucketPush(long studentId, int seq, List<Mark> marks) {
+	}
+
+	public void createIndexes() {
+		IndexOperations indexOperations = mongoTemplate.indexOps(MarksBucketDoc.class);
+		Index[] indexes = {
+			new Index("studentId", Direction.ASC).on("seq", Direction.ASC).unique(),
+			new Index("subjects", Direction.ASC)
+		};
+		for(Index index: indexes) {
+			String name = indexOperations.ensureIndex(index);
+			log.debug("index {} ensured", name);
+		}
+	}
+
+	//returns false if there is no student with the given id
+	public boolean pushMarks(long id, List<Mark> marks) {
+		Integer markCount = incStatistics(id, marks);
+		if(markCount != null) {
+			BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, MarksBucketDoc.class);
+			bucketPushes(id, markCount, marks).forEach(p -> addUpsert(bulkOperations, p));
+			try {
+				bulkOperations.execute();
+			} catch (RuntimeException e) {
+				repairAfterFailure(Set.of(id), e);
+				throw e;
+			}
+		}
+		log.trace("student {}, pushed {} marks, found {}", id, marks.size(), markCount != null);
+		return markCount != null;
+	}
+
+	//positions of the new marks are known only after the statistics update of each student,
+	//so the students are updated one by one and the buckets by one bulk write
+	public List<MarkFailure> pushMarks(Map<Long, List<Mark>> studentsMarks) {
+		List<MarkFailure> failures = new ArrayList<>();
+		List<BucketPush> pushes = new ArrayList<>();
+		studentsMarks.forEach((id, marks) -> {
+			Integer markCount = incStatistics(id, marks);
+			if(markCount == null) {
+				addFailures(failures, id, marks, String.format(MarkFailure.STUDENT_NOT_FOUND, id));
+			} else {
+				pushes.addAll(bucketPushes(id, markCount, marks));
+			}
+		});
+		if(!pushes.isEmpty()) {
+			BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, MarksBucketDoc.class);
+			pushes.forEach(p -> addUpsert(bulkOperations, p));
+			try {
+				bulkOperations.execute();
+			} catch (BulkOperationException e) {
+				Set<Long> failedIds = new HashSet<>();
+				for(BulkWriteError error: e.getErrors()) {
+					BucketPush push = pushes.get(error.getIndex());
+					addFailures(failures, push.studentId(), push.marks(), error.getMessage());
+					failedIds.add(push.studentId());
+				}
+				repairAfterFailure(failedIds, e);
+			} catch (RuntimeException e) {
+				repairAfterFailure(pushes.stream().map(BucketPush::studentId).collect(Collectors.toSet()), e);
+				throw e;
+			}
+		}
+		log.trace("bulk push for {} students, {} buckets, {} failures", studentsMarks.size(), pushes.size(),
+				failures.size());
+		return failures;
+	}
+
+	public List<Mark> findMarks(long id) {
+		Query query = withFields(new Query(Criteria.where("studentId").is(id)), "marks").with(Sort.by("seq"));
+		return mongoTemplate.find(query, MarksBucketDoc.class).stream()
+				.flatMap(b -> b.getMarks().stream()).toList();
+	}
+
+	//buckets of all students in the marks order, the stream holds DB cursor and must be closed
+	public Stream<MarksBucketDoc> streamBuckets() {
+		Query query = withFields(new Query(), "studentId", "marks").with(Sort.by("studentId", "seq"));
+		return mongoTemplate.stream(query, MarksBucketDoc.class);
+	}
+
+	//students having marks of the subject, all of them not less than the threshold, in order of ids
+	//after the given one (null means from the first student), up to the limit (0 means no limit)
+	public List<Student> findStudentsAllGoodMarksSubject(String subject, int thresholdScore, Long afterId,
+			int limit) {
+		Aggregation pipeline = allGoodMarksSubjectPipeline(subject, thresholdScore, afterId, limit)
+				.withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+		List<Student> res = mongoTemplate.aggregate(pipeline, MarksBucketDoc.class, StudentDoc.class)
+				.getMappedResults().stream().map(StudentDoc::build).toList();
+		log.trace("subject {}, threshold {}, {} students", subject, thresholdScore, res.size());
+		return res;
+	}
+
+	//the stream holds DB cursor and must be closed
+	public Stream<Student> streamStudentsAllGoodMarksSubject(String subject, int thresholdScore, int batchSize) {
+		Aggregation pipeline = allGoodMarksSubjectPipeline(subject, thresholdScore, null, 0)
+				.withOptions(AggregationOptions.builder().allowDiskUse(true).cursorBatchSize(batchSize).build());
+		return mongoTemplate.aggregateStream(pipeline, MarksBucketDoc.class, StudentDoc.class)
+				.map(StudentDoc::build);
+	}
+
+	//the students are grouped from the buckets and joined at DB server, no ids are sent back and forth
+	private Aggregation allGoodMarksSubjectPipeline(String subject, int thresholdScore, Long afterId, int limit) {
+		Criteria bucketsCriteria = Criteria.where("subjects").is(subject);
+		if(afterId != null) {
+			bucketsCriteria = bucketsCriteria.and("studentId").gt(afterId);
+		}
+		List<AggregationOperation> operations = new ArrayList<>(List.of(
+				Aggregation.match(bucketsCriteria),
+				Aggregation.unwind("marks"),
+				Aggregation.match(Criteria.where("marks.subject").is(subject)),
+				Aggregation.group("studentId").min("marks.score").as("minScore"),
+				Aggregation.match(Criteria.where("minScore").gte(thresholdScore)),
+				Aggregation.sort(Sort.by("_id"))));
+		if(limit > 0) {
+			operations.add(Aggregation.limit(limit));
+		}
+		operations.addAll(List.of(
+				Aggregation.lookup(mongoTemplate.getCollectionName(StudentDoc.class), "_id", "_id", "student"),
+				Aggregation.unwind("student"),
+				Aggregation.replaceRoot("student"),
+				Aggregation.project("name", "phone")));
+		return Aggregation.newAggregation(operations);
+	}
+
+	public void removeMarks(long id) {
+		long nBuckets = mongoTemplate.remove(new Query(Criteria.where("studentId").is(id)), MarksBucketDoc.class)
+				.getDeletedCount();
+		log.trace("student {}, removed {} buckets", id, nBuckets);
+	}
+
+	//statistics of all students are reset and then set from the buckets
+	public long rebuildMarksStatistics() {
+		mongoTemplate.updateMulti(new Query(), resetStatisticsUpdate(), StudentDoc.class);
+		long res = setStatistics(new Criteria());
+		log.debug("marks statistics rebuilt from buckets for {} students", res);
+		return res;
+	}
+
+	//statistics of the given students are set from their buckets; a push of the same students
+	//concurrent with the repair may be counted wrong, rebuildMarksStatistics repairs it
+	public long repairMarksStatistics(Collection<Long> ids) {
+		mongoTemplate.updateMulti(new Query(Criteria.where("id").in(ids)), resetStatisticsUpdate(), StudentDoc.class);
+		long res = setStatistics(Criteria.where("studentId").in(ids));
+		log.debug("marks statistics repaired from buckets for students {}", ids);
+		return res;
+	}
+
+	//moves marks embedded into student documents to the buckets
+	public long moveEmbeddedMarks() {
+		Query query = withFields(new Query(Criteria.where("marks.0").exists(true)), "id", "marks");
+		long res = 0;
+		try(Stream<StudentDoc> students = mongoTemplate.stream(query, StudentDoc.class)) {
+			for(StudentDoc studentDoc: (Iterable<StudentDoc>) students::iterator) {
+				long id = studentDoc.getId();
+				removeMarks(id);
+				BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, MarksBucketDoc.class);
+				bucketPushes(id, 0, studentDoc.getMarks()).forEach(p -> addUpsert(bulkOperations, p));
+				bulkOperations.execute();
+				mongoTemplate.updateFirst(byId(id), new Update().unset("marks"), StudentDoc.class);
+				res++;
+			}
+		}
+		log.debug("marks of {} students moved to buckets", res);
+		return res;
+	}
+
+	private void repairAfterFailure(Set<Long> ids, RuntimeException failure) {
+		if(ids.isEmpty()) {
+			return;
+		}
+		log.warn("buckets write failed for students {}, their marks statistics are being repaired: {}", ids,
+				failure.toString());
+		try {
+			repairMarksStatistics(ids);
+		} catch (RuntimeException e) {
+			log.error("marks statistics of students {} aren't repaired, rebuild them by "
+					+ "app.students.migration.rebuild-statistics: {}", ids, e.toString());
+			failure.addSuppressed(e);
+		}
+	}
+
+	private Update resetStatisticsUpdate() {
+		return new Update().set("markCount", 0).set("scoreSum", 0).set("goodMarkCount", 0)
+				.unset("minScore").unset("maxScore");
+	}
+
+	//returns the number of the updated students
+	private long setStatistics(Criteria bucketsCriteria) {
+		Aggregation pipeline = Aggregation.newAggregation(
+				Aggregation.match(bucketsCriteria),
+				Aggregation.unwind("marks"),
+				Aggregation.group("studentId").count().as("markCount").sum("marks.score").as("scoreSum")
+					.sum(ConditionalOperators.when(ComparisonOperators.Gt.valueOf("marks.score")
+							.greaterThanValue(StudentDoc.GOOD_SCORE_LEVEL)).then(1).otherwise(0))
+					.as("goodMarkCount")
+					.min("marks.score").as("minScore").max("marks.score").as("maxScore"));
+		List<Document> statistics = mongoTemplate.aggregate(pipeline, MarksBucketDoc.class, Document.class)
+				.getMappedResults();
+		long res = 0;
+		if(!statistics.isEmpty()) {
+			BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, StudentDoc.class);
+			statistics.forEach(d -> bulkOperations.updateOne(new Query(Criteria.where("id").is(d.get("_id"))),
+					new Update().set("markCount", d.get("markCount")).set("scoreSum", d.get("scoreSum"))
+					.set("goodMarkCount", d.get("goodMarkCount")).set("minScore", d.get("minScore"))
+					.set("maxScore", d.get("maxScore"))));
+			res = bulkOperations.execute().getModifiedCount();
+		}
+		return res;
+	}
+
+	//returns mark count before the update or null if there is no student
+	private Integer incStatistics(long id, List<Mark> marks) {
+		StudentDoc studentDoc = mongoTemplate.findAndModify(withFields(byId(id), "markCount"),
+				marksStatisticsUpdate(marks), StudentDoc.class);
+		return studentDoc == null ? null : studentDoc.getMarkCount();
+	}
+
+	//splits the marks by the bucket boundaries
+	private List<BucketPush> bucketPushes(long id, int markCount, List<Mark> marks) {
+		List<BucketPush> res = new ArrayList<>();
+		int index = markCount;
+		int from = 0;
+		while(from < marks.size()) {
+			int to = Math.min(marks.size(), from + bucketSize - index % bucketSize);
+			res.add(new BucketPush(id, index / bucketSize, marks.subList(from, to)));
+			index += to - from;
+			from = to;
+		}
+		return res;
+	}
+
+	private void addUpsert(BulkOperations bulkOperations, BucketPush push) {
+		List<Mark> marks = push.marks();
+		Object[] subjects = marks.stream().map(Mark::subject).distinct().toArray();
+		Query query = new Query(Criteria.where("studentId").is(push.studentId()).and("seq").is(push.seq()));
+		Update update = new Update().push("marks").each(marks.toArray()).inc("count", marks.size())
+				.addToSet("subjects").each(subjects);
+		IntSummaryStatistics days = marks.stream().map(Mark::date).filter(Objects::nonNull)
+				.mapToInt(MarkConverters::epochDay).summaryStatistics();
+		if(days.getCount() > 0) {
+			update.min("minDay", days.getMin()).max("maxDay", days.getMax());
+		}
+		bulkOperations.upsert(query, update);
+	}
+
+	private void addFailures(List<MarkFailure> failures, long id, List<Mark> marks, String reason) {
+		marks.forEach(mark -> failures.add(new MarkFailure(id, mark, reason)));
+	}
+
+}
@@ -0,0 +1,170 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.dto.PeriodAvgScore;
+import telran.students.model.MarkEventDoc;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+
+//copy of all marks in the time-series collection for the date range queries;
+//marks are copied there by StudentUpdateRepoImpl right after the write into the main storage.
+//A failed copy doesn't fail the applied write, so a client retry can't duplicate the mark: the copy is marked
+//inconsistent (persisted to survive restarts) and the reads are served by the main storage until it is rebuilt.
+//Deletes from a time-series collection require MongoDB 5.1+
+@Component
+@ConditionalOnProperty(name = "app.students.marks.time-series.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class MarksTimeSeries {
+	final MongoTemplate mongoTemplate;
+	final Optional<MarksBuckets> marksBuckets;
+	@Value("${app.students.bulk.chunk.size:1000}")
+	int chunkSize;
+	private static final String STATE_COLLECTION = "marks_ts_state";
+	private static final Query STATE_QUERY = new Query(Criteria.where("_id").is("marks_ts"));
+	private volatile boolean consistent = true;
+
+	//time-series collection must be created explicitly before any index
+	public void createIndexes() {
+		if(!mongoTemplate.collectionExists(MarkEventDoc.class)) {
+			mongoTemplate.createCollection(MarkEventDoc.class);
+		}
+		IndexOperations indexOperations = mongoTemplate.indexOps(MarkEventDoc.class);
+		Index[] indexes = {
+			new Index("meta.studentId", Direction.ASC).on("date", Direction.ASC),
+			new Index("meta.subject", Direction.ASC).on("date", Direction.ASC)
+		};
+		for(Index index: indexes) {
+			String name = indexOperations.ensureIndex(index);
+			log.debug("index {} ensured", name);
+		}
+		consistent = !mongoTemplate.exists(STATE_QUERY, STATE_COLLECTION);
+		if(!consistent) {
+			log.warn("time series of marks is inconsistent, it isn't used until rebuilt");
+		}
+	}
+
+	public boolean isConsistent() {
+		return consistent;
+	}
+
+	//never throws, a failure marks the copy inconsistent
+	public void copyMarks(Map<Long, List<Mark>> studentsMarks) {
+		List<MarkEventDoc> events = studentsMarks.entrySet().stream()
+				.flatMap(e -> e.getValue().stream().map(m -> MarkEventDoc.of(e.getKey(), m))).toList();
+		if(!events.isEmpty()) {
+			try {
+				mongoTemplate.insert(events, MarkEventDoc.class);
+				log.trace("{} students, {} marks inserted into time series", studentsMarks.size(), events.size());
+			} catch (RuntimeException e) {
+				markInconsistent(e);
+			}
+		}
+	}
+
+	//never throws, a failure marks the copy inconsistent
+	public void removeMarks(long id) {
+		try {
+			long nMarks = mongoTemplate.remove(new Query(Criteria.where("meta.studentId").is(id)), MarkEventDoc.class)
+					.getDeletedCount();
+			log.trace("student {}, {} marks removed from time series", id, nMarks);
+		} catch (RuntimeException e) {
+			markInconsistent(e);
+		}
+	}
+
+	//insertion order, the same as the order of marks in the main storage
+	public List<Mark> findMarksAtDates(long id, LocalDate from, LocalDate to) {
+		Query query = new Query(Criteria.where("meta.studentId").is(id).and("date").gte(from).lte(to))
+				.with(Sort.by("id"));
+		return mongoTemplate.find(query, MarkEventDoc.class).stream().map(MarkEventDoc::build).toList();
+	}
+
+	public List<PeriodAvgScore> aggregateMonthAvgScore(LocalDate from, LocalDate to, String subject) {
+		Criteria criteria = Criteria.where("date").gte(from).lte(to);
+		if(subject != null) {
+			criteria.and("meta.subject").is(subject);
+		}
+		List<AggregationOperation> operations = new ArrayList<>(List.of(Aggregation.match(criteria)));
+		operations.addAll(monthAvgScoreOperations("date", "score"));
+		List<PeriodAvgScore> res = mongoTemplate.aggregate(Aggregation.newAggregation(operations),
+				MarkEventDoc.class, Document.class).getMappedResults().stream().map(StudentQueries::toPeriodAvgScore)
+				.sorted(Comparator.comparing(PeriodAvgScore::period)).toList();
+		log.debug("average scores by months from {} to {}, subject {}: {}", from, to, subject, res);
+		return res;
+	}
+
+	//recreates the time series from the main storage of marks; the reads aren't served by it meanwhile
+	public long rebuild() {
+		consistent = false;
+		mongoTemplate.dropCollection(MarkEventDoc.class);
+		createIndexes();
+		long res = 0;
+		if(marksBuckets.isPresent()) {
+			Query query = withFields(new Query(), "studentId", "marks").with(Sort.by("studentId", "seq"));
+			try(Stream<MarksBucketDoc> buckets = mongoTemplate.stream(query, MarksBucketDoc.class)) {
+				res = insertEvents(buckets.flatMap(b -> b.getMarks().stream()
+						.map(m -> MarkEventDoc.of(b.getStudentId(), m))));
+			}
+		} else {
+			Query query = withFields(new Query(Criteria.where("marks.0").exists(true)), "id", "marks");
+			try(Stream<StudentDoc> students = mongoTemplate.stream(query, StudentDoc.class)) {
+				res = insertEvents(students.flatMap(s -> s.getMarks().stream()
+						.map(m -> MarkEventDoc.of(s.getId(), m))));
+			}
+		}
+		mongoTemplate.remove(STATE_QUERY, STATE_COLLECTION);
+		consistent = true;
+		log.debug("time series rebuilt with {} marks", res);
+		return res;
+	}
+
+	private void markInconsistent(RuntimeException e) {
+		consistent = false;
+		log.error("time series of marks isn't updated, it isn't used until rebuilt: {}", e.toString());
+		try {
+			mongoTemplate.upsert(STATE_QUERY, new Update().set("consistent", false), STATE_COLLECTION);
+		} catch (RuntimeException stateError) {
+			log.error("inconsistency of time series isn't persisted: {}", stateError.toString());
+		}
+	}
+
+	private long insertEvents(Stream<MarkEventDoc> events) {
+		long res = 0;
+		List<MarkEventDoc> chunk = new ArrayList<>();
+		Iterator<MarkEventDoc> it = events.iterator();
+		while(it.hasNext()) {
+			chunk.add(it.next());
+			if(chunk.size() == chunkSize || !it.hasNext()) {
+				mongoTemplate.insert(chunk, MarkEventDoc.class);
+				res += chunk.size();
+				chunk = new ArrayList<>();
+			}
+		}
+		return res;
+	}
+
+}
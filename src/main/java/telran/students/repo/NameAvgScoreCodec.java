@@ -0,0 +1,46 @@
+package telran.students.repo;
+
+import static telran.students.repo.BsonValues.*;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import telran.students.dto.NameAvgScore;
+
+//decodes NameAvgScore straight from {name, avgMark} BSON of the average score pipeline
+public class NameAvgScoreCodec implements Codec<NameAvgScore> {
+
+	@Override
+	public NameAvgScore decode(BsonReader reader, DecoderContext decoderContext) {
+		String name = null;
+		double avgMark = 0;
+		reader.readStartDocument();
+		while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			switch(reader.readName()) {
+				case "name" -> name = readString(reader);
+				case "avgMark" -> avgMark = readDouble(reader);
+				default -> reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		return new NameAvgScore(name, (int) avgMark);
+	}
+
+	@Override
+	public void encode(BsonWriter writer, NameAvgScore value, EncoderContext encoderContext) {
+		writer.writeStartDocument();
+		writeString(writer, "name", value.name());
+		writer.writeDouble("avgMark", value.avgScore());
+		writer.writeEndDocument();
+	}
+
+	@Override
+	public Class<NameAvgScore> getEncoderClass() {
+		return NameAvgScore.class;
+	}
+
+}
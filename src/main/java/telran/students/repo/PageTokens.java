@@ -0,0 +1,42 @@
+package telran.students.repo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//opaque page token holding sort key and id of the last element of the previous page
+final class PageTokens {
+	private static final String SEPARATOR = ":";
+	private PageTokens() {
+	}
+	
+	static String encode(Object key, long id) {
+		String token = key + SEPARATOR + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	static String encode(long id) {
+		return encode("", id);
+	}
+	
+	static long id(String pageToken) {
+		return Long.parseLong(decode(pageToken)[1]);
+	}
+	
+	static String key(String pageToken) {
+		return decode(pageToken)[0];
+	}
+	
+	private static String[] decode(String pageToken) {
+		try {
+			String[] res = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8)
+					.split(SEPARATOR, -1);
+			if(res.length != 2) {
+				throw new IllegalArgumentException();
+			}
+			return res;
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("wrong page token %s", pageToken));
+		}
+	}
+
+}
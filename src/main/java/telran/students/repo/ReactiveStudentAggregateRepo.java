@@ -0,0 +1,29 @@
+package telran.students.repo;
+
+import java.time.LocalDate;
+
+import reactor.core.publisher.Flux;
+import telran.students.dto.Mark;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+
+public interface ReactiveStudentAggregateRepo {
+	Flux<Mark> aggregateStudentSubjectMarks(long id, String subject);
+	
+	Flux<NameAvgScore> aggregateStudentAvgScoreGreater(int avgScoreThreshold);
+	
+	Flux<Mark> aggregateStudentMarksAtDates(long id, LocalDate from, LocalDate to);
+	
+	Flux<Student> aggregateBestStudents(int nStudents);
+	
+	Flux<String> aggregateWorstStudents(int nStudents);
+	
+	Flux<Student> findStudentsGoodMarks(int thresholdScore);
+	
+	Flux<Student> findStudentsFewMarks(int thresholdMarks);
+	
+	Flux<Student> findStudentsAllGoodMarksSubject(String subject, int thresholdScore);
+	
+	Flux<Student> findStudentsMarksAmountBetween(int min, int max);
+
+}
@@ -0,0 +1,82 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import telran.students.dto.Mark;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+
+@RequiredArgsConstructor
+public class ReactiveStudentAggregateRepoImpl implements ReactiveStudentAggregateRepo {
+	final ReactiveMongoTemplate reactiveMongoTemplate;
+	ZoneId legacyZone;
+
+	@Value("${app.students.migration.epoch-days.legacy-zone:}")
+	void setLegacyZone(String zone) {
+		legacyZone = MarkConverters.legacyZone(zone);
+	}
+
+	@Override
+	public Flux<Mark> aggregateStudentSubjectMarks(long id, String subject) {
+		return reactiveMongoTemplate.aggregate(studentSubjectMarksPipeline(id, subject),
+				StudentDoc.class, Document.class).map(d -> MarkConverters.toMark(d, subject, legacyZone));
+	}
+
+	@Override
+	public Flux<NameAvgScore> aggregateStudentAvgScoreGreater(int avgScoreThreshold) {
+		return reactiveMongoTemplate.aggregate(studentAvgScoreGreaterPipeline(avgScoreThreshold),
+				StudentDoc.class, Document.class).map(StudentQueries::toNameAvgScore);
+	}
+
+	@Override
+	public Flux<Mark> aggregateStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
+		return reactiveMongoTemplate.aggregate(studentMarksAtDatesPipeline(id, from, to),
+				StudentDoc.class, Document.class).map(d -> MarkConverters.toMark(d, d.getString("subject"), legacyZone));
+	}
+
+	@Override
+	public Flux<Student> aggregateBestStudents(int nStudents) {
+		return reactiveMongoTemplate.find(bestStudentsQuery(nStudents), StudentDoc.class).map(StudentDoc::build);
+	}
+
+	@Override
+	public Flux<String> aggregateWorstStudents(int nStudents) {
+		return reactiveMongoTemplate.find(worstStudentsQuery(nStudents), StudentDoc.class).map(StudentDoc::getName);
+	}
+
+	@Override
+	public Flux<Student> findStudentsGoodMarks(int thresholdScore) {
+		return findStudents(goodMarksCriteria(thresholdScore));
+	}
+
+	@Override
+	public Flux<Student> findStudentsFewMarks(int thresholdMarks) {
+		return findStudents(fewMarksCriteria(thresholdMarks));
+	}
+
+	@Override
+	public Flux<Student> findStudentsAllGoodMarksSubject(String subject, int thresholdScore) {
+		return findStudents(allGoodMarksSubjectCriteria(subject, thresholdScore));
+	}
+
+	@Override
+	public Flux<Student> findStudentsMarksAmountBetween(int min, int max) {
+		return findStudents(marksAmountBetweenCriteria(min, max));
+	}
+
+	private Flux<Student> findStudents(Criteria criteria) {
+		return reactiveMongoTemplate.find(studentsQuery(criteria), StudentDoc.class).map(StudentDoc::build);
+	}
+
+}
@@ -0,0 +1,26 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import telran.students.dto.IdName;
+import telran.students.dto.IdNamePhone;
+import telran.students.dto.MarksOnly;
+import telran.students.model.StudentDoc;
+
+public interface ReactiveStudentRepo extends ReactiveMongoRepository<StudentDoc, Long>,
+	ReactiveStudentAggregateRepo, ReactiveStudentUpdateRepo {
+	@Query(value=STUDENT_BY_ID, fields = STUDENT_MARKS_FIELDS)
+	Mono<StudentDoc> findStudentMarks(long id);
+	
+	Mono<IdName> findByPhone(String phone);
+	
+	Flux<IdNamePhone> findByPhoneRegex(String string);
+	
+	Mono<MarksOnly> findByIdAndMarksSubject(long id, String subject);
+
+}
@@ -0,0 +1,22 @@
+package telran.students.repo;
+
+import java.util.List;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.model.StudentDoc;
+
+public interface ReactiveStudentUpdateRepo {
+	//the same semantics as of StudentUpdateRepo with empty Mono instead of null
+	Mono<StudentDoc> pushMark(long id, Mark mark);
+	
+	Mono<StudentDoc> setPhone(long id, String phone);
+	
+	Mono<List<MarkFailure>> pushMarks(Map<Long, List<Mark>> studentsMarks);
+	
+	//removes student, returns removed document without marks
+	Mono<StudentDoc> removeStudent(long id);
+
+}
@@ -0,0 +1,92 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.util.*;
+
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.model.StudentDoc;
+
+@RequiredArgsConstructor
+public class ReactiveStudentUpdateRepoImpl implements ReactiveStudentUpdateRepo {
+	final ReactiveMongoTemplate reactiveMongoTemplate;
+
+	@Override
+	public Mono<StudentDoc> pushMark(long id, Mark mark) {
+		return reactiveMongoTemplate.findAndModify(withFields(byId(id), "marks"), marksUpdate(List.of(mark)),
+				FindAndModifyOptions.options().returnNew(true), StudentDoc.class);
+	}
+
+	@Override
+	public Mono<StudentDoc> setPhone(long id, String phone) {
+		return reactiveMongoTemplate.findAndModify(withFields(byId(id), "id", "name", "phone"),
+				new Update().set("phone", phone), StudentDoc.class);
+	}
+
+	@Override
+	public Mono<List<MarkFailure>> pushMarks(Map<Long, List<Mark>> studentsMarks) {
+		Query query = withFields(new Query(Criteria.where("id").in(studentsMarks.keySet())), "id");
+		return reactiveMongoTemplate.find(query, StudentDoc.class).map(StudentDoc::getId).collectList()
+				.flatMap(existingIds -> {
+					List<MarkFailure> failures = new ArrayList<>();
+					ReactiveBulkOperations bulkOperations = reactiveMongoTemplate.bulkOps(BulkMode.UNORDERED, StudentDoc.class);
+					List<Long> updatedIds = new ArrayList<>();
+					studentsMarks.forEach((id, marks) -> {
+						if(existingIds.contains(id)) {
+							bulkOperations.updateOne(byId(id), marksUpdate(marks));
+							updatedIds.add(id);
+						} else {
+							addFailures(failures, id, marks, String.format("student %d not found", id));
+						}
+					});
+					if(updatedIds.isEmpty()) {
+						return Mono.just(failures);
+					}
+					return bulkOperations.execute().thenReturn(failures)
+							.onErrorResume(e -> bulkWriteErrors(e) != null, e -> {
+								for(BulkWriteError error: bulkWriteErrors(e)) {
+									long id = updatedIds.get(error.getIndex());
+									addFailures(failures, id, studentsMarks.get(id), error.getMessage());
+								}
+								return Mono.just(failures);
+							});
+				});
+	}
+
+	@Override
+	public Mono<StudentDoc> removeStudent(long id) {
+		return reactiveMongoTemplate.findAndRemove(withFields(byId(id), "id", "name", "phone"), StudentDoc.class);
+	}
+	
+	private static List<BulkWriteError> bulkWriteErrors(Throwable e) {
+		List<BulkWriteError> res = null;
+		if(e instanceof BulkOperationException bulkException) {
+			res = bulkException.getErrors();
+		} else if(e instanceof MongoBulkWriteException mongoException) {
+			res = mongoException.getWriteErrors();
+		} else if(e.getCause() instanceof MongoBulkWriteException mongoException) {
+			res = mongoException.getWriteErrors();
+		}
+		return res;
+	}
+
+	private static void addFailures(List<MarkFailure> failures, long id, List<Mark> marks, String reason) {
+		marks.forEach(mark -> failures.add(new MarkFailure(id, mark, reason)));
+	}
+
+}
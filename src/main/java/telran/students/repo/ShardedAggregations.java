@@ -0,0 +1,157 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+
+//whole collection reports run as the same queries over the ranges of the students ids concurrently,
+//each range on its own virtual thread and DB server thread; the partial results are sorted at DB server
+//and merged by k-way heap merge. Ranges are equal parts of the ids space between the min and max ids,
+//so the ids are expected to be spread evenly.
+//Mongo commands of the ranges are issued by the other threads and aren't counted in the calls round trips
+@Component
+@ConditionalOnExpression("${app.students.aggregation.parallelism:1} > 1")
+@Slf4j
+public class ShardedAggregations {
+	private static final Comparator<AvgPartial> AVG_ORDER = Comparator.comparingDouble(AvgPartial::avgScore)
+			.reversed().thenComparingLong(AvgPartial::id);
+	private static final Comparator<StudentDoc> BEST_ORDER = Comparator.comparingInt(StudentDoc::getGoodMarkCount)
+			.reversed().thenComparingLong(StudentDoc::getId);
+	private static final Comparator<StudentDoc> WORST_ORDER = Comparator.comparingInt(StudentDoc::getScoreSum)
+			.thenComparingLong(StudentDoc::getId);
+	final MongoTemplate mongoTemplate;
+	final int parallelism;
+
+	//average is computed from the score sum and the number of marks, the same as at DB server
+	private record AvgPartial(long id, String name, int scoreSum, int markCount) {
+		double avgScore() {
+			return (double) scoreSum / markCount;
+		}
+	}
+
+	private record IdRange(long from, long to) {
+		Criteria criteria() {
+			return Criteria.where("id").gte(from).lte(to);
+		}
+	}
+
+	public ShardedAggregations(MongoTemplate mongoTemplate,
+			@Value("${app.students.aggregation.parallelism:1}") int parallelism) {
+		this.mongoTemplate = mongoTemplate;
+		this.parallelism = parallelism;
+		log.debug("whole collection reports over {} id ranges", parallelism);
+	}
+
+	public List<NameAvgScore> findStudentAvgScoreGreater(int avgScoreThreshold) {
+		List<AvgPartial> res = runMerged(range -> mongoTemplate.aggregate(studentAvgScoreGreaterPipeline(avgScoreThreshold,
+				range.criteria()), StudentDoc.class, Document.class).getMappedResults().stream()
+				.map(d -> new AvgPartial(((Number) d.get("_id")).longValue(), d.getString("name"),
+						d.getInteger("scoreSum"), d.getInteger("markCount"))).toList(), AVG_ORDER, Integer.MAX_VALUE);
+		return res.stream().map(p -> new NameAvgScore(p.name(), (int) p.avgScore())).toList();
+	}
+
+	public List<Student> findBestStudents(int nStudents) {
+		return runMerged(range -> {
+			Query query = bestStudentsQuery(nStudents).addCriteria(range.criteria());
+			query.fields().include("goodMarkCount");
+			return mongoTemplate.find(query, StudentDoc.class);
+		}, BEST_ORDER, nStudents).stream().map(StudentDoc::build).toList();
+	}
+
+	public List<String> findWorstStudents(int nStudents) {
+		return runMerged(range -> {
+			Query query = worstStudentsQuery(nStudents).addCriteria(range.criteria());
+			query.fields().include("id", "scoreSum");
+			return mongoTemplate.find(query, StudentDoc.class);
+		}, WORST_ORDER, nStudents).stream().map(StudentDoc::getName).toList();
+	}
+
+	//each range query returns its results in the given order
+	private <T> List<T> runMerged(Function<IdRange, List<T>> rangeQuery, Comparator<T> order, int limit) {
+		List<IdRange> ranges = idRanges();
+		List<List<T>> parts = new ArrayList<>(ranges.size());
+		try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<List<T>>> futures = ranges.stream()
+					.map(range -> executor.submit(() -> rangeQuery.apply(range))).toList();
+			for(Future<List<T>> future: futures) {
+				parts.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("sharded aggregation interrupted", e);
+		}
+		List<T> res = mergeSorted(parts, order, limit);
+		log.trace("{} ranges merged into {} results", ranges.size(), res.size());
+		return res;
+	}
+
+	//ranges of the ids space between the min and max ids, empty for no students
+	private List<IdRange> idRanges() {
+		Long minId = findEdgeId(Direction.ASC);
+		Long maxId = findEdgeId(Direction.DESC);
+		List<IdRange> res = new ArrayList<>(parallelism);
+		if(minId != null && maxId != null) {
+			//the distances from the min id are unsigned, so the span of the whole long type doesn't overflow
+			long step = Long.divideUnsigned(maxId - minId, parallelism);
+			long from = minId;
+			long to;
+			do {
+				to = Long.compareUnsigned(maxId - from, step) <= 0 ? maxId : from + step;
+				res.add(new IdRange(from, to));
+				from = to + 1;
+			} while(to != maxId);
+		}
+		return res;
+	}
+
+	private Long findEdgeId(Direction direction) {
+		StudentDoc studentDoc = mongoTemplate.findOne(withFields(new Query().with(Sort.by(direction, "id")), "id"),
+				StudentDoc.class);
+		return studentDoc == null ? null : studentDoc.getId();
+	}
+
+	//k-way merge of the sorted lists by the heap of the lists heads
+	static <T> List<T> mergeSorted(List<List<T>> parts, Comparator<T> order, int limit) {
+		//heap entries are {part index, element index}
+		PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+				(h1, h2) -> order.compare(parts.get(h1[0]).get(h1[1]), parts.get(h2[0]).get(h2[1])));
+		for(int i = 0; i < parts.size(); i++) {
+			if(!parts.get(i).isEmpty()) {
+				heads.add(new int[] {i, 0});
+			}
+		}
+		List<T> res = new ArrayList<>();
+		while(res.size() < limit && !heads.isEmpty()) {
+			int[] head = heads.poll();
+			List<T> part = parts.get(head[0]);
+			res.add(part.get(head[1]));
+			if(++head[1] < part.size()) {
+				heads.add(head);
+			}
+		}
+		return res;
+	}
+
+}
@@ -1,21 +1,45 @@
 package telran.students.repo;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 import telran.students.dto.Mark;
 import telran.students.dto.NameAvgScore;
+import telran.students.dto.PeriodAvgScore;
+import telran.students.dto.ScoreStatistics;
 import telran.students.dto.Student;
+import telran.students.dto.StudentScores;
 
 public interface StudentAggregateRepo {
 	List<Mark> aggregateStudentSubjectMarks(long id, String subject);
 	
+	//marks of the subject filtered at DB server in one round trip, null if there is no student
+	List<Mark> findStudentSubjectMarks(long id, String subject);
+	
+	//all marks of the student in one round trip, null if there is no student
+	List<Mark> findStudentAllMarks(long id);
+	
 	List<NameAvgScore> aggregateStudentAvgScoreGreater(int avgScoreThreshold);
 	
 	List<Mark> aggregateStudentMarksAtDates(long id, LocalDate from, LocalDate to);
 	
+	//marks of the dates filtered at DB server in one round trip, null if there is no student
+	List<Mark> findStudentMarksAtDates(long id, LocalDate from, LocalDate to);
+	
 	List<Student> aggregateBestStudents(int nStudents);
 	
 	List<String> aggregateWorstStudents(int nStudents);
+	
+	List<StudentScores> aggregateStudentsScores();
+	
+	//scores of the existing students of the ids
+	List<StudentScores> aggregateStudentsScores(Collection<Long> ids);
+	
+	//subject null means all subjects
+	List<PeriodAvgScore> aggregateMonthAvgScore(LocalDate from, LocalDate to, String subject);
+	
+	//scores distribution of the marks counted by scores at DB server, null filters mean all
+	ScoreStatistics aggregateScoreStatistics(Long id, String subject, LocalDate from, LocalDate to, int binWidth);
 
 }
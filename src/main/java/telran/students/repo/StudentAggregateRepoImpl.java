@@ -1,116 +1,167 @@
 package telran.students.repo;
 
+import static telran.students.repo.MarkConverters.epochDay;
+import static telran.students.repo.StudentQueries.*;
+
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 
 import org.bson.Document;
-import org.springframework.data.domain.Sort.Direction;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
-import org.springframework.data.mongodb.core.aggregation.GroupOperation;
-import org.springframework.data.mongodb.core.aggregation.LimitOperation;
-import org.springframework.data.mongodb.core.aggregation.MatchOperation;
-import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
-import org.springframework.data.mongodb.core.aggregation.SortOperation;
-import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import telran.students.dto.Mark;
 import telran.students.dto.NameAvgScore;
+import telran.students.dto.PeriodAvgScore;
+import telran.students.dto.ScoreStatistics;
 import telran.students.dto.Student;
+import telran.students.dto.StudentScores;
+import telran.students.model.MarksBucketDoc;
 import telran.students.model.StudentDoc;
+import telran.students.repo.StudentMarksCodec.StudentMarks;
 
 @Slf4j
 @RequiredArgsConstructor
 
 public class StudentAggregateRepoImpl implements StudentAggregateRepo {
 	final MongoTemplate mongoTemplate;
-	final int levelGoodScore = 80;
-	private static final String SUM_SCORES_FIELD = "sum_scores";
+	final Optional<MarksBuckets> marksBuckets;
+	final CodecReads codecReads;
+	final Optional<ShardedAggregations> shardedAggregations;
+	ZoneId legacyZone;
+	static final StudentCodec STUDENT_CODEC = new StudentCodec();
+	static final NameAvgScoreCodec NAME_AVG_SCORE_CODEC = new NameAvgScoreCodec();
+
+	@Value("${app.students.migration.epoch-days.legacy-zone:}")
+	void setLegacyZone(String zone) {
+		legacyZone = MarkConverters.legacyZone(zone);
+	}
 	
 	@Override
 	public List<Mark> aggregateStudentSubjectMarks(long id, String subject) {
-		MatchOperation matchStudent = Aggregation.match(Criteria.where("id").is(id));
-		UnwindOperation unwindOperation = Aggregation.unwind("marks");
-		MatchOperation matchMarksSubject = Aggregation.match(Criteria.where("marks.subject").is(subject));
-		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.date");
-		Aggregation pipeLine = Aggregation.newAggregation(matchStudent, unwindOperation,
-				matchMarksSubject, projectionOperation);
-		var aggregationResult = mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class);
-		List<Document> listDocuments = aggregationResult.getMappedResults();
-		log.debug("listDocuments: {}", listDocuments);
-		List<Mark> result = listDocuments.stream()
-				.map(d -> new Mark(subject, d.getDate("date").toInstant()
-						.atZone(ZoneId.systemDefault()).toLocalDate(), d.getInteger("score"))).toList();
-		return result;			
+		List<Mark> result = findStudentSubjectMarks(id, subject);
+		return result == null ? List.of() : result;
+	}
+	
+	@Override
+	public List<Mark> findStudentSubjectMarks(long id, String subject) {
+		List<Mark> result = findStudentMarks(id, Criteria.where("subjects").is(subject),
+				subjectMarkCondition(subject), new StudentMarksCodec(subject, legacyZone));
+		log.debug("student {}, marks of subject {}: {}", id, subject, result);
+		return result;
+	}
+	
+	@Override
+	public List<Mark> findStudentAllMarks(long id) {
+		List<Mark> result = findStudentMarks(id, new Criteria(), null, new StudentMarksCodec(legacyZone));
+		log.trace("student {}, {} marks", id, result == null ? null : result.size());
+		return result;
+	}
+	
+	@Override
+	public List<Mark> findStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
+		//only buckets with dates range overlapping the given one are joined
+		List<Mark> result = findStudentMarks(id, Criteria.where("minDay").lte(epochDay(to)).and("maxDay").gte(epochDay(from)),
+				datesMarkCondition(from, to), new StudentMarksCodec(legacyZone));
+		log.debug("student {}, marks from {} to {}: {}", id, from, to, result);
+		return result;
+	}
+	
+	//one aggregation returning no document if there is no student; bucket criteria are applied in bucketed mode only
+	private List<Mark> findStudentMarks(long id, Criteria bucketCriteria, AggregationExpression markCondition,
+			StudentMarksCodec codec) {
+		Aggregation pipeline = marksBuckets.isPresent()
+				? studentBucketsMarksFilterPipeline(id, bucketCriteria, markCondition,
+						mongoTemplate.getCollectionName(MarksBucketDoc.class))
+				: studentMarksFilterPipeline(id, markCondition);
+		List<StudentMarks> students = codecReads.aggregate(pipeline, StudentDoc.class, codec);
+		return students.isEmpty() ? null : students.get(0).marks();
 	}
 	
 	@Override
 	public List<NameAvgScore> aggregateStudentAvgScoreGreater(int avgScoreThreshold) {
-		UnwindOperation unwindOperation = Aggregation.unwind("marks");
-		GroupOperation groupOperation = Aggregation.group("name").avg("marks.score").as("avgMark");
-		MatchOperation matchOperation = Aggregation.match(Criteria.where("avgMark").gt(avgScoreThreshold));
-		SortOperation sortOperation = Aggregation.sort(Direction.DESC, "avgMark");
-		Aggregation pipeLine = Aggregation.newAggregation(unwindOperation, groupOperation, matchOperation, sortOperation);
-		List<NameAvgScore> res = mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class)
-				.getMappedResults().stream().map(d -> new NameAvgScore(d.getString("_id"),
-						d.getDouble("avgMark").intValue())).toList();		
+		if(shardedAggregations.isPresent()) {
+			return shardedAggregations.get().findStudentAvgScoreGreater(avgScoreThreshold);
+		}
+		List<NameAvgScore> res = codecReads.aggregate(studentAvgScoreGreaterPipeline(avgScoreThreshold),
+				StudentDoc.class, NAME_AVG_SCORE_CODEC);
 		return res;
 	}
 
 	@Override
 	public List<Mark> aggregateStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
-		MatchOperation matchStudent = Aggregation.match(Criteria.where("id").is(id));
-		UnwindOperation unwindMarks = Aggregation.unwind("marks");
-		Criteria criteria = Criteria.where("marks.date").gte(from).lte(to);		
-		MatchOperation matchDates = Aggregation.match(criteria);
-		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.date", "marks.subject");
-		Aggregation pipeLine = Aggregation.newAggregation(matchStudent, unwindMarks, matchDates, projectionOperation);
-		var aggregationResult = mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class);
-		List<Document> listDocuments = aggregationResult.getMappedResults();
-		log.debug("list of documents: {}", listDocuments);
-		List<Mark> result = listDocuments.stream().map(d -> new Mark(d.getString("subject"), 
-				d.getDate("date").toInstant().atZone(ZoneId.systemDefault()).toLocalDate(), 
-				d.getInteger("score"))).toList();
-		return result;
+		List<Mark> result = findStudentMarksAtDates(id, from, to);
+		return result == null ? List.of() : result;
 	}
 
 	@Override
 	public List<Student> aggregateBestStudents(int nStudents) {
-		Criteria criteria = Criteria.where("marks.score").gt(levelGoodScore);
-		UnwindOperation unwindMarks = Aggregation.unwind("marks");
-		MatchOperation matchMarks = Aggregation.match(criteria);
-		GroupOperation groupOperation = Aggregation.group("id", "name", "phone").count().as("markCount");
-		SortOperation sortOperation = Aggregation.sort(Direction.DESC, "markCount");
-		LimitOperation limitOperation = Aggregation.limit(nStudents);
-		ProjectionOperation projectionOperation = Aggregation.project("id", "name", "phone");
-		Aggregation pipeLine = Aggregation.newAggregation(unwindMarks, matchMarks, groupOperation, sortOperation, limitOperation, projectionOperation);
-		var aggregationResult = mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class);
-		List<Document> listDocuments = aggregationResult.getMappedResults();
-		log.debug("list of documents: {}", listDocuments);
-		List<Student> result = listDocuments.stream()
-				.map(d -> new Student(d.getLong("id"), d.getString("name"), d.getString("phone")) ).toList();		
+		if(shardedAggregations.isPresent()) {
+			return shardedAggregations.get().findBestStudents(nStudents);
+		}
+		List<Student> result = codecReads.find(bestStudentsQuery(nStudents), StudentDoc.class, STUDENT_CODEC);
+		log.debug("{} best students are {}", nStudents, result);
 		return result;
 	}
 	
 	@Override
 	public List<String> aggregateWorstStudents(int nStudents) {
-		AggregationExpression expression = AccumulatorOperators.Sum.sumOf("marks.score");
-		ProjectionOperation projectionOperation = Aggregation.project("name").and(expression)
-				.as(SUM_SCORES_FIELD);
-		SortOperation sortOperation = Aggregation.sort(Direction.ASC, SUM_SCORES_FIELD);
-		LimitOperation limitOperation = Aggregation.limit(nStudents);
-		ProjectionOperation projectionOperationOnlyName = Aggregation.project("name");
-		Aggregation pipeLine = Aggregation
-				.newAggregation(projectionOperation,sortOperation, limitOperation, projectionOperationOnlyName);
-		List<String> res = mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class)
-				.getMappedResults().stream().map(d -> d.getString("name")).toList();
+		if(shardedAggregations.isPresent()) {
+			return shardedAggregations.get().findWorstStudents(nStudents);
+		}
+		List<String> res = codecReads.find(worstStudentsQuery(nStudents), StudentDoc.class, STUDENT_CODEC).stream()
+				.map(Student::name).toList();
 		log.debug("{} worst students are {}", nStudents, res);
 		return res;
 	}
 
+	@Override
+	public List<StudentScores> aggregateStudentsScores() {
+		List<StudentScores> res = findStudentsScores(new Criteria());
+		log.debug("scores of {} students", res.size());
+		return res;
+	}
+
+	@Override
+	public List<StudentScores> aggregateStudentsScores(Collection<Long> ids) {
+		return findStudentsScores(Criteria.where("id").in(ids));
+	}
+
+	private List<StudentScores> findStudentsScores(Criteria criteria) {
+		Query query = withFields(new Query(criteria), "id", "name", "phone", "goodMarkCount", "scoreSum");
+		return mongoTemplate.find(query, StudentDoc.class).stream()
+				.map(s -> new StudentScores(s.build(), s.getGoodMarkCount(), s.getScoreSum())).toList();
+	}
+
+	@Override
+	public List<PeriodAvgScore> aggregateMonthAvgScore(LocalDate from, LocalDate to, String subject) {
+		Class<?> marksHolder = marksBuckets.isPresent() ? MarksBucketDoc.class : StudentDoc.class;
+		List<PeriodAvgScore> res = mongoTemplate.aggregate(monthAvgScorePipeline(from, to, subject),
+				marksHolder, Document.class).getMappedResults().stream().map(StudentQueries::toPeriodAvgScore)
+				.sorted(Comparator.comparing(PeriodAvgScore::period)).toList();
+		log.debug("average scores by months from {} to {}, subject {}: {}", from, to, subject, res);
+		return res;
+	}
+
+	@Override
+	public ScoreStatistics aggregateScoreStatistics(Long id, String subject, LocalDate from, LocalDate to,
+			int binWidth) {
+		Aggregation pipeline = marksBuckets.isPresent() ? scoreCountsPipeline("studentId", id, subject, from, to)
+				: scoreCountsPipeline("id", id, subject, from, to);
+		Class<?> marksHolder = marksBuckets.isPresent() ? MarksBucketDoc.class : StudentDoc.class;
+		ScoreStatistics res = toScoreStatistics(mongoTemplate.aggregate(pipeline, marksHolder, Document.class)
+				.getMappedResults(), binWidth);
+		log.debug("scores statistics of student {}, subject {}, from {} to {}: {}", id, subject, from, to, res);
+		return res;
+	}
+
 }
@@ -0,0 +1,53 @@
+package telran.students.repo;
+
+import static telran.students.repo.BsonValues.*;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import telran.students.dto.Student;
+
+//decodes Student straight from {_id, name, phone} BSON of the students projection
+public class StudentCodec implements Codec<Student> {
+
+	@Override
+	public Student decode(BsonReader reader, DecoderContext decoderContext) {
+		Long id = null;
+		String name = null;
+		String phone = null;
+		reader.readStartDocument();
+		while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			switch(reader.readName()) {
+				case "_id" -> id = readLong(reader);
+				case "name" -> name = readString(reader);
+				case "phone" -> phone = readString(reader);
+				default -> reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		return new Student(id, name, phone);
+	}
+
+	@Override
+	public void encode(BsonWriter writer, Student value, EncoderContext encoderContext) {
+		writer.writeStartDocument();
+		if(value.id() == null) {
+			writer.writeNull("_id");
+		} else {
+			writer.writeInt64("_id", value.id());
+		}
+		writeString(writer, "name", value.name());
+		writeString(writer, "phone", value.phone());
+		writer.writeEndDocument();
+	}
+
+	@Override
+	public Class<Student> getEncoderClass() {
+		return Student.class;
+	}
+
+}
@@ -0,0 +1,64 @@
+package telran.students.repo;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import telran.students.dto.Mark;
+
+//decodes {_id, marks} BSON of the student with the server side filtered marks;
+//null or missing marks array is decoded as empty list
+class StudentMarksCodec implements Codec<StudentMarksCodec.StudentMarks> {
+	record StudentMarks(List<Mark> marks) {
+	}
+	final MarkCodec markCodec;
+	
+	StudentMarksCodec(ZoneId legacyZone) {
+		this(null, legacyZone);
+	}
+	
+	StudentMarksCodec(String subject, ZoneId legacyZone) {
+		markCodec = new MarkCodec(subject, legacyZone);
+	}
+
+	@Override
+	public StudentMarks decode(BsonReader reader, DecoderContext decoderContext) {
+		List<Mark> marks = new ArrayList<>();
+		reader.readStartDocument();
+		while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			if(reader.readName().equals("marks") && reader.getCurrentBsonType() == BsonType.ARRAY) {
+				reader.readStartArray();
+				while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+					marks.add(markCodec.decode(reader, decoderContext));
+				}
+				reader.readEndArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		return new StudentMarks(marks);
+	}
+
+	@Override
+	public void encode(BsonWriter writer, StudentMarks value, EncoderContext encoderContext) {
+		writer.writeStartDocument();
+		writer.writeStartArray("marks");
+		value.marks().forEach(mark -> markCodec.encode(writer, mark, encoderContext));
+		writer.writeEndArray();
+		writer.writeEndDocument();
+	}
+
+	@Override
+	public Class<StudentMarks> getEncoderClass() {
+		return StudentMarks.class;
+	}
+
+}
@@ -0,0 +1,27 @@
+package telran.students.repo;
+
+import telran.students.dto.KeysetPage;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+
+//keyset paged counterparts of the multi-student queries: a page starts right after the sort key
+//of the previous page's last element, null token means the first page
+public interface StudentPageRepo {
+	KeysetPage<Student> pageStudentsByPhoneRegex(String regex, String pageToken, int pageSize);
+	
+	KeysetPage<Student> pageStudentsGoodMarks(int thresholdScore, String pageToken, int pageSize);
+	
+	KeysetPage<Student> pageStudentsFewMarks(int thresholdMarks, String pageToken, int pageSize);
+	
+	KeysetPage<Student> pageStudentsAllGoodMarksSubject(String subject, int thresholdScore,
+			String pageToken, int pageSize);
+	
+	KeysetPage<Student> pageStudentsMarksAmountBetween(int min, int max, String pageToken, int pageSize);
+	
+	KeysetPage<NameAvgScore> pageStudentAvgScoreGreater(int avgScoreThreshold, String pageToken, int pageSize);
+	
+	KeysetPage<Student> pageBestStudents(String pageToken, int pageSize);
+	
+	KeysetPage<String> pageWorstStudents(String pageToken, int pageSize);
+
+}
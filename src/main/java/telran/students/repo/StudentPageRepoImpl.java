@@ -0,0 +1,143 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import lombok.RequiredArgsConstructor;
+import telran.students.dto.KeysetPage;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+
+@RequiredArgsConstructor
+public class StudentPageRepoImpl implements StudentPageRepo {
+	final MongoTemplate mongoTemplate;
+	final Optional<MarksBuckets> marksBuckets;
+
+	@Override
+	public KeysetPage<Student> pageStudentsByPhoneRegex(String regex, String pageToken, int pageSize) {
+		return pageStudents(phoneRegexCriteria(regex), pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> pageStudentsGoodMarks(int thresholdScore, String pageToken, int pageSize) {
+		return pageStudents(goodMarksCriteria(thresholdScore), pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> pageStudentsFewMarks(int thresholdMarks, String pageToken, int pageSize) {
+		return pageStudents(fewMarksCriteria(thresholdMarks), pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> pageStudentsAllGoodMarksSubject(String subject, int thresholdScore,
+			String pageToken, int pageSize) {
+		if(marksBuckets.isEmpty()) {
+			return pageStudents(allGoodMarksSubjectCriteria(subject, thresholdScore), pageToken, pageSize);
+		}
+		checkPageSize(pageSize);
+		List<Student> students = marksBuckets.get().findStudentsAllGoodMarksSubject(subject, thresholdScore,
+				pageToken == null ? null : PageTokens.id(pageToken), pageSize + 1);
+		return toPage(students, pageSize, Function.identity(), s -> PageTokens.encode(s.id()));
+	}
+
+	@Override
+	public KeysetPage<Student> pageStudentsMarksAmountBetween(int min, int max, String pageToken, int pageSize) {
+		return pageStudents(marksAmountBetweenCriteria(min, max), pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<NameAvgScore> pageStudentAvgScoreGreater(int avgScoreThreshold, String pageToken,
+			int pageSize) {
+		checkPageSize(pageSize);
+		List<AggregationOperation> operations = new ArrayList<>(studentAvgScoreGreaterOperations(avgScoreThreshold,
+				null));
+		if(pageToken != null) {
+			double avgMark = Double.parseDouble(PageTokens.key(pageToken));
+			operations.add(Aggregation.match(afterKey(Criteria.where("avgMark").lt(avgMark), "avgMark", avgMark,
+					pageToken)));
+		}
+		operations.add(Aggregation.limit(pageSize + 1));
+		List<Document> documents = mongoTemplate.aggregate(Aggregation.newAggregation(operations),
+				StudentDoc.class, Document.class).getMappedResults();
+		return toPage(documents, pageSize, StudentQueries::toNameAvgScore,
+				d -> PageTokens.encode(d.getDouble("avgMark"), d.getLong("_id")));
+	}
+
+	@Override
+	public KeysetPage<Student> pageBestStudents(String pageToken, int pageSize) {
+		checkPageSize(pageSize);
+		Criteria criteria = Criteria.where("goodMarkCount").gt(0);
+		if(pageToken != null) {
+			int goodMarkCount = Integer.parseInt(PageTokens.key(pageToken));
+			criteria = new Criteria().andOperator(criteria, afterKey(Criteria.where("goodMarkCount")
+					.lt(goodMarkCount), "goodMarkCount", goodMarkCount, pageToken));
+		}
+		Query query = new Query(criteria).with(Sort.by(Direction.DESC, "goodMarkCount").and(Sort.by("id")))
+				.limit(pageSize + 1);
+		List<StudentDoc> docs = mongoTemplate.find(withFields(query, "id", "name", "phone", "goodMarkCount"),
+				StudentDoc.class);
+		return toPage(docs, pageSize, StudentDoc::build, s -> PageTokens.encode(s.getGoodMarkCount(), s.getId()));
+	}
+
+	@Override
+	public KeysetPage<String> pageWorstStudents(String pageToken, int pageSize) {
+		checkPageSize(pageSize);
+		Criteria criteria = new Criteria();
+		if(pageToken != null) {
+			int scoreSum = Integer.parseInt(PageTokens.key(pageToken));
+			criteria = afterKey(Criteria.where("scoreSum").gt(scoreSum), "scoreSum", scoreSum, pageToken);
+		}
+		Query query = new Query(criteria).with(Sort.by("scoreSum", "id")).limit(pageSize + 1);
+		List<StudentDoc> docs = mongoTemplate.find(withFields(query, "id", "name", "scoreSum"), StudentDoc.class);
+		return toPage(docs, pageSize, StudentDoc::getName, s -> PageTokens.encode(s.getScoreSum(), s.getId()));
+	}
+	
+	private KeysetPage<Student> pageStudents(Criteria criteria, String pageToken, int pageSize) {
+		checkPageSize(pageSize);
+		if(pageToken != null) {
+			criteria = new Criteria().andOperator(criteria, Criteria.where("id").gt(PageTokens.id(pageToken)));
+		}
+		Query query = new Query(criteria).with(Sort.by("id")).limit(pageSize + 1);
+		List<StudentDoc> docs = mongoTemplate.find(withFields(query, "id", "name", "phone"), StudentDoc.class);
+		return toPage(docs, pageSize, StudentDoc::build, s -> PageTokens.encode(s.getId()));
+	}
+	
+	//elements after the last one of the previous page in order of (key, id)
+	private Criteria afterKey(Criteria keyAfter, String keyField, Object key, String pageToken) {
+		return new Criteria().orOperator(keyAfter,
+				Criteria.where(keyField).is(key).and("_id").gt(PageTokens.id(pageToken)));
+	}
+	
+	//before the query: limit(0) of page size -1 would be no limit
+	private void checkPageSize(int pageSize) {
+		if(pageSize <= 0) {
+			throw new IllegalArgumentException(String.format("wrong page size %d", pageSize));
+		}
+	}
+	
+	//one element more than page size is requested to know whether there is a next page
+	private <D, T> KeysetPage<T> toPage(List<D> documents, int pageSize, Function<D, T> mapper,
+			Function<D, String> tokenMapper) {
+		String nextPageToken = null;
+		if(documents.size() > pageSize) {
+			documents = documents.subList(0, pageSize);
+			nextPageToken = tokenMapper.apply(documents.get(pageSize - 1));
+		}
+		return new KeysetPage<>(documents.stream().map(mapper).toList(), nextPageToken);
+	}
+
+}
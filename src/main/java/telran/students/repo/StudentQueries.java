@@ -0,0 +1,307 @@
+package telran.students.repo;
+
+import static telran.students.repo.MarkConverters.epochDay;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.BooleanOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators.Timezone;
+import org.springframework.data.mongodb.core.aggregation.MatchOperation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.aggregation.SortOperation;
+import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import telran.students.dto.Mark;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.PeriodAvgScore;
+import telran.students.dto.ScoreBin;
+import telran.students.dto.ScoreStatistics;
+import telran.students.model.StudentDoc;
+
+//queries, pipelines and updates shared by the blocking and the reactive repositories
+public final class StudentQueries {
+	private StudentQueries() {
+	}
+	public static final String STUDENT_BY_ID = "{id:?0}";
+	public static final String STUDENT_MARKS_FIELDS = "{marks:1, id:0}";
+	public static final String STUDENT_NO_MARKS_FIELDS = "{id:1, name:1, phone:1}";
+	
+	//students without marks in order of ids, the only definition of the students queries
+	//for the lists, the streams and the reactive repository
+	public static Query studentsQuery(Criteria criteria) {
+		return withFields(new Query(criteria), "id", "name", "phone").with(Sort.by("id"));
+	}
+	
+	//phones starting with the prefix and having at least one more character, as before the regex has been anchored;
+	//anchored regex is served by phone index
+	public static String phonePrefixRegex(String phonePrefix) {
+		return "^" + Pattern.quote(phonePrefix) + ".+";
+	}
+	
+	public static Criteria phoneRegexCriteria(String regex) {
+		return Criteria.where("phone").regex(regex);
+	}
+	
+	public static Criteria goodMarksCriteria(int thresholdScore) {
+		return Criteria.where("markCount").gt(0).and("minScore").gt(thresholdScore);
+	}
+	
+	public static Criteria fewMarksCriteria(int thresholdMarks) {
+		return Criteria.where("markCount").lt(thresholdMarks);
+	}
+	
+	public static Criteria allGoodMarksSubjectCriteria(String subject, int thresholdScore) {
+		return new Criteria().andOperator(
+				Criteria.where("marks").elemMatch(Criteria.where("subject").is(subject).and("score").gte(thresholdScore)),
+				Criteria.where("marks").not().elemMatch(Criteria.where("subject").is(subject).and("score").lt(thresholdScore)));
+	}
+	
+	public static Criteria marksAmountBetweenCriteria(int min, int max) {
+		return Criteria.where("markCount").gte(min).lte(max);
+	}
+	
+	public static Query byId(long id) {
+		return new Query(Criteria.where("id").is(id));
+	}
+	
+	public static Query withFields(Query query, String... fields) {
+		query.fields().include(fields);
+		return query;
+	}
+	
+	public static Update marksUpdate(List<Mark> marks) {
+		return marksStatisticsUpdate(marks).push("marks").each(marks.toArray());
+	}
+	
+	public static Update marksStatisticsUpdate(List<Mark> marks) {
+		IntSummaryStatistics statistics = marks.stream().mapToInt(Mark::score).summaryStatistics();
+		int nGoodMarks = (int) marks.stream().filter(m -> m.score() > StudentDoc.GOOD_SCORE_LEVEL).count();
+		return new Update()
+				.inc("markCount", (int) statistics.getCount())
+				.inc("scoreSum", (int) statistics.getSum())
+				.inc("goodMarkCount", nGoodMarks)
+				.min("minScore", statistics.getMin())
+				.max("maxScore", statistics.getMax());
+	}
+	
+	public static Aggregation studentSubjectMarksPipeline(long id, String subject) {
+		MatchOperation matchStudent = Aggregation.match(Criteria.where("id").is(id));
+		UnwindOperation unwindOperation = Aggregation.unwind("marks");
+		MatchOperation matchMarksSubject = Aggregation.match(Criteria.where("marks.subject").is(subject));
+		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.day");
+		return Aggregation.newAggregation(matchStudent, unwindOperation,
+				matchMarksSubject, projectionOperation);
+	}
+	
+	//one document of the student with its marks satisfying the condition (all marks for null condition)
+	//filtered at DB server, none if there is no student; the condition refers to the mark as "mark"
+	public static Aggregation studentMarksFilterPipeline(long id, AggregationExpression markCondition) {
+		return Aggregation.newAggregation(Aggregation.match(Criteria.where("id").is(id)),
+				Aggregation.project().and(marksFilter(markCondition)).as("marks"));
+	}
+	
+	//the same for the marks in buckets of the given collection; the student is joined with its buckets
+	//matching the criteria, filtered marks of the buckets are concatenated in order of the buckets
+	public static Aggregation studentBucketsMarksFilterPipeline(long id, Criteria bucketCriteria,
+			AggregationExpression markCondition, String bucketsCollection) {
+		return Aggregation.newAggregation(Aggregation.match(Criteria.where("id").is(id)),
+				Aggregation.lookup().from(bucketsCollection).localField("_id").foreignField("studentId")
+					.pipeline(Aggregation.match(bucketCriteria),
+							Aggregation.sort(Sort.by("seq")),
+							Aggregation.project().andExclude("_id").and(marksFilter(markCondition)).as("marks"))
+					.as("buckets"),
+				Aggregation.project().and(ArrayOperators.Reduce.arrayOf("buckets.marks").withInitialValue(List.of())
+						.reduce(ArrayOperators.ConcatArrays.arrayOf("$$value").concat("$$this"))).as("marks"));
+	}
+	
+	public static AggregationExpression subjectMarkCondition(String subject) {
+		return ComparisonOperators.Eq.valueOf("mark.subject").equalToValue(subject);
+	}
+	
+	//dates are compared by the epoch days stored by MarkConverters
+	public static AggregationExpression datesMarkCondition(LocalDate from, LocalDate to) {
+		return BooleanOperators.And.and(
+				ComparisonOperators.Gte.valueOf("mark.day").greaterThanEqualToValue(epochDay(from)),
+				ComparisonOperators.Lte.valueOf("mark.day").lessThanEqualToValue(epochDay(to)));
+	}
+	
+	private static AggregationExpression marksFilter(AggregationExpression markCondition) {
+		return markCondition == null ? context -> new Document("$ifNull", List.of("$marks", List.of()))
+				: ArrayOperators.Filter.filter("marks").as("mark").by(markCondition);
+	}
+	
+	public static Aggregation studentAvgScoreGreaterPipeline(int avgScoreThreshold) {
+		return studentAvgScoreGreaterPipeline(avgScoreThreshold, null);
+	}
+	
+	//criteria null means all students
+	public static Aggregation studentAvgScoreGreaterPipeline(int avgScoreThreshold, Criteria criteria) {
+		return Aggregation.newAggregation(studentAvgScoreGreaterOperations(avgScoreThreshold, criteria));
+	}
+	
+	//in order of the average score, ties are ordered by id; criteria null means all students
+	public static List<AggregationOperation> studentAvgScoreGreaterOperations(int avgScoreThreshold,
+			Criteria criteria) {
+		//average greater than threshold requires at least one score greater than threshold
+		Criteria maxScoreCriteria = Criteria.where("markCount").gt(0).and("maxScore").gt(avgScoreThreshold);
+		MatchOperation matchMaxScore = Aggregation.match(criteria == null ? maxScoreCriteria
+				: new Criteria().andOperator(criteria, maxScoreCriteria));
+		ProjectionOperation projectionOperation = Aggregation.project("name", "scoreSum", "markCount")
+				.and(ArithmeticOperators.Divide.valueOf("scoreSum").divideBy("markCount")).as("avgMark");
+		MatchOperation matchOperation = Aggregation.match(Criteria.where("avgMark").gt(avgScoreThreshold));
+		SortOperation sortOperation = Aggregation.sort(Sort.by(Direction.DESC, "avgMark").and(Sort.by("_id")));
+		return List.of(matchMaxScore, projectionOperation, matchOperation, sortOperation);
+	}
+	
+	public static Aggregation studentMarksAtDatesPipeline(long id, LocalDate from, LocalDate to) {
+		MatchOperation matchStudent = Aggregation.match(Criteria.where("id").is(id));
+		UnwindOperation unwindMarks = Aggregation.unwind("marks");
+		Criteria criteria = Criteria.where("marks.day").gte(epochDay(from)).lte(epochDay(to));
+		MatchOperation matchDates = Aggregation.match(criteria);
+		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.day", "marks.subject");
+		return Aggregation.newAggregation(matchStudent, unwindMarks, matchDates, projectionOperation);
+	}
+	
+	//marks of the given period are matched before and after unwinding the marks array;
+	//the pipeline is applied to any collection of documents with marks array
+	public static Aggregation monthAvgScorePipeline(LocalDate from, LocalDate to, String subject) {
+		Criteria markCriteria = Criteria.where("day").gte(epochDay(from)).lte(epochDay(to));
+		Criteria unwoundCriteria = Criteria.where("marks.day").gte(epochDay(from)).lte(epochDay(to));
+		if(subject != null) {
+			markCriteria.and("subject").is(subject);
+			unwoundCriteria.and("marks.subject").is(subject);
+		}
+		List<AggregationOperation> operations = new ArrayList<>(List.of(
+				Aggregation.match(Criteria.where("marks").elemMatch(markCriteria)),
+				Aggregation.unwind("marks"),
+				Aggregation.match(unwoundCriteria)));
+		operations.addAll(monthAvgScoreOperations("marks.date", "marks.score"));
+		return Aggregation.newAggregation(operations);
+	}
+	
+	public static List<AggregationOperation> monthAvgScoreOperations(String dateField, String scoreField) {
+		return List.of(
+				Aggregation.project().and(DateOperators.dateOf(dateField).withTimezone(Timezone.valueOf("UTC"))
+						.toString("%Y-%m")).as("period")
+					.and(scoreField).as("score"),
+				Aggregation.group("period").avg("score").as("avgScore").count().as("nMarks"));
+	}
+	
+	//numbers of marks by scores for the optional filters (null means no filter); scores are integers, so the output
+	//is bounded by number of distinct scores whatever number of marks; the pipeline is applied to any collection
+	//of documents with marks array, idField is the field of student id there
+	public static Aggregation scoreCountsPipeline(String idField, Long id, String subject,
+			LocalDate from, LocalDate to) {
+		List<AggregationOperation> operations = new ArrayList<>();
+		if(id != null) {
+			operations.add(Aggregation.match(Criteria.where(idField).is(id)));
+		}
+		boolean marksFiltered = subject != null || from != null || to != null;
+		if(marksFiltered) {
+			operations.add(Aggregation.match(Criteria.where("marks").elemMatch(markCriteria("", subject, from, to))));
+		}
+		operations.add(Aggregation.unwind("marks"));
+		if(marksFiltered) {
+			operations.add(Aggregation.match(markCriteria("marks.", subject, from, to)));
+		}
+		operations.add(Aggregation.group("marks.score").count().as("nMarks"));
+		return Aggregation.newAggregation(operations);
+	}
+	
+	private static Criteria markCriteria(String prefix, String subject, LocalDate from, LocalDate to) {
+		Criteria criteria = new Criteria();
+		if(subject != null) {
+			criteria.and(prefix + "subject").is(subject);
+		}
+		if(from != null || to != null) {
+			Criteria dayCriteria = criteria.and(prefix + "day");
+			if(from != null) {
+				dayCriteria.gte(epochDay(from));
+			}
+			if(to != null) {
+				dayCriteria.lte(epochDay(to));
+			}
+		}
+		return criteria;
+	}
+	
+	//percentiles are nearest rank ones, histogram bins of the given width cover the range from min to max score
+	public static ScoreStatistics toScoreStatistics(List<Document> scoreCounts, int binWidth) {
+		TreeMap<Integer, Integer> counts = new TreeMap<>();
+		scoreCounts.forEach(d -> counts.put(((Number) d.get("_id")).intValue(), ((Number) d.get("nMarks")).intValue()));
+		if(counts.isEmpty()) {
+			return new ScoreStatistics(0, 0, 0, 0, 0, 0, List.of());
+		}
+		int nMarks = 0;
+		long scoreSum = 0;
+		for(var entry: counts.entrySet()) {
+			nMarks += entry.getValue();
+			scoreSum += (long) entry.getKey() * entry.getValue();
+		}
+		int minScore = counts.firstKey();
+		int maxScore = counts.lastKey();
+		int firstBin = Math.floorDiv(minScore, binWidth);
+		int[] binCounts = new int[Math.floorDiv(maxScore, binWidth) - firstBin + 1];
+		counts.forEach((score, n) -> binCounts[Math.floorDiv(score, binWidth) - firstBin] += n);
+		List<ScoreBin> histogram = new ArrayList<>(binCounts.length);
+		for(int i = 0; i < binCounts.length; i++) {
+			int binFrom = (firstBin + i) * binWidth;
+			histogram.add(new ScoreBin(binFrom, binFrom + binWidth, binCounts[i]));
+		}
+		return new ScoreStatistics(nMarks, (double) scoreSum / nMarks, minScore, percentile(counts, nMarks, 50),
+				percentile(counts, nMarks, 90), maxScore, histogram);
+	}
+	
+	private static int percentile(TreeMap<Integer, Integer> counts, int nMarks, int percent) {
+		long rank = Math.max(1, ((long) nMarks * percent + 99) / 100);
+		long cumulative = 0;
+		int res = counts.lastKey();
+		for(var entry: counts.entrySet()) {
+			cumulative += entry.getValue();
+			if(cumulative >= rank) {
+				res = entry.getKey();
+				break;
+			}
+		}
+		return res;
+	}
+	
+	public static Query bestStudentsQuery(int nStudents) {
+		Query query = new Query(Criteria.where("goodMarkCount").gt(0))
+				.with(Sort.by(Direction.DESC, "goodMarkCount").and(Sort.by("id"))).limit(nStudents);
+		return withFields(query, "id", "name", "phone");
+	}
+	
+	public static Query worstStudentsQuery(int nStudents) {
+		Query query = new Query().with(Sort.by("scoreSum", "id")).limit(nStudents);
+		return withFields(query, "name");
+	}
+	
+	public static PeriodAvgScore toPeriodAvgScore(Document document) {
+		return new PeriodAvgScore(document.getString("_id"), document.getDouble("avgScore").intValue(),
+				document.getInteger("nMarks"));
+	}
+	
+	public static NameAvgScore toNameAvgScore(Document document) {
+		return new NameAvgScore(document.getString("name"), document.getDouble("avgMark").intValue());
+	}
+
+}
@@ -1,43 +1,36 @@
 package telran.students.repo;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
+import static telran.students.repo.StudentQueries.*;
+
 import telran.students.dto.IdName;
 import telran.students.dto.IdNamePhone;
 import telran.students.dto.MarksOnly;
-import telran.students.dto.Student;
 import telran.students.model.StudentDoc;
 
-public interface StudentRepo extends MongoRepository<StudentDoc, Long>, StudentAggregateRepo {
-	@Query(value="{id:?0}", fields = "{marks:1, id:0}")
+public interface StudentRepo extends MongoRepository<StudentDoc, Long>, StudentAggregateRepo,
+	StudentUpdateRepo, StudentStreamRepo, StudentPageRepo {
+	@Query(value=STUDENT_BY_ID, fields = STUDENT_MARKS_FIELDS)
 	StudentDoc findStudentMarks(long id);
 	/***************************************************/
-	@Query(value="{id:?0}", fields = "{id:1, name:1, phone:1}")
+	@Query(value=STUDENT_BY_ID, fields = STUDENT_NO_MARKS_FIELDS)
 	StudentDoc findStudentNoMarks(long id);
 	/**********************************************/
 	IdName findByPhone(String phone);
+	
+	List<IdNamePhone> findByPhoneIn(Collection<String> phones);
 	/*********************************************/
 	List<IdNamePhone> findByPhoneRegex(String string);
-	/*****************************************************/
-	@Query(value="{$and:[{marks: {$elemMatch:{score:{$gt:?0}}}}, {marks: {$not:{$elemMatch:{score:{$lte:?0}}}}}]}")
-	List<IdNamePhone> findByGoodMarks(int thresholdScore);
-	/***************************************************************/
-	@Query(value="{$expr:{$lt:[{$size:$marks}, ?0 ]}}")
-	List<IdNamePhone> findByFewMarks(int thresholdMarks);
-	/***************************************************************/
-	@Query(value= "{"			
-			+ "marks: {$elemMatch:{subject:?0, score:{$gte:?1}}," 
-			+ "	$not: {$elemMatch:{subject:?0, score:{$lt:?1}}}	}"		
-			+ "}")	
-	List<IdNamePhone> findByAllGoodMarksSubject(String subject, int thresholdScore);
 	
+	//anchored regex and the order are served by phone index
+	List<IdNamePhone> findByPhoneRegexOrderByPhone(String regex, Limit limit);
+	/*****************************************************/
 	MarksOnly findByIdAndMarksSubject(long id, String subject);	
-	
-	
-	@Query(value="{$expr:{$and:[{$gte:[{$size:$marks}, ?0]}, {$lte:[{$size:$marks}, ?1]}]}}")
-	List<Student> findStudentsMarksAmountBetween(int min, int max);
 
 }
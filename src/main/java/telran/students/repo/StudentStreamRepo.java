@@ -0,0 +1,39 @@
+package telran.students.repo;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+
+//students queries built of StudentQueries criteria as lists and as their cursor backed counterparts;
+//each stream holds an open DB cursor and must be closed
+public interface StudentStreamRepo {
+	List<Student> findStudentsGoodMarks(int thresholdScore);
+	
+	List<Student> findStudentsFewMarks(int thresholdMarks);
+	
+	List<Student> findStudentsAllGoodMarksSubject(String subject, int thresholdScore);
+	
+	List<Student> findStudentsMarksAmountBetween(int min, int max);
+	
+	Stream<Student> streamStudentsByPhoneRegex(String regex);
+	
+	Stream<Student> streamStudentsGoodMarks(int thresholdScore);
+	
+	Stream<Student> streamStudentsFewMarks(int thresholdMarks);
+	
+	Stream<Student> streamStudentsAllGoodMarksSubject(String subject, int thresholdScore);
+	
+	Stream<Student> streamStudentsMarksAmountBetween(int min, int max);
+	
+	Stream<NameAvgScore> streamStudentAvgScoreGreater(int avgScoreThreshold);
+	
+	//all students without marks, for loading in-memory views
+	Stream<Student> streamStudents();
+	
+	//whole documents of all students, for loading in-memory views
+	Stream<StudentDoc> streamStudentDocs();
+
+}
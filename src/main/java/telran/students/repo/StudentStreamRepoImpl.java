@@ -0,0 +1,100 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import lombok.RequiredArgsConstructor;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+
+@RequiredArgsConstructor
+public class StudentStreamRepoImpl implements StudentStreamRepo {
+	final MongoTemplate mongoTemplate;
+	final Optional<MarksBuckets> marksBuckets;
+	final CodecReads codecReads;
+	@Value("${app.students.stream.batch.size:500}")
+	int batchSize;
+
+	@Override
+	public Stream<Student> streamStudentsByPhoneRegex(String regex) {
+		return streamStudents(phoneRegexCriteria(regex));
+	}
+
+	@Override
+	public List<Student> findStudentsGoodMarks(int thresholdScore) {
+		return findStudents(goodMarksCriteria(thresholdScore));
+	}
+
+	@Override
+	public List<Student> findStudentsFewMarks(int thresholdMarks) {
+		return findStudents(fewMarksCriteria(thresholdMarks));
+	}
+
+	@Override
+	public List<Student> findStudentsAllGoodMarksSubject(String subject, int thresholdScore) {
+		return marksBuckets.map(b -> b.findStudentsAllGoodMarksSubject(subject, thresholdScore, null, 0))
+				.orElseGet(() -> findStudents(allGoodMarksSubjectCriteria(subject, thresholdScore)));
+	}
+
+	@Override
+	public List<Student> findStudentsMarksAmountBetween(int min, int max) {
+		return findStudents(marksAmountBetweenCriteria(min, max));
+	}
+
+	@Override
+	public Stream<Student> streamStudentsGoodMarks(int thresholdScore) {
+		return streamStudents(goodMarksCriteria(thresholdScore));
+	}
+
+	@Override
+	public Stream<Student> streamStudentsFewMarks(int thresholdMarks) {
+		return streamStudents(fewMarksCriteria(thresholdMarks));
+	}
+
+	@Override
+	public Stream<Student> streamStudentsAllGoodMarksSubject(String subject, int thresholdScore) {
+		return marksBuckets.map(b -> b.streamStudentsAllGoodMarksSubject(subject, thresholdScore, batchSize))
+				.orElseGet(() -> streamStudents(allGoodMarksSubjectCriteria(subject, thresholdScore)));
+	}
+
+	@Override
+	public Stream<Student> streamStudentsMarksAmountBetween(int min, int max) {
+		return streamStudents(marksAmountBetweenCriteria(min, max));
+	}
+
+	@Override
+	public Stream<NameAvgScore> streamStudentAvgScoreGreater(int avgScoreThreshold) {
+		return codecReads.aggregateStream(studentAvgScoreGreaterPipeline(avgScoreThreshold), StudentDoc.class,
+				StudentAggregateRepoImpl.NAME_AVG_SCORE_CODEC, batchSize);
+	}
+	
+	@Override
+	public Stream<Student> streamStudents() {
+		return streamStudents(new Criteria());
+	}
+	
+	@Override
+	public Stream<StudentDoc> streamStudentDocs() {
+		return mongoTemplate.stream(new Query().with(Sort.by("id")).cursorBatchSize(batchSize), StudentDoc.class);
+	}
+	
+	private Stream<Student> streamStudents(Criteria criteria) {
+		return mongoTemplate.stream(studentsQuery(criteria).cursorBatchSize(batchSize), StudentDoc.class)
+				.map(StudentDoc::build);
+	}
+	
+	private List<Student> findStudents(Criteria criteria) {
+		return mongoTemplate.find(studentsQuery(criteria), StudentDoc.class).stream().map(StudentDoc::build).toList();
+	}
+
+}
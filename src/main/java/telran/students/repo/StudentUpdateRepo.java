@@ -0,0 +1,33 @@
+package telran.students.repo;
+
+import java.util.List;
+import java.util.Map;
+
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.model.StudentDoc;
+
+public interface StudentUpdateRepo {
+	//inserts the student, throws DuplicateKeyException for existing id or phone
+	StudentDoc addStudent(StudentDoc studentDoc);
+	
+	//atomically appends a mark and updates marks statistics at DB server,
+	//returns document with marks only or null if student doesn't exist;
+	//the $push itself doesn't depend on the marks number, the whole marks array is returned
+	//since addMark of the API responds with all marks of the student
+	StudentDoc pushMark(long id, Mark mark);
+	
+	//atomically sets a new phone at DB server, returns document without marks as it was before update
+	//or null if student doesn't exist
+	StudentDoc setPhone(long id, String phone);
+	
+	//removes student with its marks, returns removed document without marks or null if student doesn't exist
+	StudentDoc removeStudent(long id);
+	
+	//appends marks of many students by one unordered bulk write, returns marks that haven't been added
+	List<MarkFailure> pushMarks(Map<Long, List<Mark>> studentsMarks);
+	
+	//recomputes marks statistics of all students from their marks, returns number of modified documents
+	long rebuildMarksStatistics();
+
+}
@@ -0,0 +1,177 @@
+package telran.students.repo;
+
+import static telran.students.repo.StudentQueries.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.bulk.BulkWriteError;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.model.StudentDoc;
+
+@Slf4j
+@RequiredArgsConstructor
+public class StudentUpdateRepoImpl implements StudentUpdateRepo {
+	final MongoTemplate mongoTemplate;
+	final Optional<MarksBuckets> marksBuckets;
+	final Optional<MarksTimeSeries> marksTimeSeries;
+	private static final String MARKS_STATISTICS_STAGE = """
+			{$set: {
+				markCount: {$size: {$ifNull: ["$marks", []]}},
+				scoreSum: {$sum: "$marks.score"},
+				goodMarkCount: {$size: {$filter: {input: {$ifNull: ["$marks", []]}, cond: {$gt: ["$$this.score", %d]}}}},
+				minScore: {$ifNull: [{$min: "$marks.score"}, "$$REMOVE"]},
+				maxScore: {$ifNull: [{$max: "$marks.score"}, "$$REMOVE"]}
+			}}""";
+
+	@Override
+	public StudentDoc addStudent(StudentDoc studentDoc) {
+		//buckets left by a failure after the delete of a student with the same id are removed before the insert,
+		//otherwise the marks of the new student would be pushed into them
+		marksBuckets.ifPresent(b -> {
+			if(!mongoTemplate.exists(byId(studentDoc.getId()), StudentDoc.class)) {
+				b.removeMarks(studentDoc.getId());
+			}
+		});
+		return mongoTemplate.insert(studentDoc);
+	}
+
+	@Override
+	public StudentDoc pushMark(long id, Mark mark) {
+		StudentDoc res = null;
+		if(marksBuckets.isPresent()) {
+			MarksBuckets buckets = marksBuckets.get();
+			res = buckets.pushMarks(id, List.of(mark)) ? new StudentDoc(id, null, null, buckets.findMarks(id)) : null;
+		} else {
+			Query query = withFields(byId(id), "marks");
+			Update update = marksUpdate(List.of(mark));
+			res = mongoTemplate.findAndModify(query, update,
+					FindAndModifyOptions.options().returnNew(true), StudentDoc.class);
+		}
+		log.trace("student {}, pushed mark {}, found {}", id, mark, res != null);
+		if(res != null) {
+			marksTimeSeries.ifPresent(ts -> ts.copyMarks(Map.of(id, List.of(mark))));
+		}
+		return res;
+	}
+
+	@Override
+	public StudentDoc setPhone(long id, String phone) {
+		Query query = withFields(byId(id), "id", "name", "phone");
+		Update update = new Update().set("phone", phone);
+		StudentDoc res = mongoTemplate.findAndModify(query, update, StudentDoc.class);
+		log.trace("student {}, set phone {}, found {}", id, phone, res != null);
+		return res;
+	}
+
+	@Override
+	public StudentDoc removeStudent(long id) {
+		//the student is removed first, so a failure between the deletes leaves only buckets of no student,
+		//they are removed by addStudent with the same id
+		StudentDoc res = mongoTemplate.findAndRemove(withFields(byId(id), "id", "name", "phone"), StudentDoc.class);
+		log.trace("student {}, removed {}", id, res != null);
+		marksBuckets.ifPresent(b -> b.removeMarks(id));
+		if(res != null) {
+			marksTimeSeries.ifPresent(ts -> ts.removeMarks(id));
+		}
+		return res;
+	}
+
+	@Override
+	public List<MarkFailure> pushMarks(Map<Long, List<Mark>> studentsMarks) {
+		List<MarkFailure> failures = marksBuckets.isPresent() ? marksBuckets.get().pushMarks(studentsMarks)
+				: pushEmbeddedMarks(studentsMarks);
+		marksTimeSeries.ifPresent(ts -> ts.copyMarks(pushedMarks(studentsMarks, failures)));
+		return failures;
+	}
+
+	private List<MarkFailure> pushEmbeddedMarks(Map<Long, List<Mark>> studentsMarks) {
+		List<MarkFailure> failures = new ArrayList<>();
+		Set<Long> existingIds = findExistingIds(studentsMarks.keySet());
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, StudentDoc.class);
+		List<Long> updatedIds = new ArrayList<>();
+		studentsMarks.forEach((id, marks) -> {
+			if(existingIds.contains(id)) {
+				bulkOperations.updateOne(byId(id), marksUpdate(marks));
+				updatedIds.add(id);
+			} else {
+				addFailures(failures, id, marks, String.format(MarkFailure.STUDENT_NOT_FOUND, id));
+			}
+		});
+		if(!updatedIds.isEmpty()) {
+			Set<Long> errorIds = new HashSet<>();
+			long nMatched = 0;
+			try {
+				nMatched = bulkOperations.execute().getMatchedCount();
+			} catch (BulkOperationException e) {
+				nMatched = e.getResult().getMatchedCount();
+				for(BulkWriteError error: e.getErrors()) {
+					long id = updatedIds.get(error.getIndex());
+					errorIds.add(id);
+					addFailures(failures, id, studentsMarks.get(id), error.getMessage());
+				}
+			}
+			List<Long> pushedIds = updatedIds.stream().filter(id -> !errorIds.contains(id)).toList();
+			if(nMatched < pushedIds.size()) {
+				addRemovedFailures(failures, pushedIds, studentsMarks);
+			}
+		}
+		log.trace("bulk push for {} students, {} failures", studentsMarks.size(), failures.size());
+		return failures;
+	}
+
+	@Override
+	public long rebuildMarksStatistics() {
+		if(marksBuckets.isPresent()) {
+			return marksBuckets.get().rebuildMarksStatistics();
+		}
+		Document stage = Document.parse(String.format(MARKS_STATISTICS_STAGE, StudentDoc.GOOD_SCORE_LEVEL));
+		long res = mongoTemplate.updateMulti(new Query(), AggregationUpdate.from(List.of(context -> stage)),
+				StudentDoc.class).getModifiedCount();
+		log.debug("marks statistics rebuilt for {} students", res);
+		return res;
+	}
+
+	//marks of a student are pushed or failed together
+	private Map<Long, List<Mark>> pushedMarks(Map<Long, List<Mark>> studentsMarks, List<MarkFailure> failures) {
+		Set<Long> failedIds = failures.stream().map(MarkFailure::id).collect(Collectors.toSet());
+		Map<Long, List<Mark>> res = new HashMap<>(studentsMarks);
+		res.keySet().removeAll(failedIds);
+		return res;
+	}
+
+	//the matched count of the bulk is total only, so the students removed after the existence lookup
+	//are found by one more lookup
+	private void addRemovedFailures(List<MarkFailure> failures, List<Long> pushedIds,
+			Map<Long, List<Mark>> studentsMarks) {
+		Set<Long> existingIds = findExistingIds(pushedIds);
+		pushedIds.stream().filter(id -> !existingIds.contains(id)).forEach(id -> addFailures(failures, id,
+				studentsMarks.get(id), String.format(MarkFailure.STUDENT_NOT_FOUND, id)));
+	}
+
+	private Set<Long> findExistingIds(Collection<Long> ids) {
+		Query query = withFields(new Query(Criteria.where("id").in(ids)), "id");
+		return mongoTemplate.find(query, StudentDoc.class).stream().map(StudentDoc::getId)
+				.collect(Collectors.toSet());
+	}
+
+	private void addFailures(List<MarkFailure> failures, long id, List<Mark> marks, String reason) {
+		marks.forEach(mark -> failures.add(new MarkFailure(id, mark, reason)));
+	}
+
+}
@@ -0,0 +1,220 @@
+package telran.students.repo;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.model.RenameCollectionOptions;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.model.ChangeStreamTokenDoc;
+import telran.students.model.StudentDoc;
+import telran.students.model.StudentProjectionDoc;
+import telran.students.model.SubjectMarksCountDoc;
+
+//materialized projections of the students collection: per student totals and average score,
+//numbers of marks by subjects; written by the change stream subscriber only, each batch of events
+//together with its resume token in one transaction
+@Component
+@ConditionalOnProperty(name = "app.students.projections.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsProjections {
+	public static final String SUBSCRIBER = "students-projections";
+	private static final int REBUILD_CHUNK = 1000;
+	final MongoTemplate mongoTemplate;
+
+	//state of one student after a change event, null student document for removed student
+	public record StudentChange(long id, StudentDoc studentDoc) {
+	}
+
+	public void createIndexes() {
+		ensureIndexes(mongoTemplate.indexOps(StudentProjectionDoc.class));
+		//collections can't be created implicitly by the first write in a transaction before Mongo 4.4
+		for(Class<?> entityClass: List.of(SubjectMarksCountDoc.class, ChangeStreamTokenDoc.class)) {
+			if(!mongoTemplate.collectionExists(entityClass)) {
+				mongoTemplate.createCollection(entityClass);
+			}
+		}
+	}
+
+	public List<NameAvgScore> findAvgScoreGreater(int avgScoreThreshold) {
+		Query query = new Query(Criteria.where("avgScore").gt(avgScoreThreshold))
+				.with(Sort.by(Direction.DESC, "avgScore").and(Sort.by("id")));
+		return mongoTemplate.find(query, StudentProjectionDoc.class).stream()
+				.map(StudentProjectionDoc::buildNameAvgScore).toList();
+	}
+
+	public List<Student> findBestStudents(int nStudents) {
+		Query query = new Query(Criteria.where("goodMarkCount").gt(0))
+				.with(Sort.by(Direction.DESC, "goodMarkCount").and(Sort.by("id"))).limit(nStudents);
+		query.fields().include("id", "name", "phone");
+		return mongoTemplate.find(query, StudentProjectionDoc.class).stream().map(StudentProjectionDoc::build).toList();
+	}
+
+	public List<String> findWorstStudents(int nStudents) {
+		Query query = new Query().with(Sort.by("scoreSum", "id")).limit(nStudents);
+		query.fields().include("name");
+		return mongoTemplate.find(query, StudentProjectionDoc.class).stream().map(StudentProjectionDoc::getName)
+				.toList();
+	}
+
+	public Map<String, Long> findSubjectsMarksCounts() {
+		Map<String, Long> res = new TreeMap<>();
+		mongoTemplate.find(new Query(Criteria.where("count").gt(0)), SubjectMarksCountDoc.class)
+				.forEach(s -> res.put(s.getSubject(), s.getCount()));
+		return res;
+	}
+
+	//null if the subscriber hasn't applied any event yet
+	public BsonDocument findResumeToken() {
+		ChangeStreamTokenDoc tokenDoc = mongoTemplate.findById(SUBSCRIBER, ChangeStreamTokenDoc.class);
+		return tokenDoc == null ? null : tokenDoc.getToken().toBsonDocument();
+	}
+
+	//projections of the changed students replace the old ones, numbers of marks by subjects are changed
+	//by differences of the new and old projections; all in one transaction with the resume token
+	public void applyChanges(List<StudentChange> changes, BsonDocument resumeToken) {
+		ClientSessionOptions options = ClientSessionOptions.builder().causallyConsistent(true).build();
+		try(ClientSession session = mongoTemplate.getMongoDatabaseFactory().getSession(options)) {
+			session.withTransaction(() -> {
+				MongoTemplate sessionTemplate = mongoTemplate.withSession(session);
+				Map<String, Integer> subjectDeltas = new HashMap<>();
+				changes.forEach(change -> applyChange(sessionTemplate, change, subjectDeltas));
+				incSubjectCounts(sessionTemplate, subjectDeltas);
+				saveResumeToken(sessionTemplate, resumeToken);
+				return null;
+			});
+		}
+		log.trace("applied {} changes, resume token {}", changes.size(), resumeToken);
+	}
+
+	//saves the token of the stream having no events since the last applied one, so that the resumed stream
+	//doesn't rescan the oplog of the other collections
+	public void saveResumeToken(BsonDocument resumeToken) {
+		saveResumeToken(mongoTemplate, resumeToken);
+	}
+
+	//the next subscription rebuilds the projections
+	public void removeResumeToken() {
+		mongoTemplate.remove(new Query(Criteria.where("subscriber").is(SUBSCRIBER)), ChangeStreamTokenDoc.class);
+	}
+
+	//projections are built from the current students into the staging collections renamed then over the served ones,
+	//so the queries see either the old or the new projections; returns number of the students
+	public long rebuild() {
+		String projectionsStaging = stagingName(StudentProjectionDoc.class);
+		String countsStaging = stagingName(SubjectMarksCountDoc.class);
+		mongoTemplate.dropCollection(projectionsStaging);
+		mongoTemplate.dropCollection(countsStaging);
+		ensureIndexes(mongoTemplate.indexOps(projectionsStaging));
+		mongoTemplate.createCollection(countsStaging);
+		Map<String, Long> subjectCounts = new HashMap<>();
+		List<StudentProjectionDoc> chunk = new ArrayList<>();
+		long res = 0;
+		try(Stream<StudentDoc> students = mongoTemplate.stream(new Query(), StudentDoc.class)) {
+			for(StudentDoc studentDoc: (Iterable<StudentDoc>) students::iterator) {
+				StudentProjectionDoc projection = StudentProjectionDoc.of(studentDoc);
+				projection.getSubjectCounts().forEach((s, n) -> subjectCounts.merge(s, (long) n, Long::sum));
+				chunk.add(projection);
+				if(chunk.size() == REBUILD_CHUNK) {
+					mongoTemplate.insert(chunk, projectionsStaging);
+					res += chunk.size();
+					chunk = new ArrayList<>();
+				}
+			}
+		}
+		if(!chunk.isEmpty()) {
+			mongoTemplate.insert(chunk, projectionsStaging);
+			res += chunk.size();
+		}
+		if(!subjectCounts.isEmpty()) {
+			mongoTemplate.insert(subjectCounts.entrySet().stream()
+					.map(e -> new SubjectMarksCountDoc(e.getKey(), e.getValue())).toList(), countsStaging);
+		}
+		renameOver(projectionsStaging, StudentProjectionDoc.class);
+		renameOver(countsStaging, SubjectMarksCountDoc.class);
+		log.debug("projections rebuilt for {} students", res);
+		return res;
+	}
+
+	private String stagingName(Class<?> entityClass) {
+		return mongoTemplate.getCollectionName(entityClass) + "_staging";
+	}
+
+	//rename with dropTarget replaces the served collection by one operation, indexes are renamed with the collection
+	private void renameOver(String stagingName, Class<?> entityClass) {
+		MongoNamespace target = new MongoNamespace(mongoTemplate.getDb().getName(),
+				mongoTemplate.getCollectionName(entityClass));
+		mongoTemplate.getCollection(stagingName).renameCollection(target, new RenameCollectionOptions().dropTarget(true));
+	}
+
+	private void applyChange(MongoTemplate sessionTemplate, StudentChange change, Map<String, Integer> subjectDeltas) {
+		Query query = new Query(Criteria.where("id").is(change.id()));
+		StudentProjectionDoc old = null;
+		if(change.studentDoc() == null) {
+			old = sessionTemplate.findAndRemove(query, StudentProjectionDoc.class);
+		} else {
+			StudentProjectionDoc projection = StudentProjectionDoc.of(change.studentDoc());
+			projection.getSubjectCounts().forEach((s, n) -> subjectDeltas.merge(s, n, Integer::sum));
+			old = sessionTemplate.findAndReplace(query, projection, FindAndReplaceOptions.options().upsert());
+		}
+		if(old != null) {
+			old.getSubjectCounts().forEach((s, n) -> subjectDeltas.merge(s, -n, Integer::sum));
+		}
+	}
+
+	private void incSubjectCounts(MongoTemplate sessionTemplate, Map<String, Integer> subjectDeltas) {
+		BulkOperations bulkOperations = sessionTemplate.bulkOps(BulkMode.UNORDERED, SubjectMarksCountDoc.class);
+		int nUpdates = 0;
+		for(var entry: subjectDeltas.entrySet()) {
+			if(entry.getValue() != 0) {
+				bulkOperations.upsert(new Query(Criteria.where("subject").is(entry.getKey())),
+						new Update().inc("count", entry.getValue()));
+				nUpdates++;
+			}
+		}
+		if(nUpdates > 0) {
+			bulkOperations.execute();
+		}
+	}
+
+	private void saveResumeToken(MongoTemplate template, BsonDocument resumeToken) {
+		template.upsert(new Query(Criteria.where("subscriber").is(SUBSCRIBER)),
+				new Update().set("token", Document.parse(resumeToken.toJson())), ChangeStreamTokenDoc.class);
+	}
+
+	private void ensureIndexes(IndexOperations indexOperations) {
+		Index[] indexes = {
+			new Index("avgScore", Direction.DESC).on("_id", Direction.ASC),
+			new Index("goodMarkCount", Direction.DESC).on("_id", Direction.ASC),
+			new Index("scoreSum", Direction.ASC).on("_id", Direction.ASC)
+		};
+		for(Index index: indexes) {
+			String name = indexOperations.ensureIndex(index);
+			log.debug("index {} ensured", name);
+		}
+	}
+
+}
@@ -0,0 +1,10 @@
+package telran.students.service;
+
+//temporary overload: the write-behind buffer hasn't got free space within the offer timeout
+public class BufferFullException extends RuntimeException {
+
+	public BufferFullException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,512 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksBuckets;
+import telran.students.repo.StudentRepo;
+
+//columnar snapshot of all students and marks answering the aggregate queries without DB:
+//marks are primitive columns (score, epoch day, dictionary encoded subject) chained per student,
+//students have columns of the marks totals; seeded from DB before serving and updated on each write
+@Component
+@ConditionalOnProperty(name = "app.students.analytics.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class MarksAnalytics extends StudentsView<Long> {
+	private static final int NO_MARK = -1;
+	//epoch day of a mark without date, it is out of any dates range
+	private static final int NO_DAY = Integer.MIN_VALUE;
+	private static final int INITIAL_CAPACITY = 1024;
+	//removed students' marks are dropped when they are more than the live ones
+	private static final int MIN_DEAD_MARKS_COMPACTION = 1024;
+	final StudentRepo studentRepo;
+	final Optional<MarksBuckets> marksBuckets;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Columns columns = new Columns();
+
+	private interface RowOrder {
+		int compare(Columns columns, int row1, int row2);
+	}
+
+	//the same orders as of the queries at DB server, ties are ordered by id
+	private static final RowOrder AVG_SCORE_ORDER = (c, row1, row2) -> {
+		int res = Long.compare((long) c.scoreSum[row2] * c.markCount[row1], (long) c.scoreSum[row1] * c.markCount[row2]);
+		return res != 0 ? res : Long.compare(c.ids[row1], c.ids[row2]);
+	};
+	private static final RowOrder BEST_ORDER = (c, row1, row2) -> {
+		int res = Integer.compare(c.goodMarkCount[row2], c.goodMarkCount[row1]);
+		return res != 0 ? res : Long.compare(c.ids[row1], c.ids[row2]);
+	};
+	private static final RowOrder WORST_ORDER = (c, row1, row2) -> {
+		int res = Integer.compare(c.scoreSum[row1], c.scoreSum[row2]);
+		return res != 0 ? res : Long.compare(c.ids[row1], c.ids[row2]);
+	};
+
+	public List<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold) {
+		lock.readLock().lock();
+		try {
+			Columns c = columns;
+			//avg > threshold compared as sum > threshold * count, without division
+			TopRows top = IntStream.range(0, c.nStudents).parallel()
+					.filter(row -> c.live[row] && c.markCount[row] > 0
+							&& c.scoreSum[row] > (long) avgScoreThreshold * c.markCount[row])
+					.collect(() -> new TopRows(c, Integer.MAX_VALUE, AVG_SCORE_ORDER), TopRows::add, TopRows::addAll);
+			return top.sortedRows().mapToObj(row -> new NameAvgScore(c.names[row],
+					(int) ((double) c.scoreSum[row] / c.markCount[row]))).toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public List<Student> getBestStudents(int nStudents) {
+		lock.readLock().lock();
+		try {
+			Columns c = columns;
+			TopRows top = IntStream.range(0, c.nStudents).parallel()
+					.filter(row -> c.live[row] && c.goodMarkCount[row] > 0)
+					.collect(() -> new TopRows(c, nStudents, BEST_ORDER), TopRows::add, TopRows::addAll);
+			return top.sortedRows().mapToObj(c::student).toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public List<String> getWorstStudents(int nStudents) {
+		lock.readLock().lock();
+		try {
+			Columns c = columns;
+			TopRows top = IntStream.range(0, c.nStudents).parallel().filter(row -> c.live[row])
+					.collect(() -> new TopRows(c, nStudents, WORST_ORDER), TopRows::add, TopRows::addAll);
+			return top.sortedRows().mapToObj(row -> c.names[row]).toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	//empty list for unknown student
+	public List<Mark> getStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
+		int fromDay = (int) from.toEpochDay();
+		int toDay = (int) to.toEpochDay();
+		lock.readLock().lock();
+		try {
+			Columns c = columns;
+			List<Mark> res = new ArrayList<>();
+			Integer row = c.rows.get(id);
+			for(int mark = row == null ? NO_MARK : c.firstMark[row]; mark != NO_MARK; mark = c.nextMark[mark]) {
+				int day = c.days[mark];
+				if(day != NO_DAY && day >= fromDay && day <= toDay) {
+					res.add(c.mark(mark));
+				}
+			}
+			return res;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	//empty list for unknown student
+	public List<Mark> getStudentSubjectMarks(long id, String subject) {
+		lock.readLock().lock();
+		try {
+			Columns c = columns;
+			List<Mark> res = new ArrayList<>();
+			Integer row = c.rows.get(id);
+			Integer subjectId = c.subjectIds.get(subject);
+			if(row != null && subjectId != null) {
+				int requiredSubject = subjectId;
+				for(int mark = c.firstMark[row]; mark != NO_MARK; mark = c.nextMark[mark]) {
+					if(c.subjects[mark] == requiredSubject) {
+						res.add(c.mark(mark));
+					}
+				}
+			}
+			return res;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	//subject null means all subjects
+	public List<PeriodAvgScore> getAvgScoreByMonths(LocalDate from, LocalDate to, String subject) {
+		int fromDay = (int) from.toEpochDay();
+		int toDay = (int) to.toEpochDay();
+		YearMonth firstMonth = YearMonth.from(from);
+		int nMonths = (int) (firstMonth.until(YearMonth.from(to), ChronoUnit.MONTHS) + 1);
+		lock.readLock().lock();
+		try {
+			Columns c = columns;
+			Integer subjectId = subject == null ? null : c.subjectIds.get(subject);
+			if(nMonths <= 0 || subject != null && subjectId == null) {
+				return List.of();
+			}
+			int requiredSubject = subjectId == null ? NO_MARK : subjectId;
+			MonthTotals totals = IntStream.range(0, c.nMarks).parallel()
+					.filter(mark -> c.days[mark] != NO_DAY && c.days[mark] >= fromDay && c.days[mark] <= toDay
+							&& c.live[c.markRows[mark]]
+							&& (requiredSubject == NO_MARK || c.subjects[mark] == requiredSubject))
+					.collect(() -> new MonthTotals(firstMonth, nMonths), (t, mark) -> t.add(c.days[mark], c.scores[mark]),
+							MonthTotals::addAll);
+			return totals.periodAvgScores();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected void loadSnapshot() {
+		Columns newColumns = new Columns();
+		try(Stream<StudentDoc> students = studentRepo.streamStudentDocs()) {
+			students.forEach(s -> addStudent(newColumns, s, List.of()));
+		}
+		marksBuckets.ifPresent(b -> {
+			try(Stream<MarksBucketDoc> buckets = b.streamBuckets()) {
+				buckets.forEach(bucket -> {
+					Integer row = newColumns.rows.get(bucket.getStudentId());
+					if(row != null) {
+						bucket.getMarks().forEach(mark -> newColumns.addMark(row, mark));
+					}
+				});
+			}
+		});
+		lock.writeLock().lock();
+		try {
+			columns = newColumns;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		log.debug("analytics snapshot loaded with {} students, {} marks", newColumns.nStudents, newColumns.nMarks);
+	}
+
+	@Override
+	protected void reloadEntries(Set<Long> ids) {
+		List<StudentDoc> students = new ArrayList<>();
+		studentRepo.findAllById(ids).forEach(students::add);
+		Map<Long, List<Mark>> bucketsMarks = new HashMap<>();
+		marksBuckets.ifPresent(b -> students.forEach(s -> bucketsMarks.put(s.getId(), b.findMarks(s.getId()))));
+		lock.writeLock().lock();
+		try {
+			ids.forEach(columns::removeStudent);
+			students.forEach(s -> addStudent(columns, s, bucketsMarks.getOrDefault(s.getId(), List.of())));
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		log.debug("analytics entries of {} students changed during the load are reloaded", ids.size());
+	}
+
+	@Override
+	public void studentAdded(Student student) {
+		lock.writeLock().lock();
+		try {
+			if(!columns.rows.containsKey(student.id())) {
+				columns.addStudent(student.id(), student.name(), student.phone());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		changed(student.id());
+	}
+
+	@Override
+	public void phoneUpdated(Student student, String oldPhone) {
+		lock.writeLock().lock();
+		try {
+			Integer row = columns.rows.get(student.id());
+			if(row != null) {
+				columns.phones[row] = student.phone();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		changed(student.id());
+	}
+
+	@Override
+	public void marksAdded(long id, List<Mark> marks) {
+		lock.writeLock().lock();
+		try {
+			Integer row = columns.rows.get(id);
+			if(row != null) {
+				marks.forEach(mark -> columns.addMark(row, mark));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		changed(id);
+	}
+
+	@Override
+	public void studentRemoved(Student student) {
+		lock.writeLock().lock();
+		try {
+			columns.removeStudent(student.id());
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		changed(student.id());
+	}
+
+	//embedded marks of the student document followed by the bucketed ones
+	private static void addStudent(Columns columns, StudentDoc studentDoc, List<Mark> bucketsMarks) {
+		int row = columns.addStudent(studentDoc.getId(), studentDoc.getName(), studentDoc.getPhone());
+		if(studentDoc.getMarks() != null) {
+			studentDoc.getMarks().forEach(mark -> columns.addMark(row, mark));
+		}
+		bucketsMarks.forEach(mark -> columns.addMark(row, mark));
+	}
+
+	//under the write lock
+	private void compactIfNeeded() {
+		if(columns.nDeadMarks > MIN_DEAD_MARKS_COMPACTION && columns.nDeadMarks > columns.nMarks / 2) {
+			columns = columns.compacted();
+			log.debug("analytics snapshot compacted to {} marks", columns.nMarks);
+		}
+	}
+
+	//student columns are indexed by row, mark columns by mark position;
+	//marks of a student are linked by nextMark in the order of adding
+	private static class Columns {
+		final Map<Long, Integer> rows = new HashMap<>();
+		long[] ids = new long[INITIAL_CAPACITY];
+		String[] names = new String[INITIAL_CAPACITY];
+		String[] phones = new String[INITIAL_CAPACITY];
+		boolean[] live = new boolean[INITIAL_CAPACITY];
+		int[] firstMark = new int[INITIAL_CAPACITY];
+		int[] lastMark = new int[INITIAL_CAPACITY];
+		int[] markCount = new int[INITIAL_CAPACITY];
+		int[] scoreSum = new int[INITIAL_CAPACITY];
+		int[] goodMarkCount = new int[INITIAL_CAPACITY];
+		int nStudents;
+		final Map<String, Integer> subjectIds = new HashMap<>();
+		final List<String> subjectNames = new ArrayList<>();
+		int[] scores = new int[INITIAL_CAPACITY];
+		int[] days = new int[INITIAL_CAPACITY];
+		int[] subjects = new int[INITIAL_CAPACITY];
+		int[] markRows = new int[INITIAL_CAPACITY];
+		int[] nextMark = new int[INITIAL_CAPACITY];
+		int nMarks;
+		int nDeadMarks;
+
+		int addStudent(long id, String name, String phone) {
+			if(nStudents == ids.length) {
+				int capacity = nStudents * 2;
+				ids = Arrays.copyOf(ids, capacity);
+				names = Arrays.copyOf(names, capacity);
+				phones = Arrays.copyOf(phones, capacity);
+				live = Arrays.copyOf(live, capacity);
+				firstMark = Arrays.copyOf(firstMark, capacity);
+				lastMark = Arrays.copyOf(lastMark, capacity);
+				markCount = Arrays.copyOf(markCount, capacity);
+				scoreSum = Arrays.copyOf(scoreSum, capacity);
+				goodMarkCount = Arrays.copyOf(goodMarkCount, capacity);
+			}
+			int row = nStudents++;
+			ids[row] = id;
+			names[row] = name;
+			phones[row] = phone;
+			live[row] = true;
+			firstMark[row] = NO_MARK;
+			lastMark[row] = NO_MARK;
+			rows.put(id, row);
+			return row;
+		}
+
+		void addMark(int row, Mark mark) {
+			if(nMarks == scores.length) {
+				int capacity = nMarks * 2;
+				scores = Arrays.copyOf(scores, capacity);
+				days = Arrays.copyOf(days, capacity);
+				subjects = Arrays.copyOf(subjects, capacity);
+				markRows = Arrays.copyOf(markRows, capacity);
+				nextMark = Arrays.copyOf(nextMark, capacity);
+			}
+			int index = nMarks++;
+			int score = mark.score();
+			scores[index] = score;
+			days[index] = mark.date() == null ? NO_DAY : (int) mark.date().toEpochDay();
+			subjects[index] = subjectIds.computeIfAbsent(mark.subject(), s -> {
+				subjectNames.add(s);
+				return subjectNames.size() - 1;
+			});
+			markRows[index] = row;
+			nextMark[index] = NO_MARK;
+			if(lastMark[row] == NO_MARK) {
+				firstMark[row] = index;
+			} else {
+				nextMark[lastMark[row]] = index;
+			}
+			lastMark[row] = index;
+			markCount[row]++;
+			scoreSum[row] += score;
+			if(score > StudentDoc.GOOD_SCORE_LEVEL) {
+				goodMarkCount[row]++;
+			}
+		}
+
+		void removeStudent(long id) {
+			Integer row = rows.remove(id);
+			if(row != null) {
+				live[row] = false;
+				nDeadMarks += markCount[row];
+			}
+		}
+
+		//copy without the removed students and their marks
+		Columns compacted() {
+			Columns res = new Columns();
+			for(int row = 0; row < nStudents; row++) {
+				if(live[row]) {
+					int newRow = res.addStudent(ids[row], names[row], phones[row]);
+					for(int mark = firstMark[row]; mark != NO_MARK; mark = nextMark[mark]) {
+						res.addMark(newRow, mark(mark));
+					}
+				}
+			}
+			return res;
+		}
+
+		Student student(int row) {
+			return new Student(ids[row], names[row], phones[row]);
+		}
+
+		Mark mark(int index) {
+			return new Mark(subjectNames.get(subjects[index]), days[index] == NO_DAY ? null
+					: LocalDate.ofEpochDay(days[index]), scores[index]);
+		}
+	}
+
+	//bounded heap keeping the first rows of the order, the last of them at the root;
+	//one heap per fork-join task, the heaps are merged on joining the tasks
+	private static class TopRows {
+		final Columns columns;
+		final int limit;
+		final RowOrder order;
+		int[] heap = new int[16];
+		int size;
+
+		TopRows(Columns columns, int limit, RowOrder order) {
+			this.columns = columns;
+			this.limit = limit;
+			this.order = order;
+		}
+
+		void add(int row) {
+			if(size < limit) {
+				if(size == heap.length) {
+					heap = Arrays.copyOf(heap, size * 2);
+				}
+				heap[size] = row;
+				siftUp(size++);
+			} else if(limit > 0 && order.compare(columns, row, heap[0]) < 0) {
+				heap[0] = row;
+				siftDown(0);
+			}
+		}
+
+		void addAll(TopRows other) {
+			for(int i = 0; i < other.size; i++) {
+				add(other.heap[i]);
+			}
+		}
+
+		IntStream sortedRows() {
+			return IntStream.of(Arrays.copyOf(heap, size)).boxed()
+					.sorted((row1, row2) -> order.compare(columns, row1, row2)).mapToInt(Integer::intValue);
+		}
+
+		private void siftUp(int index) {
+			while(index > 0) {
+				int parent = (index - 1) / 2;
+				if(order.compare(columns, heap[index], heap[parent]) <= 0) {
+					break;
+				}
+				swap(index, parent);
+				index = parent;
+			}
+		}
+
+		private void siftDown(int index) {
+			while(true) {
+				int largest = index;
+				for(int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+					if(order.compare(columns, heap[child], heap[largest]) > 0) {
+						largest = child;
+					}
+				}
+				if(largest == index) {
+					break;
+				}
+				swap(index, largest);
+				index = largest;
+			}
+		}
+
+		private void swap(int i, int j) {
+			int tmp = heap[i];
+			heap[i] = heap[j];
+			heap[j] = tmp;
+		}
+	}
+
+	//sums and counts of scores by months of the requested range
+	private static class MonthTotals {
+		final YearMonth firstMonth;
+		final long[] sums;
+		final int[] counts;
+		//marks of the same day are usually adjacent, so the month of the last day is reused
+		int lastDay = Integer.MIN_VALUE;
+		int lastMonth;
+
+		MonthTotals(YearMonth firstMonth, int nMonths) {
+			this.firstMonth = firstMonth;
+			sums = new long[nMonths];
+			counts = new int[nMonths];
+		}
+
+		void add(int day, int score) {
+			if(day != lastDay) {
+				LocalDate date = LocalDate.ofEpochDay(day);
+				lastMonth = (date.getYear() - firstMonth.getYear()) * 12 + date.getMonthValue()
+						- firstMonth.getMonthValue();
+				lastDay = day;
+			}
+			sums[lastMonth] += score;
+			counts[lastMonth]++;
+		}
+
+		void addAll(MonthTotals other) {
+			for(int i = 0; i < sums.length; i++) {
+				sums[i] += other.sums[i];
+				counts[i] += other.counts[i];
+			}
+		}
+
+		List<PeriodAvgScore> periodAvgScores() {
+			List<PeriodAvgScore> res = new ArrayList<>();
+			for(int i = 0; i < sums.length; i++) {
+				if(counts[i] > 0) {
+					res.add(new PeriodAvgScore(firstMonth.plusMonths(i).toString(),
+							(int) ((double) sums[i] / counts[i]), counts[i]));
+				}
+			}
+			return res;
+		}
+	}
+
+}
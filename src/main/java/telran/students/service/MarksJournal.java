@@ -0,0 +1,228 @@
+package telran.students.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.IdMark;
+import telran.students.dto.Mark;
+
+//local append-only journal of the accepted marks in numbered segment files; a record is
+//{payload length, payload, CRC32 of payload}, so a torn record at the tail left by a crash is detected
+//and the records before it are recovered. Appends are made durable by group commit: a waiting thread
+//forces the file for all the records appended so far, the other threads find their records already forced.
+//The channel, the segment and the written bytes are guarded by the lock, not by a monitor, so the file I/O
+//under it doesn't pin a virtual thread
+@Slf4j
+public class MarksJournal implements Closeable {
+	private static final String SEGMENT_PREFIX = "marks-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final int MAX_PAYLOAD_LENGTH = 1 << 16;
+	final Path dir;
+	private final ReentrantLock forceLock = new ReentrantLock();
+	private final ReentrantLock lock = new ReentrantLock();
+	private FileChannel channel;
+	private long segment;
+	//total bytes appended to all segments and forced to the disk
+	private long written;
+	private long forced;
+
+	//opens the new segment after the existing ones, the existing segments are left for recovery
+	public MarksJournal(Path dir) throws IOException {
+		this.dir = dir;
+		Files.createDirectories(dir);
+		segment = segments().stream().mapToLong(MarksJournal::segmentNumber).max().orElse(0) + 1;
+		channel = openSegment(segment);
+	}
+
+	//marks of all segments except the current one, in order of the appends
+	public List<IdMark> recover() throws IOException {
+		List<IdMark> res = new ArrayList<>();
+		for(Path path: segments()) {
+			if(segmentNumber(path) < currentSegment()) {
+				readSegment(path, res);
+			}
+		}
+		log.debug("{} marks recovered from journal {}", res.size(), dir);
+		return res;
+	}
+
+	//returns the position to wait for by sync
+	public long append(long id, Mark mark) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(record(id, mark));
+		lock.lock();
+		try {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			written += buffer.capacity();
+			return written;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	//returns after the records up to the position are on the disk
+	public void sync(long position) throws IOException {
+		forceLock.lock();
+		try {
+			if(forced < position) {
+				FileChannel currentChannel;
+				long target;
+				lock.lock();
+				try {
+					currentChannel = channel;
+					target = written;
+				} finally {
+					lock.unlock();
+				}
+				currentChannel.force(false);
+				forced = target;
+			}
+		} finally {
+			forceLock.unlock();
+		}
+	}
+
+	//the next appends go to the new segment, returns number of the closed one
+	public long rotate() throws IOException {
+		forceLock.lock();
+		try {
+			lock.lock();
+			try {
+				channel.force(false);
+				channel.close();
+				forced = written;
+				channel = openSegment(++segment);
+				return segment - 1;
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			forceLock.unlock();
+		}
+	}
+
+	public long currentSegment() {
+		lock.lock();
+		try {
+			return segment;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	//removes the segments up to the given one, their marks have been written to DB
+	public void removeSegments(long lastSegment) throws IOException {
+		for(Path path: segments()) {
+			if(segmentNumber(path) <= lastSegment) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			channel.force(false);
+			channel.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private FileChannel openSegment(long number) throws IOException {
+		return FileChannel.open(dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private List<Path> segments() throws IOException {
+		try(Stream<Path> paths = Files.list(dir)) {
+			return paths.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+					&& p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+					.sorted(Comparator.comparingLong(MarksJournal::segmentNumber)).toList();
+		}
+	}
+
+	private static long segmentNumber(Path path) {
+		String name = path.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private static byte[] record(long id, Mark mark) throws IOException {
+		ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(payloadBytes);
+		payload.writeLong(id);
+		payload.writeBoolean(mark.subject() != null);
+		if(mark.subject() != null) {
+			payload.writeUTF(mark.subject());
+		}
+		payload.writeLong(mark.date() == null ? Long.MIN_VALUE : mark.date().toEpochDay());
+		payload.writeInt(mark.score());
+		byte[] bytes = payloadBytes.toByteArray();
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(bytes.length + 2 * Integer.BYTES);
+		DataOutputStream record = new DataOutputStream(recordBytes);
+		record.writeInt(bytes.length);
+		record.write(bytes);
+		record.writeInt((int) crc(bytes));
+		return recordBytes.toByteArray();
+	}
+
+	private static void readSegment(Path path, List<IdMark> res) throws IOException {
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			input.mark(1);
+			while(input.read() >= 0) {
+				input.reset();
+				byte[] bytes = readRecordPayload(input);
+				if(bytes == null) {
+					log.warn("journal segment {} has torn record, the rest of the segment is skipped", path);
+					break;
+				}
+				res.add(readPayload(bytes));
+				input.mark(1);
+			}
+		}
+	}
+
+	//null for the record broken by a crash
+	private static byte[] readRecordPayload(DataInputStream input) throws IOException {
+		byte[] res = null;
+		try {
+			int length = input.readInt();
+			if(length >= 0 && length <= MAX_PAYLOAD_LENGTH) {
+				byte[] bytes = input.readNBytes(length);
+				if(bytes.length == length && input.readInt() == (int) crc(bytes)) {
+					res = bytes;
+				}
+			}
+		} catch (EOFException e) {
+			log.trace("journal record is cut");
+		}
+		return res;
+	}
+
+	private static IdMark readPayload(byte[] bytes) throws IOException {
+		DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+		long id = payload.readLong();
+		String subject = payload.readBoolean() ? payload.readUTF() : null;
+		long epochDay = payload.readLong();
+		int score = payload.readInt();
+		return new IdMark(id, new Mark(subject, epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay),
+				score));
+	}
+
+	private static long crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+}
@@ -0,0 +1,22 @@
+package telran.students.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import telran.students.repo.MarksTimeSeries;
+
+//rebuilds the time series after the marks have been changed bypassing the service;
+//the writes of the service are copied into the time series by StudentUpdateRepoImpl
+@Component
+@ConditionalOnProperty(name = "app.students.marks.time-series.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class MarksTimeSeriesWriter implements StudentsChangeListener {
+	final MarksTimeSeries marksTimeSeries;
+
+	@Override
+	public void reload() {
+		marksTimeSeries.rebuild();
+	}
+
+}
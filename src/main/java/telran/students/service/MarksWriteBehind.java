@@ -0,0 +1,389 @@
+package telran.students.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.IdMark;
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.repo.StudentRepo;
+
+//write-behind mode of adding marks: a mark is accepted after it is forced to the local journal
+//and is kept in the striped in-memory buffer until the group commit by one bulk write of all buffered marks,
+//every flush interval or as soon as the flush size is reached; adding waits while the buffer is full.
+//getMarks of a student loads its marks from DB without any lock and appends the buffered marks of the student
+//taken before the load; the load is repeated if a flush of them has started or landed meanwhile.
+//The flush takes the marks of the closed journal segment from the stripes, writes them without holding any lock
+//and removes them from the buffer after the write is acknowledged; meanwhile the marks stay buffered and getMarks
+//of their students waits for the acknowledgement, so the marks are seen either buffered or written.
+//Marks of the removed students are dropped, the marks failed otherwise stay buffered and are retried
+//by the next flushes. The journal segments are removed after all their marks are written; on start the marks
+//of the left segments are written before any other write.
+//A crash between the write of the marks and the removal of their segments writes them once more on recovery
+@Component
+@ConditionalOnProperty(name = "app.students.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class MarksWriteBehind implements SmartLifecycle {
+	private static final int N_STRIPES = 16;
+	private static final long RETRY_DELAY = 1000;
+	final StudentRepo studentRepo;
+	final List<StudentsChangeListener> listeners;
+	final int flushSize;
+	final Duration flushInterval;
+	final Duration offerTimeout;
+	final Path journalDir;
+	private final Stripe[] stripes = new Stripe[N_STRIPES];
+	private final Semaphore freeSlots;
+	private final AtomicInteger nBuffered = new AtomicInteger();
+	//appends to the journal together with buffering exclude the journal rotation
+	private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+	//start and stop exclude each other without pinning a virtual thread calling them
+	private final Lock lifecycleLock = new ReentrantLock();
+	private MarksJournal journal;
+	private volatile boolean running;
+	private Thread flusher;
+	//completed after the marks of the current flush are removed from the buffer or left there on failure
+	private volatile CompletableFuture<Void> flushAck = CompletableFuture.completedFuture(null);
+
+	private record BufferedMark(Mark mark, long segment) {
+	}
+
+	private static class Stripe {
+		final ReadWriteLock lock = new ReentrantReadWriteLock();
+		final Map<Long, List<BufferedMark>> marks = new LinkedHashMap<>();
+		//students whose first buffered marks are being written by the flush
+		final Set<Long> inFlight = new HashSet<>();
+	}
+
+	public MarksWriteBehind(StudentRepo studentRepo, List<StudentsChangeListener> listeners,
+			@Value("${app.students.write-behind.capacity:10000}") int capacity,
+			@Value("${app.students.write-behind.flush.size:500}") int flushSize,
+			@Value("${app.students.write-behind.flush.interval:5ms}") Duration flushInterval,
+			@Value("${app.students.write-behind.offer-timeout:1s}") Duration offerTimeout,
+			@Value("${app.students.write-behind.journal-dir:journal}") Path journalDir) {
+		this.studentRepo = studentRepo;
+		this.listeners = listeners;
+		this.flushSize = flushSize;
+		this.flushInterval = flushInterval;
+		this.offerTimeout = offerTimeout;
+		this.journalDir = journalDir;
+		freeSlots = new Semaphore(capacity);
+		for(int i = 0; i < N_STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	//returns after the mark is durable in the journal; the student is expected to be checked by the caller
+	public void addMark(long id, Mark mark) {
+		if(!running) {
+			throw new IllegalStateException("write-behind buffer isn't started");
+		}
+		try {
+			if(!freeSlots.tryAcquire(offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+				throw new BufferFullException("write-behind buffer is full");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("adding mark interrupted", e);
+		}
+		long position = 0;
+		journalLock.readLock().lock();
+		try {
+			position = journal.append(id, mark);
+			buffer(id, new BufferedMark(mark, journal.currentSegment()));
+		} catch (IOException e) {
+			freeSlots.release();
+			throw new UncheckedIOException(e);
+		} finally {
+			journalLock.readLock().unlock();
+		}
+		if(nBuffered.incrementAndGet() >= flushSize) {
+			LockSupport.unpark(flusher);
+		}
+		try {
+			journal.sync(position);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//marks loaded from DB followed by the buffered ones
+	public List<Mark> getMarks(long id, LongFunction<List<Mark>> loader) {
+		Stripe stripe = stripe(id);
+		while(true) {
+			List<BufferedMark> buffered = bufferedMarks(stripe, id);
+			if(buffered != null) {
+				List<Mark> res = loader.apply(id);
+				//marks written meanwhile might be both loaded and taken from the buffer
+				if(isBuffered(stripe, id, buffered)) {
+					if(!buffered.isEmpty()) {
+						res = new ArrayList<>(res);
+						for(BufferedMark bufferedMark: buffered) {
+							res.add(bufferedMark.mark());
+						}
+					}
+					return res;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void start() {
+		lifecycleLock.lock();
+		try {
+			journal = new MarksJournal(journalDir);
+			List<IdMark> recovered = journal.recover();
+			if(!recovered.isEmpty()) {
+				Map<Long, List<Mark>> studentsMarks = new LinkedHashMap<>();
+				recovered.forEach(im -> studentsMarks.computeIfAbsent(im.id(), k -> new ArrayList<>()).add(im.mark()));
+				int nRetried = write(studentsMarks).values().stream().mapToInt(List::size).sum();
+				if(nRetried > 0) {
+					throw new IllegalStateException(String.format("%d marks recovered from journal aren't written, "
+							+ "journal %s is kept for the next start", nRetried, journalDir));
+				}
+				log.info("{} marks recovered from journal", recovered.size());
+			}
+			journal.removeSegments(journal.currentSegment() - 1);
+			running = true;
+			flusher = Thread.ofPlatform().name("marks-write-behind").daemon().start(this::run);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public void stop() {
+		lifecycleLock.lock();
+		try {
+			if(!running) {
+				return;
+			}
+			running = false;
+			LockSupport.unpark(flusher);
+			flusher.join();
+			if(!flush()) {
+				log.error("write-behind marks aren't written, they are kept in journal for the next start");
+			}
+			journal.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			log.error("write-behind journal isn't closed: {}", e.toString());
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	//started before and stopped after the web server, so the journal is recovered before any request
+	//and flushed after the last one
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE - 4096;
+	}
+
+	private void run() {
+		while(running) {
+			LockSupport.parkNanos(flushInterval.toNanos());
+			try {
+				if(!flush()) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY));
+				}
+			} catch (RuntimeException | IOException e) {
+				log.error("write-behind flush failed, marks are kept for the next flush: {}", e.toString());
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY));
+			}
+		}
+	}
+
+	//group commit of the marks of the closed journal segment and of the marks retried from the previous ones;
+	//returns false if some marks are left for retry
+	private boolean flush() throws IOException {
+		if(nBuffered.get() == 0) {
+			return true;
+		}
+		long segment = rotateJournal();
+		CompletableFuture<Void> ack = new CompletableFuture<>();
+		flushAck = ack;
+		Map<Long, List<Mark>> studentsMarks = new LinkedHashMap<>();
+		int nMarks = 0;
+		Map<Long, List<Mark>> retried = null;
+		try {
+			for(Stripe stripe: stripes) {
+				takeSegmentMarks(stripe, segment, studentsMarks);
+			}
+			retried = studentsMarks.isEmpty() ? Map.of() : write(studentsMarks);
+		} finally {
+			//marks of the failed write stay buffered for the next flush
+			nMarks = land(studentsMarks, retried);
+			ack.complete(null);
+		}
+		nBuffered.addAndGet(-nMarks);
+		freeSlots.release(nMarks);
+		if(!retried.isEmpty()) {
+			log.warn("marks of {} students are kept for retry with journal segments up to {}", retried.size(),
+					segment);
+			return false;
+		}
+		journal.removeSegments(segment);
+		log.trace("{} marks of journal segment {} written", nMarks, segment);
+		return true;
+	}
+
+	//marks of the segment stay buffered, their students are in flight until the write is landed
+	private void takeSegmentMarks(Stripe stripe, long segment, Map<Long, List<Mark>> studentsMarks) {
+		stripe.lock.writeLock().lock();
+		try {
+			stripe.marks.forEach((id, marks) -> {
+				List<Mark> segmentMarks = marks.stream().takeWhile(m -> m.segment() <= segment)
+						.map(BufferedMark::mark).toList();
+				if(!segmentMarks.isEmpty()) {
+					studentsMarks.put(id, segmentMarks);
+					stripe.inFlight.add(id);
+				}
+			});
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	//the taken marks are the first buffered ones of their students, new marks are appended after them;
+	//the retried marks stay at the head, all the taken ones stay if the write has failed (retried is null);
+	//returns number of the removed marks
+	private int land(Map<Long, List<Mark>> studentsMarks, Map<Long, List<Mark>> retried) {
+		int res = 0;
+		for(var entry: studentsMarks.entrySet()) {
+			long id = entry.getKey();
+			Stripe stripe = stripe(id);
+			stripe.lock.writeLock().lock();
+			try {
+				stripe.inFlight.remove(id);
+				if(retried != null) {
+					List<BufferedMark> buffered = stripe.marks.get(id);
+					List<BufferedMark> taken = buffered.subList(0, entry.getValue().size());
+					List<Mark> kept = new ArrayList<>(retried.getOrDefault(id, List.of()));
+					int nTaken = taken.size();
+					taken.removeIf(bufferedMark -> !kept.remove(bufferedMark.mark()));
+					res += nTaken - taken.size();
+					if(buffered.isEmpty()) {
+						stripe.marks.remove(id);
+					}
+				}
+			} finally {
+				stripe.lock.writeLock().unlock();
+			}
+		}
+		return res;
+	}
+
+	//returns the closed segment, all its marks are buffered
+	private long rotateJournal() throws IOException {
+		journalLock.writeLock().lock();
+		try {
+			return journal.rotate();
+		} finally {
+			journalLock.writeLock().unlock();
+		}
+	}
+
+	//marks of the removed students are dropped, returns the marks failed otherwise, they are to be retried
+	private Map<Long, List<Mark>> write(Map<Long, List<Mark>> studentsMarks) {
+		List<MarkFailure> failures = studentRepo.pushMarks(studentsMarks);
+		Map<Long, List<Mark>> failed = new HashMap<>();
+		Map<Long, List<Mark>> res = new HashMap<>();
+		failures.forEach(f -> {
+			failed.computeIfAbsent(f.id(), k -> new ArrayList<>()).add(f.mark());
+			if(f.isStudentNotFound()) {
+				log.warn("write-behind mark {} of student {} dropped: {}", f.mark(), f.id(), f.reason());
+			} else {
+				res.computeIfAbsent(f.id(), k -> new ArrayList<>()).add(f.mark());
+				log.warn("write-behind mark {} of student {} isn't written, it is retried: {}", f.mark(), f.id(),
+						f.reason());
+			}
+		});
+		studentsMarks.forEach((id, marks) -> {
+			List<Mark> written = marks;
+			if(failed.containsKey(id)) {
+				written = new ArrayList<>(marks);
+				failed.get(id).forEach(written::remove);
+			}
+			if(!written.isEmpty()) {
+				List<Mark> added = written;
+				listeners.forEach(l -> l.marksAdded(id, added));
+			}
+		});
+		return res;
+	}
+
+	private void buffer(long id, BufferedMark bufferedMark) {
+		Stripe stripe = stripe(id);
+		stripe.lock.writeLock().lock();
+		try {
+			stripe.marks.computeIfAbsent(id, k -> new ArrayList<>()).add(bufferedMark);
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	//snapshot of the buffered marks of the student, null after waiting for the flush of them
+	private List<BufferedMark> bufferedMarks(Stripe stripe, long id) {
+		CompletableFuture<Void> ack = null;
+		stripe.lock.readLock().lock();
+		try {
+			if(!stripe.inFlight.contains(id)) {
+				return List.copyOf(stripe.marks.getOrDefault(id, List.of()));
+			}
+			ack = flushAck;
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+		ack.join();
+		return null;
+	}
+
+	//the student isn't in flight and none of the snapshot marks has been removed from the buffer
+	private boolean isBuffered(Stripe stripe, long id, List<BufferedMark> snapshot) {
+		stripe.lock.readLock().lock();
+		try {
+			List<BufferedMark> buffered = stripe.marks.getOrDefault(id, List.of());
+			boolean res = !stripe.inFlight.contains(id) && buffered.size() >= snapshot.size();
+			for(int i = 0; res && i < snapshot.size(); i++) {
+				res = buffered.get(i) == snapshot.get(i);
+			}
+			return res;
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	private Stripe stripe(long id) {
+		return stripes[(int) Math.floorMod(id, (long) N_STRIPES)];
+	}
+
+}
@@ -0,0 +1,29 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import telran.students.dto.*;
+
+//non-blocking counterpart of StudentsService, the same semantics with errors signalled by Mono / Flux
+public interface ReactiveStudentsService {
+Mono<Student> addStudent(Student student);
+Mono<Student> updatePhone(long id, String phone);
+Flux<Mark> addMark(long id, Mark mark);
+Mono<Student> removeStudent(long id);
+Flux<Mark> getMarks(long id);
+Mono<Student> getStudentByPhone(String phoneNumber);
+Flux<Student> getStudentsByPhonePrefix(String phonePrefix);
+Flux<Student> getStudentsAllGoodMarks(int thresholdScore);
+Flux<Student> getStudentsFewMarks(int thresholdMarks);
+Flux<Student> getStudentsAllGoodMarksSubject(String subject, int thresholdScore);
+Flux<Student> getStudentsMarksAmountBetween(int min, int max);
+Flux<Mark> getStudentSubjectMarksOnClientFilter(long id, String subject);
+Flux<Mark> getStudentSubjectMarks(long id, String subject);
+Flux<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold);
+Flux<Mark> getStudentMarksAtDates(long id, LocalDate from, LocalDate to);
+Flux<Student> getBestStudents(int nStudents);
+Flux<String> getWorstStudents(int nStudents);
+Mono<BulkMarksResult> addMarks(Flux<IdMark> idMarks);
+}
@@ -0,0 +1,198 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import telran.exceptions.NotFoundException;
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.ReactiveStudentRepo;
+import telran.students.repo.StudentQueries;
+//works with the marks embedded into student documents only, without the time-series copy of them
+//and without the write-behind buffer of them
+@Service
+@ConditionalOnExpression("'${app.students.marks.storage:embedded}' == 'embedded' and !${app.students.marks.time-series.enabled:false}"
+		+ " and !${app.students.write-behind.enabled:false}")
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveStudentsServiceImpl implements ReactiveStudentsService {
+final ReactiveStudentRepo studentRepo;
+final List<StudentsChangeListener> listeners;
+@Value("${app.students.bulk.chunk.size:1000}")
+int bulkChunkSize;
+
+	@Override
+	public Mono<Student> addStudent(Student student) {
+		return studentRepo.insert(StudentDoc.of(student))
+				.onErrorMap(DuplicateKeyException.class, e -> new IllegalStateException(String
+						.format("Student %d or phone %s already exists", student.id(), student.phone())))
+				.map(s -> student)
+				.doOnNext(s -> {
+					listeners.forEach(l -> l.studentAdded(s));
+					log.debug("saved {}", s);
+				});
+	}
+
+	@Override
+	public Mono<Student> updatePhone(long id, String phone) {
+		return studentRepo.setPhone(id, phone)
+				.onErrorMap(DuplicateKeyException.class,
+						e -> new IllegalStateException(String.format("Phone %s already exists", phone)))
+				.switchIfEmpty(notFound(id))
+				.map(studentDoc -> {
+					Student student = new Student(id, studentDoc.getName(), phone);
+					listeners.forEach(l -> l.phoneUpdated(student, studentDoc.getPhone()));
+					log.debug("student {}, old phone number {}, new phone number {}", id, studentDoc.getPhone(), phone);
+					return student;
+				});
+	}
+
+	@Override
+	public Flux<Mark> addMark(long id, Mark mark) {
+		return studentRepo.pushMark(id, mark).switchIfEmpty(notFound(id))
+				.doOnNext(studentDoc -> {
+					List<Mark> marks = List.of(mark);
+					listeners.forEach(l -> l.marksAdded(id, marks));
+					log.debug("student {}, added mark {}", id, mark);
+				})
+				.flatMapIterable(StudentDoc::getMarks);
+	}
+
+	@Override
+	public Mono<Student> removeStudent(long id) {
+		return studentRepo.removeStudent(id).switchIfEmpty(notFound(id))
+				.map(studentDoc -> {
+					Student student = studentDoc.build();
+					listeners.forEach(l -> l.studentRemoved(student));
+					log.debug("removed student {}", id);
+					return student;
+				});
+	}
+
+	@Override
+	public Flux<Mark> getMarks(long id) {
+		return studentRepo.findStudentMarks(id).switchIfEmpty(notFound(id))
+				.flatMapIterable(StudentDoc::getMarks);
+	}
+
+	@Override
+	public Mono<Student> getStudentByPhone(String phoneNumber) {
+		return studentRepo.findByPhone(phoneNumber)
+				.map(idName -> new Student(idName.getId(), idName.getName(), phoneNumber));
+	}
+
+	@Override
+	public Flux<Student> getStudentsByPhonePrefix(String phonePrefix) {
+		return getStudents(studentRepo.findByPhoneRegex(StudentQueries.phonePrefixRegex(phonePrefix)));
+	}
+
+	@Override
+	public Flux<Student> getStudentsAllGoodMarks(int thresholdScore) {
+		return studentRepo.findStudentsGoodMarks(thresholdScore);
+	}
+
+	@Override
+	public Flux<Student> getStudentsFewMarks(int thresholdMarks) {
+		return studentRepo.findStudentsFewMarks(thresholdMarks);
+	}
+
+	@Override
+	public Flux<Student> getStudentsAllGoodMarksSubject(String subject, int thresholdScore) {
+		return studentRepo.findStudentsAllGoodMarksSubject(subject, thresholdScore);
+	}
+
+	@Override
+	public Flux<Student> getStudentsMarksAmountBetween(int min, int max) {
+		return studentRepo.findStudentsMarksAmountBetween(min, max);
+	}
+
+	@Override
+	public Flux<Mark> getStudentSubjectMarksOnClientFilter(long id, String subject) {
+		return studentRepo.findByIdAndMarksSubject(id, subject)
+				.switchIfEmpty(checkStudent(id).then(Mono.empty()))
+				.flatMapIterable(MarksOnly::getMarks)
+				.filter(m -> m.subject().equals(subject));
+	}
+
+	@Override
+	public Flux<Mark> getStudentSubjectMarks(long id, String subject) {
+		return checkStudent(id).thenMany(studentRepo.aggregateStudentSubjectMarks(id, subject));
+	}
+
+	@Override
+	public Flux<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold) {
+		return studentRepo.aggregateStudentAvgScoreGreater(avgScoreThreshold);
+	}
+
+	@Override
+	public Flux<Mark> getStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
+		return checkStudent(id).thenMany(studentRepo.aggregateStudentMarksAtDates(id, from, to));
+	}
+
+	@Override
+	public Flux<Student> getBestStudents(int nStudents) {
+		return studentRepo.aggregateBestStudents(nStudents);
+	}
+
+	@Override
+	public Flux<String> getWorstStudents(int nStudents) {
+		return studentRepo.aggregateWorstStudents(nStudents);
+	}
+
+	@Override
+	public Mono<BulkMarksResult> addMarks(Flux<IdMark> idMarks) {
+		return idMarks.buffer(bulkChunkSize).concatMap(this::pushMarks)
+				.reduce(new BulkMarksResult(0, new ArrayList<>()), (res, chunkRes) -> {
+					res.failures().addAll(chunkRes.failures());
+					return new BulkMarksResult(res.nMarksAdded() + chunkRes.nMarksAdded(), res.failures());
+				});
+	}
+	
+	private Mono<BulkMarksResult> pushMarks(List<IdMark> chunk) {
+		List<MarkFailure> failures = new ArrayList<>();
+		Map<Long, List<Mark>> studentsMarks = new LinkedHashMap<>();
+		for(IdMark idMark: chunk) {
+			if(idMark.mark() == null) {
+				failures.add(new MarkFailure(idMark.id(), null, "mark is missing"));
+			} else {
+				studentsMarks.computeIfAbsent(idMark.id(), k -> new ArrayList<>()).add(idMark.mark());
+			}
+		}
+		Mono<List<MarkFailure>> pushFailures = studentsMarks.isEmpty() ? Mono.just(List.of())
+				: studentRepo.pushMarks(studentsMarks);
+		return pushFailures.map(chunkFailures -> {
+			Set<Long> failedIds = new HashSet<>();
+			chunkFailures.forEach(f -> failedIds.add(f.id()));
+			studentsMarks.forEach((id, marks) -> {
+				if(!failedIds.contains(id)) {
+					listeners.forEach(l -> l.marksAdded(id, marks));
+				}
+			});
+			failures.addAll(chunkFailures);
+			return new BulkMarksResult(chunk.size() - failures.size(), failures);
+		});
+	}
+	
+	private Flux<Student> getStudents(Flux<IdNamePhone> students) {
+		return students.map(inp -> new Student(inp.getId(), inp.getName(), inp.getPhone()));
+	}
+	
+	private Mono<Void> checkStudent(long id) {
+		return studentRepo.existsById(id).flatMap(exists -> exists ? Mono.<Void>empty()
+				: Mono.error(new NotFoundException(String.format("student with id %d not found", id))));
+	}
+	
+	private static <T> Mono<T> notFound(long id) {
+		return Mono.error(() -> new NotFoundException(String.format("Student %d not found", id)));
+	}
+
+}
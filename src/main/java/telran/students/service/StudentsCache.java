@@ -0,0 +1,120 @@
+package telran.students.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.dto.Student;
+
+//read-through cache of student's marks by id and of student by phone,
+//invalidated by StudentsService writes.
+//Loading runs outside of the cache's locks: a virtual thread blocked on DB inside
+//a computation of ConcurrentHashMap would pin its carrier thread.
+//A value loaded before an invalidation of its key is dropped, so it never overwrites fresh data.
+//Versions of the keys are striped by hash: an invalidation drops only the concurrent loads of the keys
+//of its stripe, the memory of the versions is bounded.
+@Component
+@ConditionalOnProperty(name = "app.students.cache.enabled", havingValue = "true")
+@Slf4j
+public class StudentsCache implements StudentsChangeListener {
+	final Cache<Long, List<Mark>> marksCache;
+	//empty value means no student with the phone
+	final Cache<String, Optional<Student>> phoneCache;
+	private static final int N_VERSIONS = 1024;
+	private final AtomicLongArray versions = new AtomicLongArray(N_VERSIONS);
+	
+	public StudentsCache(@Value("${app.students.cache.maximum-size:10000}") long maximumSize,
+			@Value("${app.students.cache.expire-after-write:10m}") Duration expireAfterWrite,
+			MeterRegistry meterRegistry) {
+		marksCache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite)
+				.recordStats().build();
+		phoneCache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite)
+				.recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, marksCache, "students.marks");
+		CaffeineCacheMetrics.monitor(meterRegistry, phoneCache, "students.phone");
+		log.debug("students cache: maximum size {}, expire after write {}", maximumSize, expireAfterWrite);
+	}
+	
+	public List<Mark> getMarks(long id, LongFunction<List<Mark>> loader) {
+		List<Mark> res = marksCache.getIfPresent(id);
+		if(res == null) {
+			long version = versions.get(versionIndex(id));
+			res = List.copyOf(loader.apply(id));
+			putIfNotInvalidated(marksCache, id, res, version);
+		}
+		return res;
+	}
+	
+	public Student getStudentByPhone(String phone, Function<String, Student> loader) {
+		Optional<Student> res = phoneCache.getIfPresent(phone);
+		if(res == null) {
+			long version = versions.get(versionIndex(phone));
+			res = Optional.ofNullable(loader.apply(phone));
+			putIfNotInvalidated(phoneCache, phone, res, version);
+		}
+		return res.orElse(null);
+	}
+	
+	private <K, V> void putIfNotInvalidated(Cache<K, V> cache, K key, V value, long version) {
+		cache.asMap().compute(key, (k, v) -> versions.get(versionIndex(key)) == version ? value : v);
+	}
+	
+	private <K, V> void invalidate(Cache<K, V> cache, K key) {
+		cache.asMap().compute(key, (k, v) -> {
+			versions.incrementAndGet(versionIndex(key));
+			return null;
+		});
+	}
+	
+	private static int versionIndex(Object key) {
+		int hash = key.hashCode();
+		return (hash ^ hash >>> 16) & (N_VERSIONS - 1);
+	}
+
+	@Override
+	public void studentAdded(Student student) {
+		invalidate(marksCache, student.id());
+		invalidate(phoneCache, student.phone());
+	}
+
+	@Override
+	public void phoneUpdated(Student student, String oldPhone) {
+		invalidate(phoneCache, oldPhone);
+		invalidate(phoneCache, student.phone());
+	}
+
+	@Override
+	public void marksAdded(long id, List<Mark> marks) {
+		invalidate(marksCache, id);
+	}
+
+	@Override
+	public void studentRemoved(Student student) {
+		invalidate(marksCache, student.id());
+		invalidate(phoneCache, student.phone());
+	}
+
+	@Override
+	public void reload() {
+		for(int i = 0; i < N_VERSIONS; i++) {
+			versions.incrementAndGet(i);
+		}
+		marksCache.invalidateAll();
+		phoneCache.invalidateAll();
+	}
+
+}
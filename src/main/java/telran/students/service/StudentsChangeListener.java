@@ -0,0 +1,26 @@
+package telran.students.service;
+
+import java.util.List;
+
+import telran.students.dto.Mark;
+import telran.students.dto.Student;
+
+//in-memory views of the students collection kept in sync by StudentsService writes
+public interface StudentsChangeListener {
+	default void studentAdded(Student student) {
+	}
+	
+	default void phoneUpdated(Student student, String oldPhone) {
+	}
+	
+	default void marksAdded(long id, List<Mark> marks) {
+	}
+	
+	default void studentRemoved(Student student) {
+	}
+	
+	//rebuilds the view after the collection has been changed bypassing StudentsService
+	default void reload() {
+	}
+
+}
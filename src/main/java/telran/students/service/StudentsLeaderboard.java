@@ -0,0 +1,131 @@
+package telran.students.service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+
+//best / worst students ranking held in memory, seeded from DB before serving and updated on each write
+@Component
+@ConditionalOnProperty(name = "app.students.leaderboard.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsLeaderboard extends StudentsView<Long> {
+	//the same orders as of the best / worst students queries at DB server
+	private static final Comparator<StudentScores> BEST_ORDER = Comparator
+			.comparingInt(StudentScores::goodMarkCount).reversed()
+			.thenComparing(s -> s.student().id());
+	private static final Comparator<StudentScores> WORST_ORDER = Comparator
+			.comparingInt(StudentScores::scoreSum)
+			.thenComparing(s -> s.student().id());
+	final StudentRepo studentRepo;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Map<Long, StudentScores> students = new HashMap<>();
+	private NavigableSet<StudentScores> bestStudents = new TreeSet<>(BEST_ORDER);
+	private NavigableSet<StudentScores> worstStudents = new TreeSet<>(WORST_ORDER);
+	
+	public List<Student> getBestStudents(int nStudents) {
+		lock.readLock().lock();
+		try {
+			return bestStudents.stream().takeWhile(s -> s.goodMarkCount() > 0).limit(nStudents)
+					.map(StudentScores::student).toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	public List<String> getWorstStudents(int nStudents) {
+		lock.readLock().lock();
+		try {
+			return worstStudents.stream().limit(nStudents).map(s -> s.student().name()).toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected void loadSnapshot() {
+		List<StudentScores> scores = studentRepo.aggregateStudentsScores();
+		Map<Long, StudentScores> newStudents = new HashMap<>();
+		scores.forEach(s -> newStudents.put(s.student().id(), s));
+		NavigableSet<StudentScores> newBestStudents = new TreeSet<>(BEST_ORDER);
+		newBestStudents.addAll(scores);
+		NavigableSet<StudentScores> newWorstStudents = new TreeSet<>(WORST_ORDER);
+		newWorstStudents.addAll(scores);
+		lock.writeLock().lock();
+		try {
+			students = newStudents;
+			bestStudents = newBestStudents;
+			worstStudents = newWorstStudents;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		log.debug("leaderboard loaded with {} students", scores.size());
+	}
+
+	@Override
+	protected void reloadEntries(Set<Long> ids) {
+		Map<Long, StudentScores> scores = new HashMap<>();
+		studentRepo.aggregateStudentsScores(ids).forEach(s -> scores.put(s.student().id(), s));
+		ids.forEach(id -> replace(id, old -> scores.get(id)));
+		log.debug("leaderboard entries of {} students changed during the load are reloaded", ids.size());
+	}
+
+	@Override
+	public void studentAdded(Student student) {
+		update(student.id(), old -> new StudentScores(student, 0, 0));
+	}
+
+	@Override
+	public void phoneUpdated(Student student, String oldPhone) {
+		update(student.id(), old -> old == null ? null
+				: new StudentScores(student, old.goodMarkCount(), old.scoreSum()));
+	}
+
+	@Override
+	public void marksAdded(long id, List<Mark> marks) {
+		int nGoodMarks = (int) marks.stream().filter(m -> m.score() > StudentDoc.GOOD_SCORE_LEVEL).count();
+		int sumScores = marks.stream().mapToInt(Mark::score).sum();
+		update(id, old -> old == null ? null : new StudentScores(old.student(),
+				old.goodMarkCount() + nGoodMarks, old.scoreSum() + sumScores));
+	}
+
+	@Override
+	public void studentRemoved(Student student) {
+		update(student.id(), old -> null);
+	}
+	
+	private void update(long id, UnaryOperator<StudentScores> updater) {
+		replace(id, updater);
+		changed(id);
+	}
+
+	private void replace(long id, UnaryOperator<StudentScores> updater) {
+		lock.writeLock().lock();
+		try {
+			StudentScores old = students.remove(id);
+			if(old != null) {
+				bestStudents.remove(old);
+				worstStudents.remove(old);
+			}
+			StudentScores scores = updater.apply(old);
+			if(scores != null) {
+				students.put(id, scores);
+				bestStudents.add(scores);
+				worstStudents.add(scores);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+}
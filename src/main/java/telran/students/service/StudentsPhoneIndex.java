@@ -0,0 +1,80 @@
+package telran.students.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Student;
+import telran.students.repo.StudentRepo;
+
+//students sorted by phones in memory, so the phone prefix lookup is the range scan of the skip list
+//from the prefix; loaded from DB before serving and updated on each write
+@Component
+@ConditionalOnProperty(name = "app.students.phone-index.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsPhoneIndex extends StudentsView<String> {
+	final StudentRepo studentRepo;
+	private volatile ConcurrentSkipListMap<String, Student> students = new ConcurrentSkipListMap<>();
+
+	//students having phones with the prefix and at least one more character in order of the phones, up to the limit
+	public List<Student> findByPhonePrefix(String phonePrefix, int limit) {
+		return students.tailMap(phonePrefix, false).values().stream()
+				.takeWhile(s -> s.phone().startsWith(phonePrefix)).limit(limit).toList();
+	}
+
+	@Override
+	protected void loadSnapshot() {
+		ConcurrentSkipListMap<String, Student> newStudents = new ConcurrentSkipListMap<>();
+		try(Stream<Student> stream = studentRepo.streamStudents()) {
+			stream.filter(s -> s.phone() != null).forEach(s -> newStudents.put(s.phone(), s));
+		}
+		students = newStudents;
+		log.debug("phone index loaded with {} students", newStudents.size());
+	}
+
+	@Override
+	protected void reloadEntries(Set<String> phones) {
+		Map<String, Student> existing = new HashMap<>();
+		studentRepo.findByPhoneIn(phones)
+				.forEach(s -> existing.put(s.getPhone(), new Student(s.getId(), s.getName(), s.getPhone())));
+		ConcurrentSkipListMap<String, Student> current = students;
+		phones.forEach(phone -> {
+			Student student = existing.get(phone);
+			if(student == null) {
+				current.remove(phone);
+			} else {
+				current.put(phone, student);
+			}
+		});
+		log.debug("phone index entries of {} phones changed during the load are reloaded", phones.size());
+	}
+
+	@Override
+	public void studentAdded(Student student) {
+		students.put(student.phone(), student);
+		changed(student.phone());
+	}
+
+	@Override
+	public void phoneUpdated(Student student, String oldPhone) {
+		ConcurrentSkipListMap<String, Student> current = students;
+		//the old phone may already be taken by another student whose update has been notified first
+		current.remove(oldPhone, new Student(student.id(), student.name(), oldPhone));
+		current.put(student.phone(), student);
+		changed(oldPhone);
+		changed(student.phone());
+	}
+
+	@Override
+	public void studentRemoved(Student student) {
+		students.remove(student.phone(), student);
+		changed(student.phone());
+	}
+
+}
@@ -0,0 +1,171 @@
+package telran.students.service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentsProjections;
+import telran.students.repo.StudentsProjections.StudentChange;
+
+//keeps the students projections by the change stream of the students collection, so they follow any writes,
+//including the ones bypassing StudentsService; the stream is resumed after the last applied event on restart,
+//the projections are rebuilt only if there is no resume token or the oplog doesn't contain it anymore;
+//requires replica set
+@Component
+@ConditionalOnProperty(name = "app.students.projections.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsProjectionsSubscriber implements SmartLifecycle {
+	//server error codes of the resume token missing in the oplog
+	private static final Set<Integer> HISTORY_LOST_CODES = Set.of(280, 286);
+	private static final long RETRY_DELAY = 1000;
+	final StudentsProjections projections;
+	final MongoTemplate mongoTemplate;
+	@Value("${app.students.projections.batch.size:100}")
+	int batchSize;
+	@Value("${app.students.projections.max-await:500ms}")
+	Duration maxAwait;
+	//start and stop exclude each other without pinning a virtual thread calling them
+	private final Lock lifecycleLock = new ReentrantLock();
+	private volatile boolean running;
+	private Thread thread;
+
+	@Override
+	public void start() {
+		lifecycleLock.lock();
+		try {
+			running = true;
+			thread = Thread.ofPlatform().name("students-projections").daemon().start(this::run);
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public void stop() {
+		lifecycleLock.lock();
+		try {
+			running = false;
+			if(thread != null) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	private void run() {
+		while(running) {
+			try {
+				subscribe();
+			} catch (MongoCommandException e) {
+				if(HISTORY_LOST_CODES.contains(e.getErrorCode())) {
+					log.warn("resume token of projections is lost in the oplog, projections will be rebuilt");
+					projections.removeResumeToken();
+				} else {
+					log.error("projections subscriber failed: {}", e.toString());
+					pause();
+				}
+			} catch (RuntimeException e) {
+				log.error("projections subscriber failed: {}", e.toString());
+				pause();
+			}
+		}
+	}
+
+	private void subscribe() {
+		BsonDocument resumeToken = projections.findResumeToken();
+		ChangeStreamIterable<Document> changeStream = mongoTemplate.getCollection(mongoTemplate
+				.getCollectionName(StudentDoc.class)).watch().fullDocument(FullDocument.UPDATE_LOOKUP)
+				.batchSize(batchSize).maxAwaitTime(maxAwait.toMillis(), TimeUnit.MILLISECONDS);
+		if(resumeToken != null) {
+			changeStream = changeStream.resumeAfter(resumeToken);
+		}
+		try(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream.cursor()) {
+			if(resumeToken == null) {
+				//the stream is opened before the rebuild, so the writes during the rebuild are applied after it
+				long nStudents = projections.rebuild();
+				resumeToken = cursor.getResumeToken();
+				projections.saveResumeToken(resumeToken);
+				log.info("projections of {} students rebuilt", nStudents);
+			} else {
+				log.info("projections subscriber resumed");
+			}
+			while(running && resumeToken != null) {
+				resumeToken = processBatch(cursor, resumeToken);
+			}
+		}
+	}
+
+	//reads available events up to the batch size and applies them in one transaction;
+	//returns the resume token after the events or null if the stream has been invalidated
+	private BsonDocument processBatch(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor,
+			BsonDocument resumeToken) {
+		Map<Long, StudentChange> changes = new LinkedHashMap<>();
+		boolean invalidated = false;
+		ChangeStreamDocument<Document> event = null;
+		while(changes.size() < batchSize && !invalidated && (event = cursor.tryNext()) != null) {
+			switch(event.getOperationType()) {
+				case INSERT, UPDATE, REPLACE, DELETE -> {
+					long id = event.getDocumentKey().getNumber("_id").longValue();
+					Document fullDocument = event.getFullDocument();
+					//no full document of the update event means the student has been removed after the update
+					StudentDoc studentDoc = fullDocument == null ? null
+							: mongoTemplate.getConverter().read(StudentDoc.class, fullDocument);
+					changes.put(id, new StudentChange(id, studentDoc));
+				}
+				case DROP, RENAME, DROP_DATABASE, INVALIDATE -> invalidated = true;
+				default -> log.trace("event {} skipped", event.getOperationType());
+			}
+		}
+		BsonDocument newResumeToken = cursor.getResumeToken();
+		if(!changes.isEmpty()) {
+			projections.applyChanges(new ArrayList<>(changes.values()), newResumeToken);
+		} else if(newResumeToken != null && !newResumeToken.equals(resumeToken)) {
+			projections.saveResumeToken(newResumeToken);
+		}
+		if(invalidated) {
+			//the stream can't be resumed after the collection has been dropped
+			log.warn("students collection has been dropped, projections will be rebuilt");
+			projections.removeResumeToken();
+			newResumeToken = null;
+		}
+		return newResumeToken;
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(RETRY_DELAY);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+
+}
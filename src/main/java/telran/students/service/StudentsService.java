@@ -2,17 +2,21 @@ package telran.students.service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 import telran.students.dto.*;
 
 public interface StudentsService {
 Student addStudent(Student student);
 Student updatePhone(long id, String phone);
+//returns all marks of the student after the adding, the response size grows with the marks of the student
 List<Mark> addMark(long id, Mark mark);
 Student removeStudent(long id);
 List<Mark> getMarks(long id);
 Student getStudentByPhone(String phoneNumber);
 List<Student> getStudentsByPhonePrefix(String phonePrefix);
+//up to the limit students having the phone prefix in order of the phones, for autocomplete
+List<Student> getStudentsByPhonePrefix(String phonePrefix, int limit);
 List<Student> getStudentsAllGoodMarks(int thresholdScore);
 List<Student> getStudentsFewMarks(int thresholdMarks);
 // HW #74
@@ -32,4 +36,28 @@ List<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold);
 List<Mark> getStudentMarksAtDates(long id, LocalDate from, LocalDate to);
 List<Student> getBestStudents(int nStudents);
 List<String> getWorstStudents(int nStudents);
+//average scores of all students by months of the given dates range, subject null means all subjects
+List<PeriodAvgScore> getAvgScoreByMonths(LocalDate from, LocalDate to, String subject);
+//distribution of the scores of the marks (median, 90th percentile, histogram of the given bin width)
+//of the student, subject and dates range, null parameters mean all
+ScoreStatistics getScoreStatistics(Long id, String subject, LocalDate from, LocalDate to, int binWidth);
+//adds marks of many students by batched bulk writes, reports marks that haven't been added
+BulkMarksResult addMarks(Stream<IdMark> idMarks);
+//streaming variants of the list returning methods; each stream holds DB cursor and must be closed
+Stream<Student> streamStudentsByPhonePrefix(String phonePrefix);
+Stream<Student> streamStudentsAllGoodMarks(int thresholdScore);
+Stream<Student> streamStudentsFewMarks(int thresholdMarks);
+Stream<Student> streamStudentsAllGoodMarksSubject(String subject, int thresholdScore);
+Stream<Student> streamStudentsMarksAmountBetween(int min, int max);
+Stream<NameAvgScore> streamStudentAvgScoreGreater(int avgScoreThreshold);
+//keyset paged variants; null page token requests the first page,
+//next page token of the returned page is null for the last one
+KeysetPage<Student> getStudentsByPhonePrefix(String phonePrefix, String pageToken, int pageSize);
+KeysetPage<Student> getStudentsAllGoodMarks(int thresholdScore, String pageToken, int pageSize);
+KeysetPage<Student> getStudentsFewMarks(int thresholdMarks, String pageToken, int pageSize);
+KeysetPage<Student> getStudentsAllGoodMarksSubject(String subject, int thresholdScore, String pageToken, int pageSize);
+KeysetPage<Student> getStudentsMarksAmountBetween(int min, int max, String pageToken, int pageSize);
+KeysetPage<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold, String pageToken, int pageSize);
+KeysetPage<Student> getBestStudents(String pageToken, int pageSize);
+KeysetPage<String> getWorstStudents(String pageToken, int pageSize);
 }
@@ -1,82 +1,147 @@
 package telran.students.service;
 
+import static telran.students.repo.StudentQueries.phonePrefixRegex;
+
 import java.time.LocalDate;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Stream;
 
+import org.bson.BsonDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import com.mongodb.MongoWriteException;
+
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import telran.exceptions.NotFoundException;
-import telran.students.dto.IdName;
-import telran.students.dto.IdNamePhone;
-import telran.students.dto.Mark;
-import telran.students.dto.MarksOnly;
-import telran.students.dto.NameAvgScore;
-import telran.students.dto.Student;
+import telran.students.dto.*;
 import telran.students.model.StudentDoc;
+import telran.students.repo.MarksBuckets;
+import telran.students.repo.MarksTimeSeries;
 import telran.students.repo.StudentRepo;
+import telran.students.repo.StudentsProjections;
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class StudentsServiceImpl implements StudentsService {
 final StudentRepo studentRepo;
+final List<StudentsChangeListener> listeners;
+final Optional<StudentsLeaderboard> leaderboard;
+final Optional<StudentsCache> cache;
+final Optional<MarksBuckets> marksBuckets;
+final Optional<MarksTimeSeries> marksTimeSeries;
+final Optional<MarksAnalytics> analytics;
+//eventually consistent with the students collection
+final Optional<StudentsProjections> projections;
+final Optional<StudentsPhoneIndex> phoneIndex;
+final Optional<MarksWriteBehind> writeBehind;
+@Value("${app.students.bulk.chunk.size:1000}")
+int bulkChunkSize;
+private static final int DUPLICATE_KEY_ERROR = 11000;
+
+	//chunk never reaching non positive size would buffer the whole bulk input
+	@PostConstruct
+	void checkBulkChunkSize() {
+		if(bulkChunkSize < 1) {
+			throw new IllegalStateException(String.format("app.students.bulk.chunk.size %d must be positive",
+					bulkChunkSize));
+		}
+	}
 
 	@Override
-	@Transactional
 	public Student addStudent(Student student) {
 		long id = student.id();
-		if(studentRepo.existsById(id)) {
-			throw new IllegalStateException(String.format("Student %d already exists", id));
+		try {
+			studentRepo.addStudent(StudentDoc.of(student));
+		} catch (DuplicateKeyException e) {
+			throw new IllegalStateException(isIdDuplicate(e, id) ? String.format("Student %d already exists", id)
+					: String.format("Phone %s already exists", student.phone()));
 		}
-		studentRepo.save(StudentDoc.of(student));
+		listeners.forEach(l -> l.studentAdded(student));
 		log.debug("saved {}", student);
 		return student;
 	}
 
+	//the violated unique index is told by the key pattern of the duplicate key error if the server reports it
+	//in the details of the write error, otherwise by the existence of the id
+	private boolean isIdDuplicate(DuplicateKeyException e, long id) {
+		BsonDocument keyPattern = e.getCause() instanceof MongoWriteException cause
+				&& cause.getCode() == DUPLICATE_KEY_ERROR
+				? cause.getError().getDetails().getDocument("keyPattern", null) : null;
+		return keyPattern != null ? keyPattern.containsKey("_id") : studentRepo.existsById(id);
+	}
+
 	@Override
-	@Transactional
 	public Student updatePhone(long id, String phone) {
-		StudentDoc studentDoc = getStudent(id);
+		StudentDoc studentDoc = null;
+		try {
+			studentDoc = studentRepo.setPhone(id, phone);
+		} catch (DuplicateKeyException e) {
+			throw new IllegalStateException(String.format("Phone %s already exists", phone));
+		}
+		if(studentDoc == null) {
+			throw new NotFoundException(String.format("Student %d not found", id));
+		}
 		String oldPhone = studentDoc.getPhone();
-		studentDoc.setPhone(phone);
-		studentRepo.save(studentDoc);
+		Student student = new Student(id, studentDoc.getName(), phone);
+		listeners.forEach(l -> l.phoneUpdated(student, oldPhone));
 		log.debug("student {}, old phone number {}, new phone number {}", id, oldPhone, phone);
-		return studentDoc.build();
-	}
-
-	private StudentDoc getStudent(long id) {
-		return studentRepo.findById(id)
-				.orElseThrow(() -> new NotFoundException(String.format("Student %d not found", id)));
+		return student;
 	}
 
 	@Override
-	@Transactional
 	public List<Mark> addMark(long id, Mark mark) {
-		StudentDoc studentDoc = getStudent(id);
-		studentDoc.addMark(mark);
-		studentRepo.save(studentDoc);
+		if(writeBehind.isPresent()) {
+			//the accepted mark is returned with the other marks of the student, written or buffered;
+			//a mark of the student removed before the flush is dropped by it
+			checkStudent(id);
+			writeBehind.get().addMark(id, mark);
+			log.debug("student {}, mark {} accepted for write-behind", id, mark);
+			return writeBehind.get().getMarks(id, this::loadMarks);
+		}
+		StudentDoc studentDoc = studentRepo.pushMark(id, mark);
+		if(studentDoc == null) {
+			throw new NotFoundException(String.format("Student %d not found", id));
+		}
+		List<Mark> marks = List.of(mark);
+		listeners.forEach(l -> l.marksAdded(id, marks));
 		log.debug("student {}, added mark {}", id, mark);
 		return studentDoc.getMarks();
 	}
 
 	@Override
-	@Transactional
 	public Student removeStudent(long id) {
-		StudentDoc studentDoc = studentRepo.findStudentNoMarks(id);
+		StudentDoc studentDoc = studentRepo.removeStudent(id);
 		if(studentDoc == null) {
 			throw new NotFoundException(String.format("student %d not found",id));
 		}
-		studentRepo.deleteById(id);
-		log.debug("removed student {}, marks {} ", id, studentDoc.getMarks());
-		return studentDoc.build();
+		Student student = studentDoc.build();
+		listeners.forEach(l -> l.studentRemoved(student));
+		log.debug("removed student {}", id);
+		return student;
 	}
 
 	@Override
-	@Transactional(readOnly = true)
 	public List<Mark> getMarks(long id) {
+		return writeBehind.isPresent() ? writeBehind.get().getMarks(id, this::loadMarks) : loadMarks(id);
+	}
+
+	private List<Mark> loadMarks(long id) {
+		return cache.isPresent() ? cache.get().getMarks(id, this::findMarks) : findMarks(id);
+	}
+
+	private List<Mark> findMarks(long id) {
+		if(marksBuckets.isPresent()) {
+			List<Mark> marks = studentRepo.findStudentAllMarks(id);
+			if(marks == null) {
+				throw new NotFoundException(String.format("student %d not found",id));
+			}
+			return marks;
+		}
 		StudentDoc studentDoc = studentRepo.findStudentMarks(id);
 		if(studentDoc == null) {
 			throw new NotFoundException(String.format("student %d not found",id));
@@ -88,6 +153,11 @@ final StudentRepo studentRepo;
 
 	@Override
 	public Student getStudentByPhone(String phoneNumber) {
+		return cache.isPresent() ? cache.get().getStudentByPhone(phoneNumber, this::findStudentByPhone)
+				: findStudentByPhone(phoneNumber);
+	}
+
+	private Student findStudentByPhone(String phoneNumber) {
 		IdName studentDoc = studentRepo.findByPhone(phoneNumber);
 		Student res = null;
 		if (studentDoc != null) {
@@ -98,11 +168,26 @@ final StudentRepo studentRepo;
 
 	@Override
 	public List<Student> getStudentsByPhonePrefix(String phonePrefix) {
-		List <IdNamePhone> students = studentRepo.findByPhoneRegex(phonePrefix + ".+");
+		if(phoneIndex.isPresent()) {
+			return phoneIndex.get().findByPhonePrefix(phonePrefix, Integer.MAX_VALUE);
+		}
+		List <IdNamePhone> students = studentRepo.findByPhoneRegex(phonePrefixRegex(phonePrefix));
 		log.debug("number of the students having phone prefix {} is {}", phonePrefix, students.size());
 		return getStudents(students);
 	}
 
+	@Override
+	public List<Student> getStudentsByPhonePrefix(String phonePrefix, int limit) {
+		if(limit < 1) {
+			throw new IllegalArgumentException(String.format("limit %d must be positive", limit));
+		}
+		List<Student> res = phoneIndex.map(i -> i.findByPhonePrefix(phonePrefix, limit))
+				.orElseGet(() -> getStudents(studentRepo.findByPhoneRegexOrderByPhone(phonePrefixRegex(phonePrefix),
+						Limit.of(limit))));
+		log.debug("{} students having phone prefix {}, limit {}", res.size(), phonePrefix, limit);
+		return res;
+	}
+
 	private List<Student> getStudents(List<IdNamePhone> students) {
 		return students.stream().map(inp -> new Student(inp.getId(), inp.getName(),
 				inp.getPhone())).toList();
@@ -110,22 +195,19 @@ final StudentRepo studentRepo;
 
 	@Override
 	public List<Student> getStudentsAllGoodMarks(int thresholdScore) {
-		List<IdNamePhone> students = studentRepo.findByGoodMarks(thresholdScore);
-		return getStudents(students);
+		return studentRepo.findStudentsGoodMarks(thresholdScore);
 	}
 
 	@Override
 	public List<Student> getStudentsFewMarks(int thresholdMarks) {
-		List<IdNamePhone> students = studentRepo.findByFewMarks(thresholdMarks);
-		return getStudents(students);
+		return studentRepo.findStudentsFewMarks(thresholdMarks);
 	}
 
 	@Override
 	public List<Student> getStudentsAllGoodMarksSubject(String subject, int thresholdScore) {
 		//getting students who have at least one score of a given subject and all scores of that subject
 		//greater than or equal a given threshold
-		List<IdNamePhone> students = studentRepo.findByAllGoodMarksSubject(subject, thresholdScore);
-		return getStudents(students);
+		return studentRepo.findStudentsAllGoodMarksSubject(subject, thresholdScore);
 	}
 
 	@Override
@@ -140,31 +222,38 @@ final StudentRepo studentRepo;
 
 	@Override
 	public List<Mark> getStudentSubjectMarksOnClientFilter(long id, String subject) {
-		if(!studentRepo.existsById(id)) {
+		//existence check and filtering of the marks are done by one query at DB server
+		List<Mark> marks = studentRepo.findStudentSubjectMarks(id, subject);
+		if(marks == null) {
 			throw new NotFoundException(String.format("student %d not exists", id));			
 		}
-		List<Mark> marks = Collections.emptyList();		
-		MarksOnly marksOnly = studentRepo.findByIdAndMarksSubject(id, subject);
-		if(marksOnly != null) {
-			marks = marksOnly.getMarks();
-			log.debug("marks are: {}", marks);			
-		} else {
-			log.debug("marks by subject {}  arent't exist", subject);
-		}
-		return marks.stream().filter(m -> m.subject().equals(subject)).toList();
+		log.debug("marks are: {}", marks);
+		return marks;
 	}
 		
 	@Override
 	public List<Mark> getStudentSubjectMarks(long id, String subject) {
-		checkStudent(id);
-		List<Mark> result = studentRepo.aggregateStudentSubjectMarks(id, subject);
+		List<Mark> result = null;
+		if(cache.isPresent()) {
+			result = getMarks(id).stream().filter(m -> m.subject().equals(subject)).toList();
+		} else if(analytics.isPresent()) {
+			checkStudent(id);
+			result = analytics.get().getStudentSubjectMarks(id, subject);
+		} else {
+			result = studentRepo.findStudentSubjectMarks(id, subject);
+			if(result == null) {
+				throw new NotFoundException(String.format("student with id %d not found", id));
+			}
+		}
 		log.debug("result: {}", result);
 		return result;		
 	}
 
 	@Override
 	public List<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold) {		
-		List<NameAvgScore> res = studentRepo.aggregateStudentAvgScoreGreater(avgScoreThreshold);
+		List<NameAvgScore> res = analytics.map(a -> a.getStudentAvgScoreGreater(avgScoreThreshold))
+				.or(() -> projections.map(p -> p.findAvgScoreGreater(avgScoreThreshold)))
+				.orElseGet(() -> studentRepo.aggregateStudentAvgScoreGreater(avgScoreThreshold));
 		log.debug("result: {}", res);
 		return res;
 	}
@@ -177,19 +266,59 @@ final StudentRepo studentRepo;
 
 	@Override
 	public List<Mark> getStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
-		checkStudent(id);
 		//returns list of Mark objects of the required student at the given dates
 		//Filtering and projection should be done at DB server
-		List<Mark> result = studentRepo.aggregateStudentMarksAtDates(id, from, to);
+		List<Mark> result = null;
+		Optional<MarksTimeSeries> timeSeries = consistentTimeSeries();
+		if(analytics.isPresent() || timeSeries.isPresent()) {
+			//marks aren't kept with the students, so existence is checked separately
+			checkStudent(id);
+			result = analytics.map(a -> a.getStudentMarksAtDates(id, from, to))
+					.orElseGet(() -> timeSeries.get().findMarksAtDates(id, from, to));
+		} else {
+			result = studentRepo.findStudentMarksAtDates(id, from, to);
+			if(result == null) {
+				throw new NotFoundException(String.format("student with id %d not found", id));
+			}
+		}
 		log.debug("list of marks: {}", result);
 		return result;
 	}
 
+	@Override
+	public List<PeriodAvgScore> getAvgScoreByMonths(LocalDate from, LocalDate to, String subject) {
+		return analytics.map(a -> a.getAvgScoreByMonths(from, to, subject))
+				.or(() -> consistentTimeSeries().map(ts -> ts.aggregateMonthAvgScore(from, to, subject)))
+				.orElseGet(() -> studentRepo.aggregateMonthAvgScore(from, to, subject));
+	}
+
+	//the main storage serves the reads while the time series is inconsistent
+	private Optional<MarksTimeSeries> consistentTimeSeries() {
+		return marksTimeSeries.filter(MarksTimeSeries::isConsistent);
+	}
+
+	@Override
+	public ScoreStatistics getScoreStatistics(Long id, String subject, LocalDate from, LocalDate to, int binWidth) {
+		if(binWidth < 1) {
+			throw new IllegalArgumentException(String.format("bin width %d must be positive", binWidth));
+		}
+		ScoreStatistics res = studentRepo.aggregateScoreStatistics(id, subject, from, to, binWidth);
+		if(id != null && res.nMarks() == 0) {
+			//no marks of not existing student are told from no marks of the filters by the separate query
+			checkStudent(id);
+		}
+		log.debug("scores statistics: {}", res);
+		return res;
+	}
+
 	@Override
 	public List<Student> getBestStudents(int nStudents) {
 		//returns list of a given number of the best students
 		//Best students are the ones who have most scores greater than 80
-		List<Student> result = studentRepo.aggregateBestStudents(nStudents);		
+		List<Student> result = leaderboard.map(l -> l.getBestStudents(nStudents))
+				.or(() -> analytics.map(a -> a.getBestStudents(nStudents)))
+				.or(() -> projections.map(p -> p.findBestStudents(nStudents)))
+				.orElseGet(() -> studentRepo.aggregateBestStudents(nStudents));
 		log.debug("list of students: {}", result);
 		return result;
 	}
@@ -199,10 +328,124 @@ final StudentRepo studentRepo;
 		//returns list of a given number of the worst students
 		//Worst students are the ones who have least sum's of all scores
 		//Students who have no scores at all should be considered as worst
-		//instead of GroupOperation to apply AggregationExpression (with AccumulatorOperators.Sum) and ProjectionOperation for adding new fields with computed values 
-		List<String> result = studentRepo.aggregateWorstStudents(nStudents);
+		List<String> result = leaderboard.map(l -> l.getWorstStudents(nStudents))
+				.or(() -> analytics.map(a -> a.getWorstStudents(nStudents)))
+				.or(() -> projections.map(p -> p.findWorstStudents(nStudents)))
+				.orElseGet(() -> studentRepo.aggregateWorstStudents(nStudents));
 		log.debug("list of students: {}", result);
 		return result;
 	}
 
+	@Override
+	public BulkMarksResult addMarks(Stream<IdMark> idMarks) {
+		List<MarkFailure> failures = new ArrayList<>();
+		Map<Long, List<Mark>> chunk = new LinkedHashMap<>();
+		int nMarks = 0;
+		int nChunkMarks = 0;
+		Iterator<IdMark> it = idMarks.iterator();
+		while(it.hasNext()) {
+			IdMark idMark = it.next();
+			nMarks++;
+			if(idMark.mark() == null) {
+				failures.add(new MarkFailure(idMark.id(), null, "mark is missing"));
+				continue;
+			}
+			chunk.computeIfAbsent(idMark.id(), k -> new ArrayList<>()).add(idMark.mark());
+			if(++nChunkMarks == bulkChunkSize) {
+				failures.addAll(pushMarks(chunk));
+				chunk = new LinkedHashMap<>();
+				nChunkMarks = 0;
+			}
+		}
+		if(nChunkMarks > 0) {
+			failures.addAll(pushMarks(chunk));
+		}
+		log.debug("bulk marks: received {}, failed {}", nMarks, failures.size());
+		return new BulkMarksResult(nMarks - failures.size(), failures);
+	}
+
+	@Override
+	public Stream<Student> streamStudentsByPhonePrefix(String phonePrefix) {
+		return studentRepo.streamStudentsByPhoneRegex(phonePrefixRegex(phonePrefix));
+	}
+
+	@Override
+	public Stream<Student> streamStudentsAllGoodMarks(int thresholdScore) {
+		return studentRepo.streamStudentsGoodMarks(thresholdScore);
+	}
+
+	@Override
+	public Stream<Student> streamStudentsFewMarks(int thresholdMarks) {
+		return studentRepo.streamStudentsFewMarks(thresholdMarks);
+	}
+
+	@Override
+	public Stream<Student> streamStudentsAllGoodMarksSubject(String subject, int thresholdScore) {
+		return studentRepo.streamStudentsAllGoodMarksSubject(subject, thresholdScore);
+	}
+
+	@Override
+	public Stream<Student> streamStudentsMarksAmountBetween(int min, int max) {
+		return studentRepo.streamStudentsMarksAmountBetween(min, max);
+	}
+
+	@Override
+	public Stream<NameAvgScore> streamStudentAvgScoreGreater(int avgScoreThreshold) {
+		return studentRepo.streamStudentAvgScoreGreater(avgScoreThreshold);
+	}
+
+	@Override
+	public KeysetPage<Student> getStudentsByPhonePrefix(String phonePrefix, String pageToken, int pageSize) {
+		return studentRepo.pageStudentsByPhoneRegex(phonePrefixRegex(phonePrefix), pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> getStudentsAllGoodMarks(int thresholdScore, String pageToken, int pageSize) {
+		return studentRepo.pageStudentsGoodMarks(thresholdScore, pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> getStudentsFewMarks(int thresholdMarks, String pageToken, int pageSize) {
+		return studentRepo.pageStudentsFewMarks(thresholdMarks, pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> getStudentsAllGoodMarksSubject(String subject, int thresholdScore,
+			String pageToken, int pageSize) {
+		return studentRepo.pageStudentsAllGoodMarksSubject(subject, thresholdScore, pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> getStudentsMarksAmountBetween(int min, int max, String pageToken, int pageSize) {
+		return studentRepo.pageStudentsMarksAmountBetween(min, max, pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<NameAvgScore> getStudentAvgScoreGreater(int avgScoreThreshold, String pageToken,
+			int pageSize) {
+		return studentRepo.pageStudentAvgScoreGreater(avgScoreThreshold, pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<Student> getBestStudents(String pageToken, int pageSize) {
+		return studentRepo.pageBestStudents(pageToken, pageSize);
+	}
+
+	@Override
+	public KeysetPage<String> getWorstStudents(String pageToken, int pageSize) {
+		return studentRepo.pageWorstStudents(pageToken, pageSize);
+	}
+
+	private List<MarkFailure> pushMarks(Map<Long, List<Mark>> studentsMarks) {
+		List<MarkFailure> failures = studentRepo.pushMarks(studentsMarks);
+		Set<Long> failedIds = new HashSet<>();
+		failures.forEach(f -> failedIds.add(f.id()));
+		studentsMarks.forEach((id, marks) -> {
+			if(!failedIds.contains(id)) {
+				listeners.forEach(l -> l.marksAdded(id, marks));
+			}
+		});
+		return failures;
+	}
+
 }
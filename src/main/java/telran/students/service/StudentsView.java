@@ -0,0 +1,85 @@
+package telran.students.service;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.context.SmartLifecycle;
+
+//in-memory view of the students collection seeded from DB before the web server starts and updated on each write.
+//A reload doesn't lose the writes made while the snapshot is read: the keys changed since the reload start
+//are collected and, after the swap, the entries of them are reloaded from DB until no more keys are changed.
+//Reloading an entry replaces it, so a write the snapshot already contains isn't applied twice
+public abstract class StudentsView<K> implements StudentsChangeListener, SmartLifecycle {
+	private final Lock reloadLock = new ReentrantLock();
+	//null when there is no reload
+	private Set<K> changedKeys;
+	private volatile boolean running;
+
+	//reads the snapshot from DB and replaces the view by it
+	protected abstract void loadSnapshot();
+
+	//replaces the entries of the keys by the current state at DB, removes the ones missing at DB
+	protected abstract void reloadEntries(Set<K> keys);
+
+	//called by the view after a change has been applied
+	protected synchronized void changed(K key) {
+		if(changedKeys != null) {
+			changedKeys.add(key);
+		}
+	}
+
+	@Override
+	public final void reload() {
+		reloadLock.lock();
+		try {
+			setChangedKeys(new HashSet<>());
+			try {
+				loadSnapshot();
+				for(Set<K> keys = takeChangedKeys(); !keys.isEmpty(); keys = takeChangedKeys()) {
+					reloadEntries(keys);
+				}
+			} finally {
+				setChangedKeys(null);
+			}
+		} finally {
+			reloadLock.unlock();
+		}
+	}
+
+	@Override
+	public void start() {
+		reload();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	//seeded after the write-behind journal recovery and before the web server starts;
+	//the web server lifecycle has phase DEFAULT_PHASE - 2048 and the order of equal phases isn't defined,
+	//so the view is one phase step earlier, otherwise requests might read a view not seeded yet
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE - 3072;
+	}
+
+	private synchronized void setChangedKeys(Set<K> keys) {
+		changedKeys = keys;
+	}
+
+	private synchronized Set<K> takeChangedKeys() {
+		Set<K> res = changedKeys;
+		changedKeys = new HashSet<>();
+		return res;
+	}
+
+}
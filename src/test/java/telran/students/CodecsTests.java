@@ -0,0 +1,96 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import telran.students.dto.Mark;
+import telran.students.dto.NameAvgScore;
+import telran.students.dto.Student;
+import telran.students.repo.*;
+
+//codecs decode the same values as the Document based mapping of MarkConverters
+class CodecsTests {
+	DocumentCodec documentCodec = new DocumentCodec();
+
+	@Test
+	void markCodecTest() {
+		LocalDate[] dates = {
+			LocalDate.of(2023, 10, 20), LocalDate.of(1969, 12, 31), LocalDate.of(1900, 3, 1), LocalDate.of(2024, 3, 31)
+		};
+		for(LocalDate date: dates) {
+			Document document = new Document("subject", "Java").append("score", 80).append("extra", "x")
+					.append("date", Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant()));
+			assertEquals(MarkConverters.toMark(document, "Java", ZoneOffset.UTC), decode(document, new MarkCodec()));
+			assertEquals(date, decode(document, new MarkCodec()).date());
+			document.remove("subject");
+			assertEquals(MarkConverters.toMark(document, "C++", ZoneOffset.UTC), decode(document, new MarkCodec("C++")));
+			//epoch day has precedence over the date
+			document.append("day", (int) date.toEpochDay() + 1);
+			assertEquals(date.plusDays(1), decode(document, new MarkCodec()).date());
+			assertEquals(MarkConverters.toMark(document, null, ZoneOffset.UTC), decode(document, new MarkCodec()));
+		}
+		Mark mark = new Mark("Java", LocalDate.of(2023, 12, 1), 90);
+		assertEquals(mark, decode(encode(mark, new MarkCodec()), new MarkCodec()));
+		assertEquals(MarkConverters.toDocument(mark), encode(mark, new MarkCodec()));
+		Mark noDateMark = new Mark(null, null, 70);
+		assertEquals(noDateMark, decode(encode(noDateMark, new MarkCodec()), new MarkCodec()));
+	}
+
+	@Test
+	void legacyMarkTest() {
+		ZoneId legacyZone = ZoneId.of("Pacific/Kiritimati");
+		LocalDate date = LocalDate.of(2023, 10, 20);
+		Document document = new Document("subject", "Java").append("score", 80)
+				.append("date", Date.from(date.atStartOfDay(legacyZone).toInstant()));
+		Mark expected = new Mark("Java", date, 80);
+		assertEquals(expected, decode(document, new MarkCodec(null, legacyZone)));
+		assertEquals(expected, MarkConverters.toMark(document, "Java", legacyZone));
+		assertNotEquals(expected, decode(document, new MarkCodec()));
+		//epoch day has precedence over the date
+		document.append("day", (int) date.toEpochDay());
+		assertEquals(expected, decode(document, new MarkCodec()));
+	}
+
+	@Test
+	void nameAvgScoreCodecTest() {
+		Document document = new Document("name", "name1").append("avgMark", 85.5);
+		NameAvgScore expected = StudentQueries.toNameAvgScore(document);
+		assertEquals(expected, decode(document, new NameAvgScoreCodec()));
+	}
+
+	@Test
+	void studentCodecTest() {
+		Document document = new Document("_id", 123L).append("name", "name1").append("phone", "050-1234567");
+		assertEquals(new Student(123L, "name1", "050-1234567"), decode(document, new StudentCodec()));
+	}
+
+	private <T> T decode(Document document, Codec<T> codec) {
+		BasicOutputBuffer buffer = new BasicOutputBuffer();
+		documentCodec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+		return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(buffer.toByteArray())),
+				DecoderContext.builder().build());
+	}
+
+	private <T> Document encode(T value, Codec<T> codec) {
+		BasicOutputBuffer buffer = new BasicOutputBuffer();
+		codec.encode(new BsonBinaryWriter(buffer), value, EncoderContext.builder().build());
+		return documentCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(buffer.toByteArray())),
+				DecoderContext.builder().build());
+	}
+
+}
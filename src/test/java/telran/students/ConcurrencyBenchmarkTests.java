@@ -0,0 +1,97 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.dto.Student;
+import telran.students.service.StudentsService;
+
+//throughput and p99 latency of concurrent addMark / getMarks calls on platform vs virtual threads;
+//the virtual threads run fails if any of them blocks pinned to its carrier thread;
+//run by: mvn test -Dgroups=benchmark -DexcludedGroups=none
+@SpringBootTest(properties = {"app.students.cache.enabled=false", "logging.level.telran=info"})
+@Tag("benchmark")
+@Slf4j
+class ConcurrencyBenchmarkTests {
+	private static final int N_STUDENTS = 100;
+	private static final int N_CALLS = 20_000;
+	private static final int N_PLATFORM_THREADS = 200;
+	private static final long FIRST_ID = 1_000_000;
+	private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+		for(long id = FIRST_ID; id < FIRST_ID + N_STUDENTS; id++) {
+			studentsService.addStudent(new Student(id, "name" + id, "phone" + id));
+		}
+	}
+	
+	@Test
+	void platformThreadsTest() throws Exception {
+		runCalls("platform threads", Executors.newFixedThreadPool(N_PLATFORM_THREADS));
+	}
+	@Test
+	void virtualThreadsTest() throws Exception {
+		//the event is recorded for a virtual thread parked or blocked while pinned, as -Djdk.tracePinnedThreads prints
+		List<RecordedEvent> pinnedEvents = new CopyOnWriteArrayList<>();
+		try(RecordingStream recording = new RecordingStream()) {
+			recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+			recording.onEvent(PINNED_EVENT, pinnedEvents::add);
+			recording.startAsync();
+			runCalls("virtual threads", Executors.newVirtualThreadPerTaskExecutor());
+			recording.stop();
+		}
+		assertTrue(pinnedEvents.isEmpty(), () -> "pinned virtual threads: " + pinnedEvents);
+	}
+	
+	private void runCalls(String name, ExecutorService executor) throws Exception {
+		long[] latencies = new long[N_CALLS];
+		Mark mark = new Mark("subject", LocalDate.now(), 90);
+		long start = System.nanoTime();
+		try(executor) {
+			for(int i = 0; i < N_CALLS; i++) {
+				int index = i;
+				executor.execute(() -> {
+					long id = FIRST_ID + ThreadLocalRandom.current().nextInt(N_STUDENTS);
+					long callStart = System.nanoTime();
+					if(index % 2 == 0) {
+						studentsService.addMark(id, mark);
+					} else {
+						studentsService.getMarks(id);
+					}
+					latencies[index] = System.nanoTime() - callStart;
+				});
+			}
+		}
+		long totalNanos = System.nanoTime() - start;
+		Arrays.sort(latencies);
+		assertTrue(latencies[0] > 0);
+		log.info("{}: {} calls, throughput {} calls/sec, p50 {} ms, p99 {} ms", name, N_CALLS,
+				N_CALLS * 1_000_000_000l / totalNanos, latencies[N_CALLS / 2] / 1_000_000.0,
+				latencies[N_CALLS * 99 / 100] / 1_000_000.0);
+	}
+
+}
@@ -1,13 +1,22 @@
 package telran.students;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
+import telran.students.repo.MarksBuckets;
 import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsChangeListener;
 import telran.students.dto.*;
 import telran.students.model.*;
 
@@ -15,6 +24,9 @@ import telran.students.model.*;
 @RequiredArgsConstructor
 public class DbTestCreation {
 	final StudentRepo studentRepo;
+	final List<StudentsChangeListener> listeners;
+	final Optional<MarksBuckets> marksBuckets;
+	final MongoTemplate mongoTemplate;
 	final static long ID_1 = 1l;
 	final static String NAME_1 = "name1";
 	final static String PHONE_1 = "051-1234567";
@@ -90,6 +102,11 @@ public class DbTestCreation {
 		studentRepo.deleteAll();
 		List<StudentDoc> studentDocs = IntStream.range(0, students.length).mapToObj(this::indexToStudent).toList();
 		studentRepo.saveAll(studentDocs);
+		if(marksBuckets.isPresent()) {
+			mongoTemplate.remove(new Query(), MarksBucketDoc.class);
+			marksBuckets.get().moveEmbeddedMarks();
+		}
+		listeners.forEach(StudentsChangeListener::reload);
 	}
 	public Mark[] getStudentMarks(long id) {
 		return marks[(int) (id - 1)];
@@ -104,5 +121,13 @@ public class DbTestCreation {
 	public Student getStudent(long id) {
 		return students[(int) (id -1)];
 	}
+	//the answer of an in-memory view or of a parallel variant of a query for each argument
+	//is compared with the answer of the query at DB server
+	public static <A> void assertSameAnswers(Collection<A> arguments, Function<A, ?> dbAnswer,
+			Function<A, ?> answer) {
+		for(A argument: arguments) {
+			assertEquals(dbAnswer.apply(argument), answer.apply(argument), () -> "argument " + argument);
+		}
+	}
 	
 }
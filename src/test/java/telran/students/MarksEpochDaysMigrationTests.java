@@ -0,0 +1,110 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.ZoneId;
+import java.util.*;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import telran.students.dto.Mark;
+import telran.students.migration.MarksEpochDaysMigration;
+import telran.students.model.StudentDoc;
+import telran.students.service.StudentsChangeListener;
+import telran.students.service.StudentsService;
+
+//legacy marks are written with dates at start of the day in the zone far from UTC, so they are read as the previous day
+//until the migration; the repeated migration reads nothing, the marks changed after read are migrated again
+@SpringBootTest
+class MarksEpochDaysMigrationTests {
+	static final String LEGACY_ZONE = "Pacific/Kiritimati";
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	DbTestCreation dbCreation;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	List<StudentsChangeListener> listeners;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	void epochDaysMigrationTest() {
+		Mark[] expected = dbCreation.getStudentMarks(DbTestCreation.ID_1);
+		setLegacyMarks(DbTestCreation.ID_1, expected);
+		assertNotEquals(Arrays.asList(expected), studentsService.getMarks(DbTestCreation.ID_1));
+		MarksEpochDaysMigration migration = new MarksEpochDaysMigration(mongoTemplate, listeners, 2, LEGACY_ZONE);
+		assertEquals(1, migration.migrate());
+		assertIterableEquals(Arrays.asList(expected), studentsService.getMarks(DbTestCreation.ID_1));
+		assertIterableEquals(List.of(expected[0]), studentsService.getStudentMarksAtDates(DbTestCreation.ID_1,
+				DbTestCreation.DATE_1, DbTestCreation.DATE_1));
+		assertIterableEquals(Arrays.asList(dbCreation.getStudentMarks(DbTestCreation.ID_3)),
+				studentsService.getMarks(DbTestCreation.ID_3));
+	}
+
+	@Test
+	void repeatedMigrationTest() {
+		Mark noDate = new Mark(DbTestCreation.SUBJECT_1, null, 90);
+		setLegacyMarks(DbTestCreation.ID_1, noDate);
+		studentsService.addMark(DbTestCreation.ID_2, noDate);
+		MarksEpochDaysMigration migration = new MarksEpochDaysMigration(mongoTemplate, listeners, 2, LEGACY_ZONE);
+		assertEquals(1, migration.migrate());
+		assertIterableEquals(List.of(noDate), studentsService.getMarks(DbTestCreation.ID_1));
+		//migrated marks and marks without date have the day, no document is read by the second run
+		assertEquals(0, mongoTemplate.count(new Query(Criteria.where("marks")
+				.elemMatch(Criteria.where("day").exists(false))), StudentDoc.class));
+		MongoTemplate spy = spy(mongoTemplate);
+		assertEquals(0, new MarksEpochDaysMigration(spy, listeners, 2, LEGACY_ZONE).migrate());
+		verify(spy, never()).bulkOps(any(BulkMode.class), anyString());
+	}
+
+	@Test
+	void concurrentUpdateTest() {
+		Mark[] marks = dbCreation.getStudentMarks(DbTestCreation.ID_1);
+		setLegacyMarks(DbTestCreation.ID_1, marks);
+		Mark added = new Mark(DbTestCreation.SUBJECT_2, DbTestCreation.DATE_4, 70);
+		//another instance adds the legacy mark after the marks have been read by the migration
+		MongoTemplate spy = spy(mongoTemplate);
+		doAnswer(invocation -> {
+			mongoTemplate.updateFirst(new Query(Criteria.where("id").is(DbTestCreation.ID_1)),
+					new Update().push("marks", legacyMark(added)), StudentDoc.class);
+			return invocation.callRealMethod();
+		}).doCallRealMethod().when(spy).bulkOps(any(BulkMode.class), anyString());
+		assertEquals(1, new MarksEpochDaysMigration(spy, listeners, 2, LEGACY_ZONE).migrate());
+		List<Mark> expected = new ArrayList<>(Arrays.asList(marks));
+		expected.add(added);
+		assertIterableEquals(expected, studentsService.getMarks(DbTestCreation.ID_1));
+	}
+
+	private void setLegacyMarks(long id, Mark... marks) {
+		mongoTemplate.updateFirst(new Query(Criteria.where("id").is(id)),
+				new Update().set("marks", Arrays.stream(marks).map(this::legacyMark).toList()), StudentDoc.class);
+	}
+
+	private Document legacyMark(Mark mark) {
+		Document res = new Document("subject", mark.subject()).append("score", mark.score());
+		if(mark.date() != null) {
+			res.append("date", Date.from(mark.date().atStartOfDay(ZoneId.of(LEGACY_ZONE)).toInstant()));
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,62 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import telran.students.dto.Mark;
+import telran.students.model.MarkEventDoc;
+import telran.students.repo.MarksTimeSeries;
+
+//failures of the time-series copy are simulated by the mocked template
+class MarksTimeSeriesTests {
+	static final Mark MARK = new Mark("Java", LocalDate.parse("2024-01-01"), 90);
+	MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	MarksTimeSeries marksTimeSeries = new MarksTimeSeries(mongoTemplate, Optional.empty());
+
+	@Test
+	void copyFailureTest() {
+		when(mongoTemplate.insert(anyCollection(), eq(MarkEventDoc.class)))
+				.thenThrow(new DataAccessResourceFailureException("insert failed"));
+		assertTrue(marksTimeSeries.isConsistent());
+		marksTimeSeries.copyMarks(Map.of(1L, List.of(MARK)));
+		assertFalse(marksTimeSeries.isConsistent());
+		verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq("marks_ts_state"));
+	}
+
+	@Test
+	void removeFailureTest() {
+		when(mongoTemplate.remove(any(Query.class), eq(MarkEventDoc.class)))
+				.thenThrow(new DataAccessResourceFailureException("remove failed"));
+		marksTimeSeries.removeMarks(1L);
+		assertFalse(marksTimeSeries.isConsistent());
+		verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq("marks_ts_state"));
+	}
+
+	@Test
+	void stateFailureTest() {
+		when(mongoTemplate.insert(anyCollection(), eq(MarkEventDoc.class)))
+				.thenThrow(new DataAccessResourceFailureException("insert failed"));
+		when(mongoTemplate.upsert(any(Query.class), any(Update.class), anyString()))
+				.thenThrow(new DataAccessResourceFailureException("upsert failed"));
+		marksTimeSeries.copyMarks(Map.of(1L, List.of(MARK)));
+		assertFalse(marksTimeSeries.isConsistent());
+	}
+
+	@Test
+	void emptyCopyTest() {
+		marksTimeSeries.copyMarks(Map.of(1L, List.of()));
+		verifyNoInteractions(mongoTemplate);
+		assertTrue(marksTimeSeries.isConsistent());
+	}
+
+}
@@ -0,0 +1,200 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import telran.students.dto.IdMark;
+import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
+import telran.students.repo.StudentRepo;
+import telran.students.service.BufferFullException;
+import telran.students.service.MarksJournal;
+import telran.students.service.MarksWriteBehind;
+import telran.students.service.StudentsChangeListener;
+
+//crash is simulated by abandoning the journal and the buffer without closing or flushing them
+class MarksWriteBehindTests {
+	static final Duration NEVER = Duration.ofHours(1);
+	static final Mark MARK_1 = new Mark("Java", LocalDate.parse("2024-01-01"), 90);
+	static final Mark MARK_2 = new Mark("Mongo", LocalDate.parse("2024-01-02"), 70);
+	static final Mark MARK_3 = new Mark(null, null, 50);
+	@TempDir
+	Path journalDir;
+	StudentRepo studentRepo = mock(StudentRepo.class);
+	StudentsChangeListener listener = mock(StudentsChangeListener.class);
+
+	@BeforeEach
+	void setUp() {
+		when(studentRepo.pushMarks(anyMap())).thenReturn(List.of());
+	}
+
+	@Test
+	void journalTornTailRecoveryTest() throws IOException {
+		MarksJournal journal = new MarksJournal(journalDir);
+		journal.sync(journal.append(1, MARK_1));
+		journal.sync(journal.append(2, MARK_2));
+		journal.sync(journal.append(1, MARK_3));
+		//record cut by the crash
+		try(Stream<Path> segments = Files.list(journalDir)) {
+			Path segment = segments.findFirst().orElseThrow();
+			Files.write(segment, new byte[] {0, 0, 0, 30, 1, 2}, StandardOpenOption.APPEND);
+		}
+		assertEquals(List.of(new IdMark(1, MARK_1), new IdMark(2, MARK_2), new IdMark(1, MARK_3)),
+				new MarksJournal(journalDir).recover());
+	}
+
+	@Test
+	void crashRecoveryTest() {
+		MarksWriteBehind crashed = writeBehind(100);
+		crashed.start();
+		crashed.addMark(1, MARK_1);
+		crashed.addMark(2, MARK_2);
+		crashed.addMark(1, MARK_3);
+		assertEquals(List.of(MARK_1, MARK_3), crashed.getMarks(1, id -> List.of()));
+		verify(studentRepo, never()).pushMarks(anyMap());
+		MarksWriteBehind recovered = writeBehind(100);
+		recovered.start();
+		verify(studentRepo).pushMarks(Map.of(1l, List.of(MARK_1, MARK_3), 2l, List.of(MARK_2)));
+		verify(listener).marksAdded(1, List.of(MARK_1, MARK_3));
+		recovered.stop();
+		//segments of the written marks are removed
+		writeBehind(100).start();
+		verify(studentRepo, times(1)).pushMarks(anyMap());
+	}
+
+	@Test
+	void groupCommitTest() {
+		MarksWriteBehind writeBehind = writeBehind(2);
+		writeBehind.start();
+		writeBehind.addMark(1, MARK_1);
+		writeBehind.addMark(2, MARK_2);
+		verify(studentRepo, timeout(5000)).pushMarks(Map.of(1l, List.of(MARK_1), 2l, List.of(MARK_2)));
+		verify(listener, timeout(5000)).marksAdded(2, List.of(MARK_2));
+		assertEquals(List.of(MARK_1), writeBehind.getMarks(1, id -> List.of(MARK_1)));
+		writeBehind.addMark(1, MARK_3);
+		writeBehind.stop();
+		verify(studentRepo).pushMarks(Map.of(1l, List.of(MARK_3)));
+		assertThrowsExactly(IllegalStateException.class, () -> writeBehind.addMark(1, MARK_1));
+	}
+
+	@Test
+	void backpressureTest() {
+		MarksWriteBehind writeBehind = new MarksWriteBehind(studentRepo, List.of(listener), 1, 100, NEVER,
+				Duration.ofMillis(10), journalDir);
+		writeBehind.start();
+		writeBehind.addMark(1, MARK_1);
+		assertThrowsExactly(BufferFullException.class, () -> writeBehind.addMark(2, MARK_2));
+		writeBehind.stop();
+	}
+
+	@Test
+	void writeWithoutLocksTest() throws Exception {
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch written = new CountDownLatch(1);
+		List<Mark> db = new CopyOnWriteArrayList<>();
+		when(studentRepo.pushMarks(anyMap())).thenAnswer(invocation -> {
+			writing.countDown();
+			written.await();
+			Map<Long, List<Mark>> studentsMarks = invocation.getArgument(0);
+			db.addAll(studentsMarks.getOrDefault(1l, List.of()));
+			return List.of();
+		});
+		MarksWriteBehind writeBehind = writeBehind(1);
+		writeBehind.start();
+		writeBehind.addMark(1, MARK_1);
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+		//adding and reading of the students not in flight don't wait for the write
+		writeBehind.addMark(1, MARK_3);
+		writeBehind.addMark(2, MARK_2);
+		assertEquals(List.of(MARK_2), writeBehind.getMarks(2, id -> List.of()));
+		CompletableFuture<List<Mark>> marks = CompletableFuture.supplyAsync(() -> writeBehind.getMarks(1,
+				id -> List.copyOf(db)));
+		Thread.sleep(100);
+		assertFalse(marks.isDone());
+		written.countDown();
+		assertEquals(List.of(MARK_1, MARK_3), marks.get(5, TimeUnit.SECONDS));
+		writeBehind.stop();
+		assertEquals(List.of(MARK_1, MARK_3), db);
+	}
+
+	@Test
+	void failedMarksRetryTest() {
+		when(studentRepo.pushMarks(anyMap())).thenReturn(List.of(new MarkFailure(1, MARK_1, "document too large"),
+				MarkFailure.studentNotFound(2, MARK_2)), List.of());
+		MarksWriteBehind writeBehind = writeBehind(2);
+		writeBehind.start();
+		writeBehind.addMark(1, MARK_1);
+		writeBehind.addMark(2, MARK_2);
+		verify(studentRepo, timeout(5000)).pushMarks(Map.of(1l, List.of(MARK_1), 2l, List.of(MARK_2)));
+		//the failed mark stays buffered, the mark of the removed student is dropped
+		assertEquals(List.of(MARK_1), writeBehind.getMarks(1, id -> List.of()));
+		assertEquals(List.of(), writeBehind.getMarks(2, id -> List.of()));
+		verify(listener, never()).marksAdded(anyLong(), anyList());
+		writeBehind.stop();
+		verify(studentRepo).pushMarks(Map.of(1l, List.of(MARK_1)));
+		verify(listener).marksAdded(1, List.of(MARK_1));
+		//the segments are removed after the retried mark is written
+		writeBehind(100).start();
+		verify(studentRepo, times(2)).pushMarks(anyMap());
+	}
+
+	@Test
+	void loadWithoutLocksTest() throws Exception {
+		List<Mark> db = new CopyOnWriteArrayList<>();
+		when(studentRepo.pushMarks(anyMap())).thenAnswer(invocation -> {
+			Map<Long, List<Mark>> studentsMarks = invocation.getArgument(0);
+			db.addAll(studentsMarks.getOrDefault(1l, List.of()));
+			return List.of();
+		});
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch flushed = new CountDownLatch(1);
+		AtomicInteger nLoads = new AtomicInteger();
+		MarksWriteBehind writeBehind = writeBehind(100);
+		writeBehind.start();
+		writeBehind.addMark(1, MARK_1);
+		CompletableFuture<List<Mark>> marks = CompletableFuture.supplyAsync(() -> writeBehind.getMarks(1, id -> {
+			if(nLoads.incrementAndGet() == 1) {
+				loading.countDown();
+				await(flushed);
+			}
+			return List.copyOf(db);
+		}));
+		assertTrue(loading.await(5, TimeUnit.SECONDS));
+		//the buffered mark is written and removed from the buffer while it is being loaded
+		writeBehind.stop();
+		flushed.countDown();
+		assertEquals(List.of(MARK_1), marks.get(5, TimeUnit.SECONDS));
+		assertEquals(2, nLoads.get());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private MarksWriteBehind writeBehind(int flushSize) {
+		return new MarksWriteBehind(studentRepo, List.of(listener), 100, flushSize, NEVER, Duration.ofSeconds(1),
+				journalDir);
+	}
+
+}
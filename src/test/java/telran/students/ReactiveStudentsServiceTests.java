@@ -0,0 +1,103 @@
+package telran.students;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import telran.exceptions.NotFoundException;
+import telran.students.dto.*;
+import telran.students.service.ReactiveStudentsService;
+import telran.students.service.StudentsService;
+@SpringBootTest
+class ReactiveStudentsServiceTests {
+	@Autowired
+	ReactiveStudentsService reactiveService;
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+	
+	@Test
+	void getMarksTest() {
+		StepVerifier.create(reactiveService.getMarks(1)).expectNext(dbCreation.getStudentMarks(1)).verifyComplete();
+		StepVerifier.create(reactiveService.getMarks(10000000)).verifyError(NotFoundException.class);
+	}
+	@Test
+	void addMarkTest() {
+		Mark mark = new Mark("Java", LocalDate.now(), 100);
+		List<Mark> expected = new ArrayList<>(Arrays.asList(dbCreation.getStudentMarks(2)));
+		expected.add(mark);
+		StepVerifier.create(reactiveService.addMark(2, mark).collectList()).expectNext(expected).verifyComplete();
+		StepVerifier.create(reactiveService.addMark(0, mark)).verifyError(NotFoundException.class);
+	}
+	@Test
+	void addRemoveStudentTest() {
+		Student newStudent = new Student(-1l, "Vasya", "111111111");
+		StepVerifier.create(reactiveService.addStudent(newStudent)).expectNext(newStudent).verifyComplete();
+		StepVerifier.create(reactiveService.addStudent(newStudent)).verifyError(IllegalStateException.class);
+		StepVerifier.create(reactiveService.removeStudent(-1)).expectNext(newStudent).verifyComplete();
+		StepVerifier.create(reactiveService.removeStudent(-1)).verifyError(NotFoundException.class);
+	}
+	@Test
+	void updatePhoneTest() {
+		Student student3 = dbCreation.getStudent(3);
+		String newPhone = "055-5555555";
+		StepVerifier.create(reactiveService.updatePhone(3, newPhone))
+			.expectNext(new Student(student3.id(), student3.name(), newPhone)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentByPhone(DbTestCreation.PHONE_3)).verifyComplete();
+		StepVerifier.create(reactiveService.updatePhone(0, newPhone)).verifyError(NotFoundException.class);
+	}
+	@Test
+	void sameResultsAsBlockingTest() {
+		StepVerifier.create(reactiveService.getStudentsByPhonePrefix("052").collectList())
+			.expectNext(studentsService.getStudentsByPhonePrefix("052")).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentsAllGoodMarks(70).collectList())
+			.expectNext(studentsService.getStudentsAllGoodMarks(70)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentsFewMarks(2).collectList())
+			.expectNext(studentsService.getStudentsFewMarks(2)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 75).collectList())
+			.expectNext(studentsService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 75)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentsMarksAmountBetween(2, 3).collectList())
+			.expectNext(studentsService.getStudentsMarksAmountBetween(2, 3)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentSubjectMarks(1, DbTestCreation.SUBJECT_1).collectList())
+			.expectNext(studentsService.getStudentSubjectMarks(1, DbTestCreation.SUBJECT_1)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentSubjectMarksOnClientFilter(1, DbTestCreation.SUBJECT_1).collectList())
+			.expectNext(studentsService.getStudentSubjectMarksOnClientFilter(1, DbTestCreation.SUBJECT_1)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentSubjectMarksOnClientFilter(1000, DbTestCreation.SUBJECT_1))
+			.verifyError(NotFoundException.class);
+		StepVerifier.create(reactiveService.getStudentAvgScoreGreater(90).collectList())
+			.expectNext(studentsService.getStudentAvgScoreGreater(90)).verifyComplete();
+		StepVerifier.create(reactiveService.getStudentMarksAtDates(DbTestCreation.ID_6, DbTestCreation.DATE_1, DbTestCreation.DATE_2).collectList())
+			.expectNext(studentsService.getStudentMarksAtDates(DbTestCreation.ID_6, DbTestCreation.DATE_1, DbTestCreation.DATE_2))
+			.verifyComplete();
+		StepVerifier.create(reactiveService.getBestStudents(3).collectList())
+			.expectNext(studentsService.getBestStudents(3)).verifyComplete();
+		StepVerifier.create(reactiveService.getWorstStudents(2).collectList())
+			.expectNext(studentsService.getWorstStudents(2)).verifyComplete();
+	}
+	@Test
+	void addMarksTest() {
+		Mark mark = new Mark("Java", DbTestCreation.DATE_4, 90);
+		StepVerifier.create(reactiveService.addMarks(Flux.just(new IdMark(DbTestCreation.ID_2, mark),
+				new IdMark(DbTestCreation.ID_7, mark), new IdMark(1000, mark))))
+			.expectNextMatches(res -> res.nMarksAdded() == 2 && res.failures().size() == 1
+				&& res.failures().get(0).id() == 1000)
+			.verifyComplete();
+		StepVerifier.create(reactiveService.getMarks(DbTestCreation.ID_7)).expectNext(mark).verifyComplete();
+	}
+
+}
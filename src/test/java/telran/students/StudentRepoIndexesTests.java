@@ -0,0 +1,154 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.repo.StudentQueries.*;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import telran.students.model.StudentDoc;
+
+//every query and pipeline of the repositories is explained as built by StudentQueries;
+//the winning plan must scan the index created for it by IndexesCreator with the bounds of the query
+@SpringBootTest
+class StudentRepoIndexesTests {
+	private static final String ID_INDEX = "_id_";
+	private static final Set<String> SCAN_STAGES = Set.of("IXSCAN", "EXPRESS_IXSCAN", "IDHACK");
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	void byIdIndexTest() {
+		assertIndex(explain(byId(DbTestCreation.ID_1)), ID_INDEX);
+		assertIndex(explain(new Query(Criteria.where("id").is(DbTestCreation.ID_1)
+				.and("marks.subject").is(DbTestCreation.SUBJECT_1))), ID_INDEX);
+		assertIndex(explain(studentSubjectMarksPipeline(DbTestCreation.ID_1, DbTestCreation.SUBJECT_1)), ID_INDEX);
+		assertIndex(explain(studentMarksAtDatesPipeline(DbTestCreation.ID_1, DbTestCreation.DATE_1,
+				DbTestCreation.DATE_2)), ID_INDEX);
+		assertIndex(explain(studentMarksFilterPipeline(DbTestCreation.ID_1,
+				subjectMarkCondition(DbTestCreation.SUBJECT_1))), ID_INDEX);
+	}
+	@Test
+	void phoneIndexTest() {
+		assertIndex(explain(new Query(Criteria.where("phone").is(DbTestCreation.PHONE_1))), "phone_1",
+				"phone", "[\"051-1234567\", \"051-1234567\"]");
+		assertIndex(explain(studentsQuery(phoneRegexCriteria(phonePrefixRegex("052")))), "phone_1",
+				"phone", "[\"052\", \"053\")");
+	}
+	@Test
+	void markCountIndexTest() {
+		assertIndex(explain(studentsQuery(fewMarksCriteria(3))), "markCount_1", "markCount", "[-inf.0, 3)");
+		assertIndex(explain(studentsQuery(marksAmountBetweenCriteria(1, 3))), "markCount_1",
+				"markCount", "[1, 3]");
+	}
+	@Test
+	void scoreStatisticsIndexesTest() {
+		//both bounded indexes serve the conjunction, the planner chooses any of them
+		assertIndex(explain(studentsQuery(goodMarksCriteria(80))), Set.of("markCount_1", "minScore_1"));
+		assertIndex(explain(studentAvgScoreGreaterPipeline(80)), Set.of("markCount_1", "maxScore_1"));
+	}
+	@Test
+	void marksIndexesTest() {
+		assertIndex(explain(studentsQuery(allGoodMarksSubjectCriteria(DbTestCreation.SUBJECT_1, 80))),
+				"marks.subject_1_marks.score_1", "marks.subject", "[\"subject1\", \"subject1\"]");
+		LocalDate from = DbTestCreation.DATE_1;
+		LocalDate to = DbTestCreation.DATE_2;
+		assertIndex(explain(monthAvgScorePipeline(from, to, null)), "marks.day_1", "marks.day",
+				String.format("[%d, %d]", from.toEpochDay(), to.toEpochDay()));
+	}
+	@Test
+	void sortIndexesTest() {
+		assertIndex(explain(bestStudentsQuery(3)), "goodMarkCount_-1__id_1", "goodMarkCount", "[inf.0, 0)");
+		assertIndex(explain(worstStudentsQuery(3)), "scoreSum_1__id_1");
+	}
+
+	private Document explain(Query query) {
+		QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+		MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+				.getRequiredPersistentEntity(StudentDoc.class);
+		var find = mongoTemplate.getCollection(mongoTemplate.getCollectionName(StudentDoc.class))
+				.find(queryMapper.getMappedObject(query.getQueryObject(), entity))
+				.sort(queryMapper.getMappedSort(query.getSortObject(), entity));
+		if(query.isLimited()) {
+			find.limit(query.getLimit());
+		}
+		return find.explain();
+	}
+	private Document explain(Aggregation aggregation) {
+		return mongoTemplate.aggregate(aggregation.withOptions(AggregationOptions.builder().explain(true).build()),
+				StudentDoc.class, Document.class).getRawResults();
+	}
+	private void assertIndex(Document explain, String indexName) {
+		assertIndex(explain, Set.of(indexName));
+	}
+	private void assertIndex(Document explain, Set<String> indexNames) {
+		Document scan = winningScan(explain);
+		assertTrue(indexNames.contains(indexName(scan)), () -> "expected " + indexNames + " plan: " + explain.toJson());
+	}
+	private void assertIndex(Document explain, String indexName, String key, String bounds) {
+		Document scan = winningScan(explain);
+		assertEquals(indexName, indexName(scan), () -> "plan: " + explain.toJson());
+		List<?> keyBounds = scan.get("indexBounds", Document.class).getList(key, Object.class);
+		assertEquals(List.of(bounds), keyBounds.subList(0, 1), () -> "plan: " + explain.toJson());
+	}
+	private String indexName(Document scan) {
+		return scan.getString("stage").equals("IDHACK") ? ID_INDEX : scan.getString("indexName");
+	}
+	//the only scan stage of the winning plan; the plan is nested differently in find and aggregate explains
+	private Document winningScan(Document explain) {
+		List<Document> plans = new ArrayList<>();
+		collect(explain, "winningPlan", plans);
+		assertFalse(plans.isEmpty(), () -> "no winning plan: " + explain.toJson());
+		List<Document> scans = new ArrayList<>();
+		plans.forEach(plan -> collectScans(plan, scans));
+		assertEquals(1, scans.size(), () -> "plan: " + explain.toJson());
+		return scans.get(0);
+	}
+	private void collect(Object value, String key, List<Document> res) {
+		if(value instanceof Document document) {
+			document.forEach((k, v) -> {
+				if(k.equals(key) && v instanceof Document found) {
+					res.add(found);
+				} else {
+					collect(v, key, res);
+				}
+			});
+		} else if(value instanceof List<?> list) {
+			list.forEach(v -> collect(v, key, res));
+		}
+	}
+	private void collectScans(Object value, List<Document> res) {
+		if(value instanceof Document document) {
+			if(SCAN_STAGES.contains(document.get("stage"))) {
+				res.add(document);
+			}
+			document.values().forEach(v -> collectScans(v, res));
+		} else if(value instanceof List<?> list) {
+			list.forEach(v -> collectScans(v, res));
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import telran.students.dto.Mark;
+import telran.students.migration.StudentsBinaryFormat;
+import telran.students.model.StudentDoc;
+
+class StudentsBinaryFormatTests {
+	static final int BLOCK_SIZE = 64;
+	@TempDir
+	Path dir;
+
+	@Test
+	void roundTripTest() throws IOException {
+		List<StudentDoc> students = new ArrayList<>();
+		students.add(student(-5, "Вася", null, null));
+		students.add(student(3, null, "050-1234567", List.of()));
+		students.add(student(Long.MAX_VALUE, "Yosef", "051-1234567", List.of(
+				new Mark("Java", LocalDate.parse("2024-01-10"), 90),
+				new Mark(null, null, 0),
+				new Mark("Java", LocalDate.parse("1999-12-31"), 254),
+				new Mark("Mongo", LocalDate.parse("2024-01-10"), 255),
+				new Mark("Mongo", null, -1))));
+		for(long id = 100; id < 200; id += 7) {
+			students.add(student(id, "name" + id, "058-" + id, List.of(
+					new Mark("Java", LocalDate.ofEpochDay(19000 + id), (int) id % 100),
+					new Mark("Spring", LocalDate.ofEpochDay(19000 - id), 1000))));
+		}
+		Path file = write(students);
+		List<StudentDoc> actual = read(file);
+		assertEquals(students.size(), actual.size());
+		for(int i = 0; i < students.size(); i++) {
+			StudentDoc expected = students.get(i);
+			StudentDoc studentDoc = actual.get(i);
+			assertEquals(expected.build(), studentDoc.build());
+			assertEquals(expected.getMarks(), studentDoc.getMarks());
+			assertEquals(expected.getScoreSum(), studentDoc.getScoreSum());
+			assertEquals(expected.getGoodMarkCount(), studentDoc.getGoodMarkCount());
+			assertEquals(expected.getMinScore(), studentDoc.getMinScore());
+		}
+	}
+
+	@Test
+	void brokenFileTest() throws IOException {
+		List<StudentDoc> students = List.of(student(1, "name1", "050-1111111",
+				List.of(new Mark("Java", LocalDate.parse("2024-01-10"), 90))));
+		Path file = write(students);
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[20] ^= 1;
+		Files.write(file, bytes);
+		IOException e = assertThrows(IOException.class, () -> read(file));
+		assertTrue(e.getMessage().contains("checksum"));
+		bytes[20] ^= 1;
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+		assertThrows(IOException.class, () -> read(file));
+	}
+
+	private StudentDoc student(long id, String name, String phone, List<Mark> marks) {
+		StudentDoc res = new StudentDoc(id, name, phone, null);
+		if(marks != null) {
+			res = StudentDoc.of(res.build());
+			marks.forEach(res::addMark);
+		}
+		return res;
+	}
+
+	private Path write(List<StudentDoc> students) throws IOException {
+		Path file = dir.resolve("students.bin");
+		try(StudentsBinaryFormat.Writer writer = new StudentsBinaryFormat.Writer(FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), BLOCK_SIZE)) {
+			for(StudentDoc studentDoc: students) {
+				writer.write(studentDoc);
+			}
+		}
+		return file;
+	}
+
+	private List<StudentDoc> read(Path file) throws IOException {
+		List<StudentDoc> res = new ArrayList<>();
+		try(StudentsBinaryFormat.Reader reader = new StudentsBinaryFormat.Reader(FileChannel.open(file))) {
+			StudentDoc studentDoc;
+			while((studentDoc = reader.read()) != null) {
+				res.add(studentDoc);
+			}
+		}
+		return res;
+	}
+
+}
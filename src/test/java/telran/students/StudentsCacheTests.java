@@ -0,0 +1,49 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import telran.students.dto.Mark;
+import telran.students.service.StudentsCache;
+
+//invalidations concurrent with a load are simulated by the loader itself
+class StudentsCacheTests {
+	static final Mark MARK_1 = new Mark("Java", LocalDate.parse("2024-01-01"), 90);
+	static final Mark MARK_2 = new Mark("Mongo", LocalDate.parse("2024-01-02"), 70);
+	StudentsCache cache = new StudentsCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+	@Test
+	void loadInvalidatedByOtherKeyTest() {
+		List<Mark> marks = cache.getMarks(1, id -> {
+			cache.marksAdded(2, List.of(MARK_2));
+			return List.of(MARK_1);
+		});
+		assertEquals(List.of(MARK_1), marks);
+		assertEquals(List.of(MARK_1), cache.getMarks(1, id -> fail("the load of student 1 must be cached")));
+	}
+
+	@Test
+	void loadInvalidatedBySameKeyTest() {
+		cache.getMarks(1, id -> {
+			cache.marksAdded(1, List.of(MARK_2));
+			return List.of(MARK_1);
+		});
+		assertEquals(List.of(MARK_1, MARK_2), cache.getMarks(1, id -> List.of(MARK_1, MARK_2)));
+	}
+
+	@Test
+	void loadInvalidatedByReloadTest() {
+		cache.getMarks(1, id -> {
+			cache.reload();
+			return List.of(MARK_1);
+		});
+		assertEquals(List.of(MARK_2), cache.getMarks(1, id -> List.of(MARK_2)));
+	}
+
+}
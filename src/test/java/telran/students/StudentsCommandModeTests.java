@@ -0,0 +1,46 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.mock.env.MockEnvironment;
+
+import telran.students.migration.StudentsCommandMode;
+
+class StudentsCommandModeTests {
+	StudentsCommandMode commandMode = new StudentsCommandMode();
+	SpringApplication application = new SpringApplication(StudentsMarksApplication.class);
+
+	@Test
+	void exportTest() {
+		MockEnvironment environment = new MockEnvironment().withProperty("app.students.export.file", "students.bin");
+		commandMode.postProcessEnvironment(environment, application);
+		assertEquals("none", environment.getProperty("spring.main.web-application-type"));
+		assertTrue(StudentsCommandMode.isCommand(environment));
+	}
+
+	@Test
+	void importTest() {
+		MockEnvironment environment = new MockEnvironment().withProperty("app.students.import.file", "students.bin");
+		commandMode.postProcessEnvironment(environment, application);
+		assertEquals("none", environment.getProperty("spring.main.web-application-type"));
+	}
+
+	@Test
+	void serverTest() {
+		MockEnvironment environment = new MockEnvironment().withProperty("app.students.export.file", "false");
+		commandMode.postProcessEnvironment(environment, application);
+		assertNull(environment.getProperty("spring.main.web-application-type"));
+		assertFalse(StudentsCommandMode.isCommand(environment));
+	}
+
+	@Test
+	void exportAndImportTest() {
+		MockEnvironment environment = new MockEnvironment().withProperty("app.students.export.file", "students.bin")
+				.withProperty("app.students.import.file", "students.bin");
+		assertThrowsExactly(IllegalStateException.class, () -> commandMode.postProcessEnvironment(environment,
+				application));
+	}
+
+}
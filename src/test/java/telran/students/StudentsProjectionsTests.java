@@ -0,0 +1,123 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.model.StudentProjectionDoc;
+import telran.students.repo.StudentRepo;
+import telran.students.repo.StudentsProjections;
+import telran.students.service.StudentsProjectionsSubscriber;
+import telran.students.service.StudentsService;
+
+//projections kept by the change stream on single node replica set; the projections are eventually consistent,
+//so the tests wait until they are equal to the aggregations over the students collection
+@SpringBootTest(properties = {"de.flapdoodle.mongodb.embedded.storage.repl-set-name=rs0",
+		"app.students.projections.enabled=true", "app.students.projections.max-await=50ms"})
+class StudentsProjectionsTests {
+	private static final long SYNC_TIMEOUT = 10_000;
+	private static final long SENTINEL_ID = -100;
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	DbTestCreation dbCreation;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	StudentsProjections projections;
+	@Autowired
+	StudentsProjectionsSubscriber subscriber;
+
+	@BeforeEach
+	void setUp() throws InterruptedException {
+		dbCreation.createDB();
+		awaitSynchronized();
+	}
+
+	@Test
+	void projectionsFollowWritesTest() throws InterruptedException {
+		studentsService.addStudent(new Student(-1l, "Vasya", "111111111"));
+		studentsService.addMark(-1, new Mark("Java", DbTestCreation.DATE_4, 100));
+		studentsService.addMarks(Stream.of(new IdMark(DbTestCreation.ID_7, new Mark("Java", DbTestCreation.DATE_4, 85)),
+				new IdMark(DbTestCreation.ID_3, new Mark(DbTestCreation.SUBJECT_1, DbTestCreation.DATE_2, 95))));
+		studentsService.removeStudent(DbTestCreation.ID_6);
+		studentsService.updatePhone(DbTestCreation.ID_4, "055-5555555");
+		//write bypassing the service
+		mongoTemplate.updateFirst(new Query(Criteria.where("id").is(DbTestCreation.ID_2)),
+				new Update().inc("scoreSum", 1000).inc("markCount", 10), StudentDoc.class);
+		awaitSynchronized();
+		assertEquals(2l, projections.findSubjectsMarksCounts().get("Java"));
+	}
+
+	@Test
+	void resumeWithoutRebuildTest() throws InterruptedException {
+		//rebuild would remove the projection of not existing student
+		mongoTemplate.insert(new Document("_id", SENTINEL_ID).append("name", "sentinel")
+				.append("scoreSum", Integer.MAX_VALUE).append("subjectCounts", new Document()), "students_projections");
+		subscriber.stop();
+		studentsService.addMark(DbTestCreation.ID_7, new Mark("Java", DbTestCreation.DATE_4, 85));
+		studentsService.removeStudent(DbTestCreation.ID_1);
+		subscriber.start();
+		awaitSynchronized();
+		assertTrue(mongoTemplate.exists(new Query(Criteria.where("id").is(SENTINEL_ID)), StudentProjectionDoc.class));
+		mongoTemplate.remove(new Query(Criteria.where("id").is(SENTINEL_ID)), StudentProjectionDoc.class);
+	}
+
+	@Test
+	void rebuildTest() {
+		studentsService.addMark(DbTestCreation.ID_7, new Mark("Java", DbTestCreation.DATE_4, 85));
+		projections.rebuild();
+		assertFalse(mongoTemplate.collectionExists("students_projections_staging"));
+		assertFalse(mongoTemplate.collectionExists("subjects_marks_counts_staging"));
+		assertTrue(mongoTemplate.indexOps(StudentProjectionDoc.class).getIndexInfo().stream()
+				.anyMatch(index -> index.isIndexForFields(List.of("avgScore", "_id"))));
+		assertTrue(isSynchronized());
+	}
+
+	private void awaitSynchronized() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + SYNC_TIMEOUT;
+		while(!isSynchronized()) {
+			if(System.currentTimeMillis() > deadline) {
+				fail("projections haven't been synchronized with students");
+			}
+			Thread.sleep(100);
+		}
+	}
+
+	private boolean isSynchronized() {
+		boolean res = true;
+		for(int threshold = 60; res && threshold <= 90; threshold += 10) {
+			//order of equal averages isn't defined at DB server
+			res = new HashSet<>(studentRepo.aggregateStudentAvgScoreGreater(threshold))
+					.equals(new HashSet<>(projections.findAvgScoreGreater(threshold)));
+		}
+		for(int nStudents = 1; res && nStudents <= 3; nStudents++) {
+			res = studentRepo.aggregateBestStudents(nStudents).equals(projections.findBestStudents(nStudents))
+					&& studentRepo.aggregateWorstStudents(nStudents).equals(projections.findWorstStudents(nStudents));
+		}
+		return res && subjectsMarksCounts().equals(projections.findSubjectsMarksCounts());
+	}
+
+	private Map<String, Long> subjectsMarksCounts() {
+		Map<String, Long> res = new TreeMap<>();
+		studentRepo.findAll().stream().filter(s -> s.getMarks() != null)
+				.forEach(s -> s.getMarks().forEach(m -> res.merge(m.subject(), 1l, Long::sum)));
+		return res;
+	}
+
+}
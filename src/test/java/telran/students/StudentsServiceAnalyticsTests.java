@@ -0,0 +1,109 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.DbTestCreation.assertSameAnswers;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+import telran.students.service.MarksAnalytics;
+import telran.students.service.StudentsService;
+
+//the snapshot keeps the marks of the removed students until they are more than the live ones and then compacts;
+//marks without date are kept with no day, out of any dates range, and are read back without date
+@SpringBootTest(properties = "app.students.analytics.enabled=true")
+class StudentsServiceAnalyticsTests {
+	private static final long MANY_MARKS_ID = 1000;
+	//more than the dead marks triggering the compaction
+	private static final int MANY_MARKS = 1100;
+	private static final List<String> SUBJECTS = Arrays.asList(null, DbTestCreation.SUBJECT_1,
+			DbTestCreation.SUBJECT_2, "Java", "unknown");
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@Autowired
+	MarksAnalytics analytics;
+
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	void compactionTest() {
+		StudentDoc manyMarks = StudentDoc.of(new Student(MANY_MARKS_ID, "many marks", "100-1000000"));
+		IntStream.range(0, MANY_MARKS).forEach(i -> manyMarks.addMark(new Mark("Java",
+				DbTestCreation.DATE_1.plusDays(i % 100), 50 + i % 51)));
+		studentRepo.save(manyMarks);
+		analytics.reload();
+		studentsService.addMark(DbTestCreation.ID_2, new Mark(DbTestCreation.SUBJECT_1, null, 95));
+		assertAnswers();
+		//the marks of the removed student are dead, then dropped by the compaction
+		studentsService.removeStudent(MANY_MARKS_ID);
+		assertAnswers();
+		//the live rows and marks keep their links after the compaction
+		studentsService.addMark(DbTestCreation.ID_2, new Mark("Java", DbTestCreation.DATE_4, 80));
+		studentsService.addStudent(new Student(MANY_MARKS_ID, "few marks", "100-1000000"));
+		studentsService.addMark(MANY_MARKS_ID, new Mark("Java", DbTestCreation.DATE_3, 60));
+		assertAnswers();
+		assertEquals(List.of(new Mark("Java", DbTestCreation.DATE_3, 60)),
+				analytics.getStudentSubjectMarks(MANY_MARKS_ID, "Java"));
+	}
+
+	@Test
+	void nullDatesTest() {
+		Mark noDate = new Mark(DbTestCreation.SUBJECT_1, null, 95);
+		studentsService.addMark(DbTestCreation.ID_1, noDate);
+		studentsService.addMarks(Stream.of(new IdMark(DbTestCreation.ID_7, noDate),
+				new IdMark(DbTestCreation.ID_3, new Mark(DbTestCreation.SUBJECT_1, DbTestCreation.DATE_2, 75))));
+		studentsService.addStudent(new Student(-1l, "Vasya", "111111111"));
+		studentsService.addMark(-1, noDate);
+		assertTrue(analytics.getStudentSubjectMarks(DbTestCreation.ID_7, DbTestCreation.SUBJECT_1).contains(noDate));
+		assertEquals(List.of(), analytics.getStudentMarksAtDates(-1, LocalDate.EPOCH,
+				DbTestCreation.DATE_4.plusYears(100)));
+		assertAnswers();
+		//the same from the snapshot seeded by DB
+		analytics.reload();
+		assertAnswers();
+	}
+
+	private void assertAnswers() {
+		List<Long> ids = new ArrayList<>(studentRepo.findAll().stream().map(StudentDoc::getId).toList());
+		ids.add(-100l);
+		List<Integer> limits = List.of(1, 2, 5, 100);
+		assertSameAnswers(limits, studentRepo::aggregateBestStudents, analytics::getBestStudents);
+		assertSameAnswers(limits, studentRepo::aggregateWorstStudents, analytics::getWorstStudents);
+		//order of equal averages isn't compared
+		assertSameAnswers(List.of(60, 70, 80, 90, 100),
+				t -> new HashSet<>(studentRepo.aggregateStudentAvgScoreGreater(t)),
+				t -> new HashSet<>(analytics.getStudentAvgScoreGreater(t)));
+		for(String subject: SUBJECTS.subList(1, SUBJECTS.size())) {
+			assertSameAnswers(ids, id -> studentRepo.aggregateStudentSubjectMarks(id, subject),
+					id -> analytics.getStudentSubjectMarks(id, subject));
+		}
+		assertSameAnswers(ids,
+				id -> studentRepo.aggregateStudentMarksAtDates(id, DbTestCreation.DATE_2, DbTestCreation.DATE_4),
+				id -> analytics.getStudentMarksAtDates(id, DbTestCreation.DATE_2, DbTestCreation.DATE_4));
+		assertSameAnswers(SUBJECTS,
+				s -> studentRepo.aggregateMonthAvgScore(DbTestCreation.DATE_1, DbTestCreation.DATE_4, s),
+				s -> analytics.getAvgScoreByMonths(DbTestCreation.DATE_1, DbTestCreation.DATE_4, s));
+	}
+
+}
@@ -0,0 +1,78 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import telran.students.dto.Mark;
+import telran.students.dto.Student;
+import telran.students.model.MarksBucketDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarkConverters;
+import telran.students.repo.MarksBuckets;
+
+//the same service tests with the marks stored in buckets of two marks
+@TestPropertySource(properties = {"app.students.marks.storage=bucketed", "app.students.marks.bucket.size=2"})
+class StudentsServiceBucketedMarksTests extends StudentsServiceTests {
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	MarksBuckets marksBuckets;
+	
+	@Test
+	void bucketsTest() {
+		assertNull(studentRepo.findById(DbTestCreation.ID_4).orElseThrow().getMarks());
+		studentsService.addMark(DbTestCreation.ID_4, new Mark("Java", DbTestCreation.DATE_4, 90));
+		Query query = new Query(Criteria.where("studentId").is(DbTestCreation.ID_4)).with(Sort.by("seq"));
+		List<MarksBucketDoc> buckets = mongoTemplate.find(query, MarksBucketDoc.class);
+		assertEquals(List.of(2, 2), buckets.stream().map(MarksBucketDoc::getCount).toList());
+		assertEquals(MarkConverters.epochDay(DbTestCreation.DATE_3), buckets.get(0).getMaxDay());
+		assertEquals(MarkConverters.epochDay(DbTestCreation.DATE_4), buckets.get(1).getMinDay());
+		studentsService.removeStudent(DbTestCreation.ID_4);
+		assertEquals(0, mongoTemplate.count(query, MarksBucketDoc.class));
+	}
+	
+	@Test
+	void orphanBucketsTest() {
+		//buckets left by a failure after the student delete
+		mongoTemplate.remove(new Query(Criteria.where("id").is(DbTestCreation.ID_4)), StudentDoc.class);
+		Query query = new Query(Criteria.where("studentId").is(DbTestCreation.ID_4));
+		assertEquals(2, mongoTemplate.count(query, MarksBucketDoc.class));
+		studentsService.addStudent(new Student(DbTestCreation.ID_4, DbTestCreation.NAME_4, DbTestCreation.PHONE_4));
+		assertEquals(0, mongoTemplate.count(query, MarksBucketDoc.class));
+		Mark mark = new Mark("Java", DbTestCreation.DATE_4, 90);
+		assertEquals(List.of(mark), studentsService.addMark(DbTestCreation.ID_4, mark));
+		assertEquals(List.of(mark), studentsService.getMarks(DbTestCreation.ID_4));
+		//the existing student keeps its buckets
+		assertThrowsExactly(IllegalStateException.class, () -> studentsService.addStudent(
+				new Student(DbTestCreation.ID_4, DbTestCreation.NAME_4, "111111111")));
+		assertEquals(List.of(mark), studentsService.getMarks(DbTestCreation.ID_4));
+	}
+	
+	@Test
+	void repairMarksStatisticsTest() {
+		//statistics counted for the marks whose buckets write has failed
+		mongoTemplate.updateFirst(new Query(Criteria.where("id").is(DbTestCreation.ID_4)),
+				new Update().inc("markCount", 2).inc("scoreSum", 200).min("minScore", 10), StudentDoc.class);
+		mongoTemplate.updateFirst(new Query(Criteria.where("id").is(DbTestCreation.ID_7)),
+				new Update().inc("markCount", 1).inc("scoreSum", 100), StudentDoc.class);
+		assertEquals(1, marksBuckets.repairMarksStatistics(List.of(DbTestCreation.ID_4, DbTestCreation.ID_7)));
+		StudentDoc studentDoc = studentRepo.findById(DbTestCreation.ID_4).orElseThrow();
+		assertEquals(3, studentDoc.getMarkCount());
+		assertEquals(280, studentDoc.getScoreSum());
+		assertEquals(3, studentDoc.getGoodMarkCount());
+		StudentDoc noMarksDoc = studentRepo.findById(DbTestCreation.ID_7).orElseThrow();
+		assertEquals(0, noMarksDoc.getMarkCount());
+		assertEquals(0, noMarksDoc.getScoreSum());
+	}
+
+}
@@ -0,0 +1,9 @@
+package telran.students;
+
+import org.springframework.test.context.TestPropertySource;
+
+//the same service tests reading the marks and the phones through the cache
+@TestPropertySource(properties = "app.students.cache.enabled=true")
+class StudentsServiceCachedTests extends StudentsServiceTests {
+
+}
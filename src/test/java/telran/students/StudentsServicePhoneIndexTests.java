@@ -0,0 +1,96 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.DbTestCreation.assertSameAnswers;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import telran.students.dto.*;
+import telran.students.repo.StudentQueries;
+import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsPhoneIndex;
+import telran.students.service.StudentsService;
+
+//a prefix matches the phones having at least one more character, as the anchored regex at DB server does,
+//whatever characters it has and whatever the limit is; a phone taken over by another student
+//stays with it whatever order the updates are notified in
+@SpringBootTest(properties = "app.students.phone-index.enabled=true")
+class StudentsServicePhoneIndexTests {
+	private static final List<Integer> LIMITS = List.of(1, 2, 3, 7, 100);
+	private static final String PHONE_NEW = "059-9999999";
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@Autowired
+	StudentsPhoneIndex phoneIndex;
+
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	void prefixLimitsTest() {
+		studentsService.addStudent(new Student(-1l, "plus", "+972-50-1111111"));
+		studentsService.addStudent(new Student(-2l, "dot", "050.1111111"));
+		studentsService.addStudent(new Student(-3l, "short", "05"));
+		assertAnswers(List.of("", "0", "05", "050", "050.", "050-", ".", "+", "+972", "05.", "\\E",
+				DbTestCreation.PHONE_1, DbTestCreation.PHONE_1.substring(0, 10), "kuku"));
+		assertEquals(List.of(), phoneIndex.findByPhonePrefix(DbTestCreation.PHONE_7, 100));
+		assertEquals(List.of(dbCreation.getStudent(1)), phoneIndex.findByPhonePrefix("051", 1));
+		assertThrowsExactly(IllegalArgumentException.class, () -> studentsService.getStudentsByPhonePrefix("05", 0));
+	}
+
+	@Test
+	void phonesSwapOutOfOrderTest() {
+		Student studentA = dbCreation.getStudent(1);
+		Student studentB = dbCreation.getStudent(2);
+		Student newA = new Student(studentA.id(), studentA.name(), PHONE_NEW);
+		Student newB = new Student(studentB.id(), studentB.name(), studentA.phone());
+		//A: PHONE_1 -> PHONE_NEW, then B: PHONE_2 -> PHONE_1, the update of B is notified first
+		studentRepo.setPhone(studentA.id(), PHONE_NEW);
+		studentRepo.setPhone(studentB.id(), studentA.phone());
+		phoneIndex.phoneUpdated(newB, studentB.phone());
+		phoneIndex.phoneUpdated(newA, studentA.phone());
+		assertEquals(List.of(newB), phoneIndex.findByPhonePrefix(studentA.phone().substring(0, 3), 100));
+		assertEquals(List.of(newA), phoneIndex.findByPhonePrefix(PHONE_NEW.substring(0, 3), 100));
+		assertEquals(List.of(), phoneIndex.findByPhonePrefix(studentB.phone().substring(0, 3), 100));
+		assertAnswers(List.of("", "05", "051", "052", "059"));
+	}
+
+	@Test
+	void phonesSwapTest() {
+		Student studentA = dbCreation.getStudent(1);
+		Student studentB = dbCreation.getStudent(2);
+		studentsService.updatePhone(studentA.id(), PHONE_NEW);
+		studentsService.updatePhone(studentB.id(), studentA.phone());
+		studentsService.updatePhone(studentA.id(), studentB.phone());
+		assertEquals(List.of(new Student(studentB.id(), studentB.name(), studentA.phone()),
+				new Student(studentA.id(), studentA.name(), studentB.phone())),
+				phoneIndex.findByPhonePrefix("05", 2));
+		assertAnswers(List.of("", "05", "051", "052", "059"));
+	}
+
+	private void assertAnswers(List<String> prefixes) {
+		for(int limit: LIMITS) {
+			assertSameAnswers(prefixes, prefix -> studentRepo.findByPhoneRegexOrderByPhone(
+					StudentQueries.phonePrefixRegex(prefix), Limit.of(limit)).stream()
+					.map(s -> new Student(s.getId(), s.getName(), s.getPhone())).toList(),
+					prefix -> phoneIndex.findByPhonePrefix(prefix, limit));
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import telran.exceptions.NotFoundException;
+import telran.students.dto.Student;
+import telran.students.service.StudentsService;
+
+//Mongo commands of the calls with the marks embedded into the student documents; the other modes need more:
+//bucketed removal deletes the buckets too, time series and analytics check existence of the student separately
+@SpringBootTest(properties = "app.students.marks.storage=embedded")
+class StudentsServiceRoundTripTests {
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	DbTestCreation dbCreation;
+	@Autowired
+	MeterRegistry meterRegistry;
+	@MockBean
+	MongoTransactionManager transactionManager;
+
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	void singleRoundTripTest() {
+		Student newStudent = new Student(-1l, "Vasya", "111111111");
+		assertRoundTrips("addStudent", 1, () -> studentsService.addStudent(newStudent));
+		assertRoundTrips("addStudent", 1, () -> assertThrowsExactly(IllegalStateException.class,
+				() -> studentsService.addStudent(newStudent)));
+		assertRoundTrips("removeStudent", 1, () -> studentsService.removeStudent(-1));
+		assertRoundTrips("removeStudent", 1, () -> assertThrowsExactly(NotFoundException.class,
+				() -> studentsService.removeStudent(-1)));
+		assertRoundTrips("getStudentMarksAtDates", 3, () -> assertIterableEquals(
+				List.of(dbCreation.getStudentMarks(DbTestCreation.ID_1)[0]), studentsService
+				.getStudentMarksAtDates(DbTestCreation.ID_1, DbTestCreation.DATE_1, DbTestCreation.DATE_1)));
+		assertRoundTrips("getStudentMarksAtDates", 3, () -> assertThrowsExactly(NotFoundException.class,
+				() -> studentsService.getStudentMarksAtDates(0, DbTestCreation.DATE_1, DbTestCreation.DATE_2)));
+	}
+
+	private void assertRoundTrips(String method, int arity, Runnable call) {
+		DistributionSummary commands = meterRegistry.summary("students.service.commands",
+				"method", method, "arity", String.valueOf(arity));
+		long count = commands.count();
+		double total = commands.totalAmount();
+		call.run();
+		assertEquals(count + 1, commands.count());
+		assertEquals(total + 1, commands.totalAmount());
+	}
+
+}
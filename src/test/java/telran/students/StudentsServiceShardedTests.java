@@ -0,0 +1,110 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.DbTestCreation.assertSameAnswers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.CodecReads;
+import telran.students.repo.NameAvgScoreCodec;
+import telran.students.repo.StudentCodec;
+import telran.students.repo.StudentQueries;
+import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsService;
+
+//the ids space between the min and max ids is split into 3 ranges: students at the edges of the ranges,
+//equal keys in different ranges, empty ranges of uneven ids, negative ids and the span of the whole long type
+//are answered the same as by the single queries over the whole collection
+@SpringBootTest(properties = "app.students.aggregation.parallelism=3")
+class StudentsServiceShardedTests {
+	private static final List<Integer> LIMITS = List.of(1, 2, 3, 4, 5, 10, 100);
+	private static final List<Integer> THRESHOLDS = List.of(0, 60, 70, 80, 90, 100);
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@Autowired
+	CodecReads codecReads;
+
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	void rangeBoundariesTest() {
+		//ids 1..7 are split into [1, 3], [4, 6], [7, 7]; the same totals at both sides of each boundary
+		//are merged in order of ids
+		for(long id: new long[] {DbTestCreation.ID_3, DbTestCreation.ID_4, DbTestCreation.ID_6, DbTestCreation.ID_7}) {
+			studentsService.addMark(id, new Mark("Java", DbTestCreation.DATE_4, 100));
+		}
+		assertAnswers();
+	}
+
+	@Test
+	void unevenIdsTest() {
+		//all the test students are in the first range, the second one is empty
+		addStudents(1_000_000, 1_000_001);
+		assertAnswers();
+		addStudents(-1_000_000);
+		assertAnswers();
+	}
+
+	@Test
+	void negativeIdsTest() {
+		studentRepo.deleteAll();
+		addStudents(LongStream.rangeClosed(-10, -1).toArray());
+		assertAnswers();
+	}
+
+	@Test
+	void wholeLongSpanTest() {
+		addStudents(Long.MIN_VALUE, Long.MAX_VALUE, 0);
+		assertAnswers();
+	}
+
+	@Test
+	void noStudentsTest() {
+		studentRepo.deleteAll();
+		assertEquals(List.of(), studentRepo.aggregateBestStudents(10));
+		assertEquals(List.of(), studentRepo.aggregateWorstStudents(10));
+		assertEquals(List.of(), studentRepo.aggregateStudentAvgScoreGreater(0));
+	}
+
+	//each student gets marks of the score depending on the id, so the keys repeat over the ranges
+	private void addStudents(long... ids) {
+		for(long id: ids) {
+			studentsService.addStudent(new Student(id, "name" + id, "phone" + id));
+			int score = (int) Math.floorMod(id, 5) * 10 + 60;
+			studentsService.addMark(id, new Mark("Java", DbTestCreation.DATE_4, score));
+			studentsService.addMark(id, new Mark("Java", DbTestCreation.DATE_4, 100));
+		}
+	}
+
+	private void assertAnswers() {
+		assertSameAnswers(LIMITS, n -> codecReads.find(StudentQueries.bestStudentsQuery(n), StudentDoc.class,
+				new StudentCodec()), studentRepo::aggregateBestStudents);
+		assertSameAnswers(LIMITS, n -> codecReads.find(StudentQueries.worstStudentsQuery(n), StudentDoc.class,
+				new StudentCodec()).stream().map(Student::name).toList(), studentRepo::aggregateWorstStudents);
+		//order of equal averages isn't compared
+		assertSameAnswers(THRESHOLDS, t -> new HashSet<>(codecReads.aggregate(
+				StudentQueries.studentAvgScoreGreaterPipeline(t), StudentDoc.class, new NameAvgScoreCodec())),
+				t -> new HashSet<>(studentRepo.aggregateStudentAvgScoreGreater(t)));
+	}
+
+}
@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,11 +14,23 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.mongodb.MongoTransactionManager;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import telran.exceptions.NotFoundException;
+import telran.students.dto.BulkMarksResult;
+import telran.students.dto.IdMark;
+import telran.students.dto.KeysetPage;
 import telran.students.dto.Mark;
+import telran.students.dto.MarkFailure;
 import telran.students.dto.NameAvgScore;
+import telran.students.dto.PeriodAvgScore;
+import telran.students.dto.ScoreBin;
+import telran.students.dto.ScoreStatistics;
 import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
 import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsLeaderboard;
 import telran.students.service.StudentsService;
 @SpringBootTest
 class StudentsServiceTests {
@@ -26,6 +40,10 @@ StudentsService studentsService;
 	DbTestCreation dbCreation;
 	@Autowired
 StudentRepo studentRepo;
+	@Autowired
+	StudentsLeaderboard leaderboard;
+	@Autowired
+	MeterRegistry meterRegistry;
 	@MockBean
 	MongoTransactionManager transactionManager;
 	@BeforeEach
@@ -66,6 +84,8 @@ StudentRepo studentRepo;
 		Student actual = studentRepo.findById(3l).orElseThrow().build();
 		assertEquals(expected, actual);
 		assertThrowsExactly(NotFoundException.class, () -> studentsService.updatePhone(0, newPhone));
+		assertThrowsExactly(IllegalStateException.class,
+				() -> studentsService.updatePhone(3, DbTestCreation.PHONE_1));
 	}
 	@Test
 	void addStudentTest() {
@@ -78,6 +98,12 @@ StudentRepo studentRepo;
 				()-> studentsService.addStudent(studentExisting));
 		assertThrowsExactly(IllegalStateException.class,
 				()-> studentsService.addStudent(newStudent));
+				assertEquals(String.format("Student %d already exists", studentExisting.id()),
+				assertThrowsExactly(IllegalStateException.class,
+						() -> studentsService.addStudent(new Student(studentExisting.id(), "Petya", "222222222")))
+				.getMessage());
+		assertEquals("Phone 111111111 already exists", assertThrowsExactly(IllegalStateException.class,
+				() -> studentsService.addStudent(new Student(-2l, "Petya", newStudent.phone()))).getMessage());
 	}
 	@Test
 	void getStudentPhoneTest() {
@@ -92,6 +118,10 @@ StudentRepo studentRepo;
 		List<Student> actual = studentsService.getStudentsByPhonePrefix(phonePrefix);
 		assertIterableEquals(expected, actual);
 		assertTrue(studentsService.getStudentsByPhonePrefix("kuku").isEmpty());
+		assertTrue(studentsService.getStudentsByPhonePrefix("52").isEmpty());
+		//the prefix requires at least one more character
+		assertTrue(studentsService.getStudentsByPhonePrefix(DbTestCreation.PHONE_2).isEmpty());
+		assertTrue(studentsService.getStudentsByPhonePrefix(DbTestCreation.PHONE_2, 10).isEmpty());
 	}
 	@Test
 	void getGoodStudentsTest() {
@@ -170,4 +200,215 @@ StudentRepo studentRepo;
 		assertIterableEquals(expected, actual);
 	}
 
+	@Test
+	void getAvgScoreByMonthsTest() {
+		assertIterableEquals(List.of(new PeriodAvgScore("2023-10", 83, 6), new PeriodAvgScore("2023-11", 86, 3),
+				new PeriodAvgScore("2023-12", 82, 4), new PeriodAvgScore("2024-01", 95, 2)),
+				studentsService.getAvgScoreByMonths(DbTestCreation.DATE_1, DbTestCreation.DATE_4, null));
+		assertIterableEquals(List.of(new PeriodAvgScore("2023-10", 82, 4), new PeriodAvgScore("2023-11", 90, 1)),
+				studentsService.getAvgScoreByMonths(DbTestCreation.DATE_1, DbTestCreation.DATE_2, DbTestCreation.SUBJECT_1));
+		assertTrue(studentsService.getAvgScoreByMonths(DbTestCreation.DATE_4.plusDays(1), DbTestCreation.DATE_4.plusYears(1), null)
+				.isEmpty());
+	}
+	@Test
+	void callMetricsTest() {
+		//meters are shared by the tests of one context, so the increments are checked
+		Timer serviceTimer = timer("students.service", "getStudentsMarksAmountBetween", 2, "none");
+		Timer repoTimer = timer("students.repo", "findStudentsMarksAmountBetween", 2, "none");
+		Timer errorTimer = timer("students.service", "getMarks", 1, "NotFoundException");
+		long serviceCount = serviceTimer.count();
+		long repoCount = repoTimer.count();
+		long errorCount = errorTimer.count();
+		DistributionSummary resultSize = meterRegistry.summary("students.service.result.size",
+				"method", "getStudentsMarksAmountBetween", "arity", "2");
+		double resultSizeTotal = resultSize.totalAmount();
+		studentsService.getStudentsMarksAmountBetween(2, 3);
+		assertThrowsExactly(NotFoundException.class, () -> studentsService.getMarks(10000000));
+		assertEquals(serviceCount + 1, serviceTimer.count());
+		assertEquals(repoCount + 1, repoTimer.count());
+		assertEquals(errorCount + 1, errorTimer.count());
+		assertEquals(resultSizeTotal + 4, resultSize.totalAmount());
+		assertTrue(meterRegistry.get("students.mongo.documents").tag("command", "find").counter().count() > 0);
+	}
+	@Test
+	void scoreStatisticsTest() {
+		assertEquals(new ScoreStatistics(3, 80, 70, 80, 90, 90, List.of(new ScoreBin(70, 80, 1),
+				new ScoreBin(80, 90, 1), new ScoreBin(90, 100, 1))),
+				studentsService.getScoreStatistics(DbTestCreation.ID_1, null, null, null, 10));
+		assertEquals(new ScoreStatistics(1, 90, 90, 90, 90, 90, List.of(new ScoreBin(80, 100, 1))),
+				studentsService.getScoreStatistics(DbTestCreation.ID_1, DbTestCreation.SUBJECT_1,
+						DbTestCreation.DATE_2, null, 20));
+		int nMarks = 0;
+		for(long id = DbTestCreation.ID_1; id <= DbTestCreation.ID_7; id++) {
+			nMarks += dbCreation.getStudentMarks(id).length;
+		}
+		ScoreStatistics all = studentsService.getScoreStatistics(null, null, null, null, 5);
+		assertEquals(nMarks, all.nMarks());
+		assertEquals(nMarks, all.histogram().stream().mapToInt(ScoreBin::nMarks).sum());
+		assertTrue(all.minScore() <= all.medianScore() && all.medianScore() <= all.p90Score()
+				&& all.p90Score() <= all.maxScore());
+		assertEquals(0, studentsService.getScoreStatistics(DbTestCreation.ID_1, "kuku", null, null, 10).nMarks());
+		assertThrowsExactly(NotFoundException.class,
+				() -> studentsService.getScoreStatistics(10000000l, null, null, null, 10));
+		assertThrowsExactly(IllegalArgumentException.class,
+				() -> studentsService.getScoreStatistics(null, null, null, null, 0));
+	}
+	private Timer timer(String name, String method, int arity, String exception) {
+		return meterRegistry.timer(name, "method", method, "arity", String.valueOf(arity), "exception", exception);
+	}
+	@Test
+	void addMarksTest() {
+		Mark mark1 = new Mark("Java", DbTestCreation.DATE_4, 90);
+		Mark mark2 = new Mark("Spring", DbTestCreation.DATE_4, 60);
+		Mark mark3 = new Mark("Mongo", DbTestCreation.DATE_4, 75);
+		BulkMarksResult result = studentsService.addMarks(Stream.of(new IdMark(DbTestCreation.ID_2, mark1),
+				new IdMark(DbTestCreation.ID_7, mark1), new IdMark(1000, mark2),
+				new IdMark(DbTestCreation.ID_2, mark2), new IdMark(DbTestCreation.ID_2, mark3)));
+		assertEquals(4, result.nMarksAdded());
+		assertEquals(List.of(1000l), result.failures().stream().map(MarkFailure::id).toList());
+		List<Mark> marksStudent2Expected = new ArrayList<>(Arrays.asList(dbCreation.getStudentMarks(2)));
+		marksStudent2Expected.addAll(List.of(mark1, mark2, mark3));
+		assertIterableEquals(marksStudent2Expected, studentsService.getMarks(2));
+		assertIterableEquals(List.of(mark1), studentsService.getMarks(7));
+	}
+
+	@Test
+	void rebuildMarksStatisticsTest() {
+		studentRepo.findAll().forEach(studentDoc -> {
+			studentRepo.save(new StudentDoc(studentDoc.getId(), studentDoc.getName(),
+					studentDoc.getPhone(), studentDoc.getMarks()));
+		});
+		leaderboard.reload();
+		assertTrue(studentsService.getBestStudents(3).isEmpty());
+		assertEquals(6, studentRepo.rebuildMarksStatistics());
+		leaderboard.reload();
+		getBestStudentsTest();
+		getWorstStudentsTest();
+		getStudentAvgScoreGreater();
+		getStudentsMarksAmountBetween();
+		StudentDoc studentDoc = studentRepo.findById(DbTestCreation.ID_4).orElseThrow();
+		assertEquals(3, studentDoc.getMarkCount());
+		assertEquals(280, studentDoc.getScoreSum());
+		assertEquals(3, studentDoc.getGoodMarkCount());
+		assertEquals(90, studentDoc.getMinScore());
+		assertEquals(100, studentDoc.getMaxScore());
+		assertNull(studentRepo.findById(DbTestCreation.ID_7).orElseThrow().getMinScore());
+	}
+	@Test
+	void leaderboardConsistencyTest() {
+		studentsService.addStudent(new Student(-1l, "Vasya", "111111111"));
+		studentsService.addMark(-1, new Mark("Java", DbTestCreation.DATE_4, 100));
+		studentsService.addMark(DbTestCreation.ID_2, new Mark("Java", DbTestCreation.DATE_4, 90));
+		studentsService.addMarks(Stream.of(new IdMark(DbTestCreation.ID_7, new Mark("Java", DbTestCreation.DATE_4, 85)),
+				new IdMark(DbTestCreation.ID_3, new Mark("Java", DbTestCreation.DATE_4, 95))));
+		studentsService.removeStudent(DbTestCreation.ID_6);
+		studentsService.updatePhone(DbTestCreation.ID_4, "055-5555555");
+		for(int nStudents = 1; nStudents <= 8; nStudents++) {
+			assertIterableEquals(studentRepo.aggregateBestStudents(nStudents), leaderboard.getBestStudents(nStudents));
+			assertIterableEquals(studentRepo.aggregateWorstStudents(nStudents), leaderboard.getWorstStudents(nStudents));
+		}
+	}
+	@Test
+	void cacheNoStaleReadsTest() {
+		Mark mark = new Mark("Java", DbTestCreation.DATE_4, 100);
+		List<Mark> marksStudent2 = new ArrayList<>(studentsService.getMarks(DbTestCreation.ID_2));
+		studentsService.getStudentSubjectMarks(DbTestCreation.ID_2, "Java");
+		studentsService.addMark(DbTestCreation.ID_2, mark);
+		marksStudent2.add(mark);
+		assertIterableEquals(marksStudent2, studentsService.getMarks(DbTestCreation.ID_2));
+		assertIterableEquals(List.of(mark), studentsService.getStudentSubjectMarks(DbTestCreation.ID_2, "Java"));
+		studentsService.addMarks(Stream.of(new IdMark(DbTestCreation.ID_2, mark)));
+		marksStudent2.add(mark);
+		assertIterableEquals(marksStudent2, studentsService.getMarks(DbTestCreation.ID_2));
+		
+		Student student3 = dbCreation.getStudent(3);
+		String newPhone = "055-5555555";
+		assertEquals(student3, studentsService.getStudentByPhone(DbTestCreation.PHONE_3));
+		assertNull(studentsService.getStudentByPhone(newPhone));
+		studentsService.updatePhone(DbTestCreation.ID_3, newPhone);
+		assertNull(studentsService.getStudentByPhone(DbTestCreation.PHONE_3));
+		assertEquals(new Student(student3.id(), student3.name(), newPhone), studentsService.getStudentByPhone(newPhone));
+		
+		Student newStudent = new Student(-1l, "Vasya", "111111111");
+		assertNull(studentsService.getStudentByPhone(newStudent.phone()));
+		studentsService.addStudent(newStudent);
+		assertEquals(newStudent, studentsService.getStudentByPhone(newStudent.phone()));
+		
+		assertEquals(dbCreation.getStudent(1), studentsService.getStudentByPhone(DbTestCreation.PHONE_1));
+		studentsService.getMarks(DbTestCreation.ID_1);
+		studentsService.removeStudent(DbTestCreation.ID_1);
+		assertNull(studentsService.getStudentByPhone(DbTestCreation.PHONE_1));
+		assertThrowsExactly(NotFoundException.class, () -> studentsService.getMarks(DbTestCreation.ID_1));
+	}
+	@Test
+	void streamingVariantsTest() {
+		assertStreamEquals(studentsService.getStudentsByPhonePrefix("05"), studentsService.streamStudentsByPhonePrefix("05"));
+		assertStreamEquals(studentsService.getStudentsAllGoodMarks(70), studentsService.streamStudentsAllGoodMarks(70));
+		assertStreamEquals(studentsService.getStudentsFewMarks(3), studentsService.streamStudentsFewMarks(3));
+		assertStreamEquals(studentsService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 75),
+				studentsService.streamStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 75));
+		assertStreamEquals(studentsService.getStudentsMarksAmountBetween(2, 3),
+				studentsService.streamStudentsMarksAmountBetween(2, 3));
+		assertStreamEquals(studentsService.getStudentAvgScoreGreater(70),
+				studentsService.streamStudentAvgScoreGreater(70));
+	}
+	@Test
+	void keysetPagesTest() {
+		assertEquals(studentsService.getStudentsByPhonePrefix("05"),
+				allPages(t -> studentsService.getStudentsByPhonePrefix("05", t, 2)));
+		assertEquals(studentsService.getStudentsAllGoodMarks(70),
+				allPages(t -> studentsService.getStudentsAllGoodMarks(70, t, 2)));
+		assertEquals(studentsService.getStudentsFewMarks(3),
+				allPages(t -> studentsService.getStudentsFewMarks(3, t, 2)));
+		assertEquals(studentsService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 75),
+				allPages(t -> studentsService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 75, t, 2)));
+		assertEquals(studentsService.getStudentsMarksAmountBetween(2, 3),
+				allPages(t -> studentsService.getStudentsMarksAmountBetween(2, 3, t, 2)));
+		assertEquals(studentsService.getBestStudents(100), allPages(t -> studentsService.getBestStudents(t, 2)));
+		assertEquals(studentsService.getWorstStudents(100), allPages(t -> studentsService.getWorstStudents(t, 2)));
+		assertEquals(studentsService.getStudentAvgScoreGreater(70),
+				allPages(t -> studentsService.getStudentAvgScoreGreater(70, t, 2)));
+		assertThrowsExactly(IllegalArgumentException.class,
+				() -> studentsService.getStudentsByPhonePrefix("05", "wrong token", 2));
+		assertThrowsExactly(IllegalArgumentException.class,
+				() -> studentsService.getStudentsByPhonePrefix("05", null, -1));
+		assertThrowsExactly(IllegalArgumentException.class,
+				() -> studentsService.getStudentAvgScoreGreater(70, null, -1));
+	}
+	@Test
+	void keysetPagesConcurrentModificationTest() {
+		KeysetPage<Student> page = studentsService.getStudentsByPhonePrefix("05", null, 2);
+		assertEquals(List.of(DbTestCreation.ID_1, DbTestCreation.ID_2), page.items().stream().map(Student::id).toList());
+		//removing an already returned and a not yet returned student, adding one before the cursor
+		studentsService.removeStudent(DbTestCreation.ID_2);
+		studentsService.removeStudent(DbTestCreation.ID_3);
+		studentsService.addStudent(new Student(0l, "name0", "050-1234567"));
+		List<Long> restIds = new ArrayList<>();
+		String pageToken = page.nextPageToken();
+		while(pageToken != null) {
+			page = studentsService.getStudentsByPhonePrefix("05", pageToken, 2);
+			page.items().forEach(s -> restIds.add(s.id()));
+			pageToken = page.nextPageToken();
+		}
+		assertEquals(List.of(DbTestCreation.ID_4, DbTestCreation.ID_5, DbTestCreation.ID_6, DbTestCreation.ID_7),
+				restIds);
+	}
+	private <T> List<T> allPages(Function<String, KeysetPage<T>> pageFunction) {
+		List<T> res = new ArrayList<>();
+		String pageToken = null;
+		do {
+			KeysetPage<T> page = pageFunction.apply(pageToken);
+			assertTrue(page.items().size() <= 2);
+			res.addAll(page.items());
+			pageToken = page.nextPageToken();
+		} while(pageToken != null);
+		return res;
+	}
+	private <T> void assertStreamEquals(List<T> expected, Stream<T> actual) {
+		try(actual) {
+			assertFalse(expected.isEmpty());
+			assertIterableEquals(expected, actual.toList());
+		}
+	}
+
 }
@@ -0,0 +1,29 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import telran.students.dto.Mark;
+
+//the same service tests with the date range queries served by the time series
+@TestPropertySource(properties = "app.students.marks.time-series.enabled=true")
+class StudentsServiceTimeSeriesMarksTests extends StudentsServiceTests {
+	
+	@Test
+	void timeSeriesWritesTest() {
+		Mark mark = new Mark("Java", DbTestCreation.DATE_2, 60);
+		studentsService.addMark(DbTestCreation.ID_6, mark);
+		List<Mark> expected = List.of(dbCreation.marks[5][0], dbCreation.marks[5][1], mark);
+		assertIterableEquals(expected, studentsService.getStudentMarksAtDates(DbTestCreation.ID_6,
+				DbTestCreation.DATE_1, DbTestCreation.DATE_2));
+		studentsService.removeStudent(DbTestCreation.ID_6);
+		assertEquals(4, studentsService.getAvgScoreByMonths(DbTestCreation.DATE_1, DbTestCreation.DATE_4, null).size());
+		assertEquals(1, studentsService.getAvgScoreByMonths(DbTestCreation.DATE_4, DbTestCreation.DATE_4, null)
+				.get(0).nMarks());
+	}
+
+}
@@ -0,0 +1,107 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.junit.jupiter.api.Test;
+
+import telran.students.service.StudentsView;
+
+//writes concurrent with the reload are simulated by the view itself while it reads the DB
+class StudentsViewTests {
+	//view of the scores by ids, the changes are deltas of the scores as marksAdded of the leaderboard
+	static class ScoresView extends StudentsView<Long> {
+		final Map<Long, Integer> db = new ConcurrentSkipListMap<>();
+		Map<Long, Integer> scores = new HashMap<>();
+		Runnable onSnapshotRead = () -> {};
+		Runnable onEntriesReload = () -> {};
+		int nEntriesReloads;
+
+		void write(long id, int delta) {
+			db.merge(id, delta, Integer::sum);
+			scores.computeIfPresent(id, (k, v) -> v + delta);
+			changed(id);
+		}
+
+		void remove(long id) {
+			db.remove(id);
+			scores.remove(id);
+			changed(id);
+		}
+
+		@Override
+		protected void loadSnapshot() {
+			Map<Long, Integer> newScores = new HashMap<>();
+			db.forEach((id, score) -> {
+				newScores.put(id, score);
+				if(id == 1) {
+					//the write of the read student isn't in the snapshot, the write of the next one is
+					Runnable action = onSnapshotRead;
+					onSnapshotRead = () -> {};
+					action.run();
+				}
+			});
+			scores = newScores;
+		}
+
+		@Override
+		protected void reloadEntries(Set<Long> ids) {
+			nEntriesReloads++;
+			Runnable action = onEntriesReload;
+			onEntriesReload = () -> {};
+			action.run();
+			ids.forEach(id -> {
+				Integer score = db.get(id);
+				if(score == null) {
+					scores.remove(id);
+				} else {
+					scores.put(id, score);
+				}
+			});
+		}
+	}
+
+	@Test
+	void writesDuringSnapshotTest() {
+		ScoresView view = viewOf(1, 2, 3);
+		view.onSnapshotRead = () -> {
+			view.write(1, 5);
+			view.write(2, 5);
+			view.remove(3);
+		};
+		view.reload();
+		assertEquals(view.db, view.scores);
+		assertEquals(1, view.nEntriesReloads);
+	}
+
+	@Test
+	void writesDuringEntriesReloadTest() {
+		ScoresView view = viewOf(1, 2, 3);
+		view.onSnapshotRead = () -> view.write(1, 5);
+		view.onEntriesReload = () -> view.write(2, 5);
+		view.reload();
+		assertEquals(view.db, view.scores);
+		assertEquals(2, view.nEntriesReloads);
+	}
+
+	@Test
+	void writesAfterReloadTest() {
+		ScoresView view = viewOf(1, 2);
+		view.start();
+		assertTrue(view.isRunning());
+		assertEquals(view.db, view.scores);
+		view.write(1, 5);
+		view.write(2, 5);
+		assertEquals(view.db, view.scores);
+		assertEquals(0, view.nEntriesReloads);
+	}
+
+	private ScoresView viewOf(long... ids) {
+		ScoresView view = new ScoresView();
+		Arrays.stream(ids).forEach(id -> view.db.put(id, (int) id * 10));
+		return view;
+	}
+
+}